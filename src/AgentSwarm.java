@@ -0,0 +1,398 @@
+import java.util.stream.IntStream;
+
+/**
+ * Any number of bots walking the same maze, for benchmarks, racing the player and swarm visuals.
+ * Each bot is a slot in a set of primitive arrays rather than an object, and every tick updates the bots
+ * in parallel chunks.  Bots only read the maze and write their own slots, so the result doesn't depend on the chunking.
+ *
+ * Each cell's passages are numbered as slots: the topology's directions, then the stairs up, then the stairs down.
+ * Wall followers leave each cell by the next open slot after the one they came in by, which walks every passage
+ * of a perfect maze.  Trémaux bots mark each passage they take and never take one marked twice,
+ * and greedy bots step down the distance field to the nearest goal.
+ * Every Trémaux bot needs marks for the whole maze, so once MazeConfig.maxTremauxMarkBytes is used up
+ * the bots that would have been Trémaux bots follow walls instead.
+ * */
+public class AgentSwarm {
+    public static final byte WALL_FOLLOWER = 0;
+    public static final byte TREMAUX = 1;
+    public static final byte GREEDY = 2;
+    public static final int STRATEGIES = 3;
+
+    // bots updated together by one parallel task
+    private static final int chunkSize = 4096;
+
+    private static final float[][] strategyColors = {
+            {0.95f, 0.55f, 0.35f},
+            {0.55f, 0.85f, 0.45f},
+            {0.55f, 0.65f, 0.95f},
+    };
+
+    private final Maze maze;
+    private final long seed;
+    private final int directions;
+    private final int slots;
+    private final int edgesPerLevel;
+    private final int[] goalDistances;
+
+    // one entry per bot
+    private final int count;
+    private final int[] cells;
+    private final float[] timers;
+    private final float[] intervals;
+    private final byte[] strategies;
+    // slot a bot came into its cell by, or -1 before its first move
+    private final byte[] entrySlots;
+    private final int[] moves;
+    private final long[] finishedTicks;
+    private final float[] colors;
+
+    // two bits per passage for each Trémaux bot, with the first word of each bot's marks
+    private final long[] marks;
+    private final int[] markOffsets;
+    private final int markWords;
+
+    private long ticks;
+    private long lastTickNanos;
+    private long totalTickNanos;
+    private long maxTickNanos;
+
+    /** creates bots with the strategies taken in turn, all starting at the start of the maze */
+    public AgentSwarm(Maze maze, int count, long seed) {
+        this.maze = maze;
+        this.seed = seed;
+        this.directions = maze.topology().directionCount();
+        this.slots = this.directions + 2;
+        this.edgesPerLevel = maze.topology().edgeCount();
+        this.goalDistances = maze.goalField().distances();
+
+        this.count = count;
+        this.cells = new int[count];
+        this.timers = new float[count];
+        this.intervals = new float[count];
+        this.strategies = new byte[count];
+        this.entrySlots = new byte[count];
+        this.moves = new int[count];
+        this.finishedTicks = new long[count];
+        this.colors = new float[count * 3];
+
+        int passages = maze.levels() * this.edgesPerLevel + maze.cellCount();
+        this.markWords = (passages + 31) >>> 5;
+        this.markOffsets = new int[count];
+        long maxTremaux = MazeConfig.maxTremauxMarkBytes / (8L * this.markWords);
+        int tremauxCount = 0;
+        for (int agent = 0; agent < count; agent++) {
+            byte strategy = (byte) (agent % STRATEGIES);
+            this.strategies[agent] = strategy == TREMAUX && tremauxCount >= maxTremaux ? WALL_FOLLOWER : strategy;
+            this.markOffsets[agent] = this.strategies[agent] == TREMAUX ? this.markWords * tremauxCount++ : -1;
+        }
+        this.marks = new long[Math.multiplyExact(this.markWords, tremauxCount)];
+
+        for (int agent = 0; agent < count; agent++) {
+            this.cells[agent] = maze.getStart();
+            this.entrySlots[agent] = -1;
+            this.finishedTicks[agent] = -1;
+
+            // bots move a little faster or slower than the player, and their colours vary around their strategy's
+            long random = mix(seed ^ agent);
+            this.intervals[agent] = MazeConfig.agentMoveTime * (0.6f + 0.8f * ((random & 0xFFFF) / 65536f));
+            float shade = 0.75f + 0.25f * (((random >>> 16) & 0xFF) / 256f);
+            for (int channel = 0; channel < 3; channel++)
+                this.colors[agent * 3 + channel] = strategyColors[this.strategies[agent]][channel] * shade;
+        }
+    }
+
+    public int count() {
+        return this.count;
+    }
+
+    public int cell(int agent) {
+        return this.cells[agent];
+    }
+
+    public byte strategy(int agent) {
+        return this.strategies[agent];
+    }
+
+    /** returns the number of moves the bot has made */
+    public int moves(int agent) {
+        return this.moves[agent];
+    }
+
+    /** returns the tick the bot reached a goal on, -1 while it is still walking, or Long.MAX_VALUE if it got stuck */
+    public long finishedTick(int agent) {
+        return this.finishedTicks[agent];
+    }
+
+    public int finishedCount() {
+        int finished = 0;
+        for (long tick : this.finishedTicks) {
+            if (tick >= 0 && tick != Long.MAX_VALUE)
+                finished++;
+        }
+        return finished;
+    }
+
+    public double lastTickMillis() {
+        return this.lastTickNanos / 1e6;
+    }
+
+    public double averageTickMillis() {
+        return this.ticks == 0 ? 0 : this.totalTickNanos / 1e6 / this.ticks;
+    }
+
+    public double maxTickMillis() {
+        return this.maxTickNanos / 1e6;
+    }
+
+    /** moves every bot on by the given number of seconds, in parallel chunks */
+    public void update(double elapsedTime) {
+        long start = System.nanoTime();
+        float elapsed = (float) elapsedTime;
+        int chunks = (this.count + chunkSize - 1) / chunkSize;
+        IntStream.range(0, chunks).parallel().forEach(chunk ->
+                this.updateRange(chunk * chunkSize, Math.min(this.count, (chunk + 1) * chunkSize), elapsed));
+        this.ticks++;
+
+        this.lastTickNanos = System.nanoTime() - start;
+        this.totalTickNanos += this.lastTickNanos;
+        this.maxTickNanos = Math.max(this.maxTickNanos, this.lastTickNanos);
+    }
+
+    /** fills the frame with the markers of the bots on the given floor */
+    public void writeFrame(Frame frame, MazeLayout layout, int level) {
+        frame.ensureCapacity(this.count);
+        int drawn = 0;
+        for (int agent = 0; agent < this.count; agent++) {
+            int cell = this.cells[agent];
+            if (this.maze.cellLevel(cell) != level)
+                continue;
+            frame.positions[drawn * 2] = layout.cellX(cell);
+            frame.positions[drawn * 2 + 1] = layout.cellY(cell);
+            System.arraycopy(this.colors, agent * 3, frame.colors, drawn * 3, 3);
+            drawn++;
+        }
+        frame.count = drawn;
+        frame.size = layout.markerLength();
+    }
+
+    private void updateRange(int from, int to, float elapsed) {
+        for (int agent = from; agent < to; agent++) {
+            if (this.finishedTicks[agent] != -1)
+                continue;
+
+            this.timers[agent] += elapsed;
+            while (this.timers[agent] >= this.intervals[agent]) {
+                this.timers[agent] -= this.intervals[agent];
+                if (!this.step(agent) || this.maze.isAtGoal(this.cells[agent])) {
+                    this.finishedTicks[agent] = this.maze.isAtGoal(this.cells[agent]) ? this.ticks : Long.MAX_VALUE;
+                    break;
+                }
+            }
+        }
+    }
+
+    /** moves the bot one cell by its strategy, returning false if it has nowhere left to go */
+    private boolean step(int agent) {
+        int cell = this.cells[agent];
+        int slot = switch (this.strategies[agent]) {
+            case WALL_FOLLOWER -> this.wallFollowerSlot(agent, cell);
+            case TREMAUX -> this.tremauxSlot(agent, cell);
+            default -> this.greedySlot(cell);
+        };
+        if (slot < 0)
+            return false;
+
+        int next = this.maze.move(cell, this.slotDirection(slot));
+        if (this.strategies[agent] == TREMAUX)
+            this.mark(agent, this.passage(cell, slot));
+        this.entrySlots[agent] = (byte) this.slotBack(next, cell, slot);
+        this.cells[agent] = next;
+        this.moves[agent]++;
+        return true;
+    }
+
+    private int wallFollowerSlot(int agent, int cell) {
+        int entry = this.entrySlots[agent] < 0 ? this.slots - 1 : this.entrySlots[agent];
+        // the entry slot itself comes last, turning back out of a dead end
+        for (int turn = 1; turn <= this.slots; turn++) {
+            int slot = (entry + turn) % this.slots;
+            if (this.isOpen(cell, slot))
+                return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * Trémaux's rules, counting the marks on a passage between two cells together:
+     * at a cell with no marked passages but the entrance take an unmarked one,
+     * back at a marked cell along a passage taken once turn back,
+     * and otherwise take the passage with the fewest marks, never one marked twice.
+     * */
+    private int tremauxSlot(int agent, int cell) {
+        int entry = this.entrySlots[agent];
+        boolean othersMarked = false;
+        for (int slot = 0; slot < this.slots; slot++) {
+            if (slot != entry && this.isOpen(cell, slot) && this.marks(agent, this.passage(cell, slot)) > 0)
+                othersMarked = true;
+        }
+        if (othersMarked && entry >= 0 && this.marks(agent, this.passage(cell, entry)) == 1)
+            return entry;
+
+        // among the passages with the fewest marks, start looking at a random one so bots spread out
+        int offset = (int) ((mix(this.seed ^ (long) agent << 32 ^ this.moves[agent]) >>> 1) % this.slots);
+        int best = -1;
+        int bestMarks = 2;
+        for (int i = 0; i < this.slots; i++) {
+            int slot = (offset + i) % this.slots;
+            if (!this.isOpen(cell, slot))
+                continue;
+            int passageMarks = this.marks(agent, this.passage(cell, slot));
+            // the entrance is only taken again when nothing unmarked is left
+            if (slot == entry && !othersMarked)
+                passageMarks = Math.max(passageMarks, 1);
+            if (passageMarks < bestMarks) {
+                best = slot;
+                bestMarks = passageMarks;
+            }
+        }
+        return best;
+    }
+
+    private int greedySlot(int cell) {
+        int distance = this.goalDistances[cell];
+        if (distance <= 0)
+            return -1;
+        for (int slot = 0; slot < this.slots; slot++) {
+            int next = this.maze.move(cell, this.slotDirection(slot));
+            if (next >= 0 && this.goalDistances[next] == distance - 1)
+                return slot;
+        }
+        return -1;
+    }
+
+    private int slotDirection(int slot) {
+        if (slot < this.directions)
+            return slot;
+        return slot == this.directions ? Maze.UPSTAIRS : Maze.DOWNSTAIRS;
+    }
+
+    private boolean isOpen(int cell, int slot) {
+        return this.maze.move(cell, this.slotDirection(slot)) >= 0;
+    }
+
+    /** returns the slot of the new cell that leads back to the cell it was entered from */
+    private int slotBack(int cell, int from, int slot) {
+        if (slot == this.directions)
+            return this.directions + 1;
+        if (slot == this.directions + 1)
+            return this.directions;
+        for (int back = 0; back < this.directions; back++) {
+            if (this.maze.move(cell, back) == from)
+                return back;
+        }
+        return -1;
+    }
+
+    /** returns an id for the passage leaving the cell by the slot, the same from both of its ends */
+    private int passage(int cell, int slot) {
+        int floorCells = this.maze.floorCellCount();
+        int level = this.maze.cellLevel(cell);
+        if (slot < this.directions)
+            return level * this.edgesPerLevel + this.maze.topology().edge(cell - level * floorCells, slot);
+
+        int stairs = this.maze.levels() * this.edgesPerLevel;
+        return slot == this.directions ? stairs + cell : stairs + cell - floorCells;
+    }
+
+    private int marks(int agent, int passage) {
+        long word = this.marks[this.markOffsets[agent] + (passage >>> 5)];
+        return (int) (word >>> ((passage & 31) << 1)) & 3;
+    }
+
+    private void mark(int agent, int passage) {
+        int index = this.markOffsets[agent] + (passage >>> 5);
+        int shift = (passage & 31) << 1;
+        long current = (this.marks[index] >>> shift) & 3;
+        if (current < 2)
+            this.marks[index] += 1L << shift;
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    /**
+     * The markers of the bots on one floor, ready to be drawn as a single batch.
+     * */
+    public static final class Frame {
+        private float[] positions = new float[0];
+        private float[] colors = new float[0];
+        private int count;
+        private float size;
+
+        public float[] positions() {
+            return this.positions;
+        }
+
+        public float[] colors() {
+            return this.colors;
+        }
+
+        public int count() {
+            return this.count;
+        }
+
+        public float size() {
+            return this.size;
+        }
+
+        private void ensureCapacity(int agents) {
+            if (this.positions.length < agents * 2) {
+                this.positions = new float[agents * 2];
+                this.colors = new float[agents * 3];
+            }
+        }
+    }
+
+    /**
+     * Times the swarm on its own.
+     * Usage: AgentSwarm [agents] [maze size] [ticks]
+     * */
+    public static void main(String[] args) {
+        int agents = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 600;
+        double tickTime = 1.0 / 60;
+
+        Maze maze = new Maze(SquareTopology.of(size), 1, null, MazeConfig.Algorithm.PRIMS, 1);
+        AgentSwarm swarm = new AgentSwarm(maze, agents, 1);
+        System.out.printf("%d agents in a %dx%d maze, %.1f MB of Tremaux marks\n",
+                agents, size, size, swarm.marks.length * 8 / 1e6);
+
+        // let the JIT settle before timing
+        AgentSwarm warmup = new AgentSwarm(maze, Math.min(agents, 20_000), 2);
+        for (int tick = 0; tick < 200; tick++)
+            warmup.update(tickTime);
+
+        for (int tick = 0; tick < ticks; tick++)
+            swarm.update(tickTime);
+
+        int[] finished = new int[STRATEGIES];
+        long[] finishTicks = new long[STRATEGIES];
+        for (int agent = 0; agent < agents; agent++) {
+            if (swarm.finishedTick(agent) >= 0 && swarm.finishedTick(agent) != Long.MAX_VALUE) {
+                finished[swarm.strategy(agent)]++;
+                finishTicks[swarm.strategy(agent)] += swarm.finishedTick(agent);
+            }
+        }
+        String[] names = {"wall follower", "Tremaux", "greedy"};
+        for (int strategy = 0; strategy < STRATEGIES; strategy++) {
+            System.out.printf("%-14s %d finished, %.1f ticks on average\n", names[strategy], finished[strategy],
+                    finished[strategy] == 0 ? 0 : (double) finishTicks[strategy] / finished[strategy]);
+        }
+        System.out.printf("%d ticks: %.3f ms average, %.3f ms max per tick (budget at 60 Hz is %.1f ms)\n",
+                ticks, swarm.averageTickMillis(), swarm.maxTickMillis(), tickTime * 1000);
+    }
+}
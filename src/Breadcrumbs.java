@@ -0,0 +1,55 @@
+import java.util.Arrays;
+
+/**
+ * The cells a player has visited, each kept once however often it is walked over.
+ * A bitset answers whether a cell was visited, and the cells are also listed in the order they were first visited,
+ * so the memory used is bounded by the size of the maze rather than the length of the session.
+ * */
+public class Breadcrumbs {
+    private final long[] visited;
+    private int[] order;
+    private int count;
+
+    public Breadcrumbs(int numCells) {
+        this.visited = new long[(numCells + 63) >>> 6];
+        this.order = new int[Math.min(numCells, 64)];
+    }
+
+    /** marks a cell as visited, returning true if this is the first visit */
+    public boolean visit(int cell) {
+        long bit = 1L << cell;
+        if ((this.visited[cell >>> 6] & bit) != 0)
+            return false;
+
+        this.visited[cell >>> 6] |= bit;
+        if (this.count == this.order.length)
+            this.order = Arrays.copyOf(this.order, this.order.length * 2);
+        this.order[this.count++] = cell;
+        return true;
+    }
+
+    /** takes back the latest first visit, which must have been to the given cell */
+    public void unvisit(int cell) {
+        if (this.count == 0 || this.order[this.count - 1] != cell)
+            throw new IllegalArgumentException("Cell " + cell + " is not the latest first visit");
+
+        this.visited[cell >>> 6] &= ~(1L << cell);
+        this.count--;
+    }
+
+    public boolean isVisited(int cell) {
+        return (this.visited[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /** returns the number of different cells visited */
+    public int count() {
+        return this.count;
+    }
+
+    /** returns the cell visited first after the given number of other cells */
+    public int cellAt(int index) {
+        if (index < 0 || index >= this.count)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + this.count + " breadcrumbs");
+        return this.order[index];
+    }
+}
@@ -0,0 +1,252 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A path of neighboring cells stored as one anchor cell plus a direction code per step,
+ * packed into a long[] (2 bits per step on a single floor of a square grid).
+ * The path works like a stack: cells are pushed and popped at the head, and the anchor is the tail.
+ * A bitset over the maze's cells answers contains() in constant time.
+ * */
+public class CellPath {
+    private final Topology topology;
+    private final int floorCells;
+    private final int numCells;
+    private final int numDirections;
+    private final int bitsPerStep;
+    private final int stepsPerWord;
+    private final long stepMask;
+
+    private final int tail;
+    private int head;
+    private int size;
+    // code i leads from cell i+1 back to cell i, counting from the tail
+    private long[] steps;
+
+    // one bit per cell of the maze, set while the cell is on the path
+    private final long[] members;
+    // number of pushes that added a cell already on the path
+    private int repeats;
+
+    private final Cursor cursor = new Cursor();
+
+    /** creates a path holding only the given cell */
+    public CellPath(Maze maze, int cell) {
+        this.topology = maze.topology();
+        this.floorCells = maze.floorCellCount();
+        this.numCells = maze.cellCount();
+        this.numDirections = this.topology.directionCount();
+
+        // floor directions, plus up and down the stairs when there is more than one floor
+        int codes = this.numDirections + (maze.levels() > 1 ? 2 : 0);
+        this.bitsPerStep = Math.max(1, 32 - Integer.numberOfLeadingZeros(codes - 1));
+        this.stepsPerWord = 64 / this.bitsPerStep;
+        this.stepMask = (1L << this.bitsPerStep) - 1;
+
+        this.tail = cell;
+        this.head = cell;
+        this.size = 1;
+        this.steps = new long[1];
+        this.members = new long[(this.numCells + 63) >>> 6];
+        this.members[cell >>> 6] |= 1L << cell;
+    }
+
+    /** creates a path through the given cells, from the first (the tail) to the last (the head) */
+    public static CellPath of(Maze maze, int[] cells) {
+        CellPath path = new CellPath(maze, cells[0]);
+        for (int i = 1; i < cells.length; i++)
+            path.push(cells[i]);
+        return path;
+    }
+
+    public int head() {
+        return this.head;
+    }
+
+    public int tail() {
+        return this.tail;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean contains(int cell) {
+        return (this.members[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /** adds a cell next to the current head, making it the new head */
+    public void push(int cell) {
+        int code = this.codeBetween(cell, this.head);
+        if (code < 0)
+            throw new IllegalArgumentException("Cell " + cell + " is not next to the head of the path (" + this.head + ")");
+
+        int step = this.size - 1;
+        if (step / this.stepsPerWord >= this.steps.length)
+            this.steps = Arrays.copyOf(this.steps, this.steps.length * 2);
+        this.setCode(step, code);
+
+        if (this.contains(cell))
+            this.repeats++;
+        else
+            this.members[cell >>> 6] |= 1L << cell;
+        this.head = cell;
+        this.size++;
+    }
+
+    /** removes the head of the path and returns it. The tail cannot be popped. */
+    public int pop() {
+        if (this.size == 1)
+            throw new IllegalStateException("Cannot pop the last cell of a path");
+
+        int popped = this.head;
+        this.size--;
+        this.head = this.step(popped, this.code(this.size - 1));
+
+        // a repeated cell may still be on the path further back
+        if (this.repeats > 0 && this.walkContains(popped))
+            this.repeats--;
+        else
+            this.members[popped >>> 6] &= ~(1L << popped);
+        return popped;
+    }
+
+    /** returns the cell the given number of steps back from the head */
+    public int get(int index) {
+        if (index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for path of size " + this.size);
+
+        int cell = this.head;
+        for (int i = this.size - 2; i >= this.size - 1 - index; i--)
+            cell = this.step(cell, this.code(i));
+        return cell;
+    }
+
+    /**
+     * returns the path's cursor, reset to the head. Walking the cursor allocates nothing,
+     * but every call returns the same cursor so only one walk can be in progress at a time.
+     * */
+    public Cursor cursor() {
+        this.cursor.reset();
+        return this.cursor;
+    }
+
+    /** returns the approximate number of bytes used by the path: its packed steps, and the membership bitset of one bit per maze cell */
+    public long sizeBytes() {
+        return 8L * (this.steps.length + this.members.length);
+    }
+
+    /** writes the path as its tail, size, code width and packed steps */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(this.tail);
+        out.writeInt(this.size);
+        out.writeByte(this.bitsPerStep);
+        int words = (this.size - 1 + this.stepsPerWord - 1) / this.stepsPerWord;
+        for (int i = 0; i < words; i++)
+            out.writeLong(this.steps[i]);
+    }
+
+    /** reads a path written by write() for the same maze layout */
+    public static CellPath read(DataInput in, Maze maze) throws IOException {
+        CellPath path = new CellPath(maze, in.readInt());
+        int size = in.readInt();
+        if (in.readByte() != path.bitsPerStep)
+            throw new IOException("Path was written for a maze with a different layout");
+
+        int words = (size - 1 + path.stepsPerWord - 1) / path.stepsPerWord;
+        long[] steps = new long[words];
+        for (int i = 0; i < words; i++)
+            steps[i] = in.readLong();
+
+        // replay the steps from the tail to rebuild the head and the membership bits
+        int cell = path.tail;
+        for (int i = 0; i < size - 1; i++) {
+            int code = (int) ((steps[i / path.stepsPerWord] >>> ((i % path.stepsPerWord) * path.bitsPerStep)) & path.stepMask);
+            int next = path.stepBack(cell, code);
+            if (next < 0)
+                throw new IOException("Path step " + i + " does not lead to a neighboring cell");
+            path.push(next);
+            cell = next;
+        }
+        return path;
+    }
+
+    private int code(int step) {
+        return (int) ((this.steps[step / this.stepsPerWord] >>> ((step % this.stepsPerWord) * this.bitsPerStep)) & this.stepMask);
+    }
+
+    private void setCode(int step, int code) {
+        int word = step / this.stepsPerWord;
+        int shift = (step % this.stepsPerWord) * this.bitsPerStep;
+        this.steps[word] = (this.steps[word] & ~(this.stepMask << shift)) | ((long) code << shift);
+    }
+
+    /** returns the cell reached by following a direction code from a cell, or -1 */
+    private int step(int cell, int code) {
+        if (code == this.numDirections)
+            return cell + this.floorCells < this.numCells ? cell + this.floorCells : -1;
+        if (code == this.numDirections + 1)
+            return cell - this.floorCells >= 0 ? cell - this.floorCells : -1;
+
+        int levelStart = cell - cell % this.floorCells;
+        int neighbor = this.topology.neighbor(cell - levelStart, code);
+        return neighbor < 0 ? -1 : levelStart + neighbor;
+    }
+
+    /** returns the cell whose code leads back to the given cell, the inverse of step() */
+    private int stepBack(int cell, int code) {
+        for (int candidate = 0; candidate < this.numDirections + 2; candidate++) {
+            int next = this.step(cell, candidate);
+            if (next >= 0 && this.step(next, code) == cell)
+                return next;
+        }
+        return -1;
+    }
+
+    /** returns the code leading from one cell to its neighbor, or -1 if they are not neighbors */
+    private int codeBetween(int from, int to) {
+        int codes = this.numDirections + (this.floorCells < this.numCells ? 2 : 0);
+        for (int code = 0; code < codes; code++) {
+            if (this.step(from, code) == to)
+                return code;
+        }
+        return -1;
+    }
+
+    /** returns true if the cell is on the path, walking it from the head without touching the shared cursor */
+    private boolean walkContains(int cell) {
+        int current = this.head;
+        for (int step = this.size - 2; current != cell; step--) {
+            if (step < 0)
+                return false;
+            current = this.step(current, this.code(step));
+        }
+        return true;
+    }
+
+    /**
+     * Walks a path from its head to its tail without allocating.
+     * */
+    public class Cursor {
+        private int cell;
+        private int step;
+
+        private void reset() {
+            this.cell = CellPath.this.head;
+            this.step = CellPath.this.size - 1;
+        }
+
+        public boolean hasNext() {
+            return this.step >= 0;
+        }
+
+        public int next() {
+            int current = this.cell;
+            this.step--;
+            if (this.step >= 0)
+                this.cell = CellPath.this.step(current, CellPath.this.code(this.step));
+            return current;
+        }
+    }
+}
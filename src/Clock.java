@@ -0,0 +1,9 @@
+/**
+ * The time source the game runs on, so a headless game can run its ticks faster than real time.
+ * */
+public interface Clock {
+    Clock SYSTEM = System::nanoTime;
+
+    /** returns the current time in nanoseconds, measured from an arbitrary fixed point */
+    long nanoTime();
+}
@@ -0,0 +1,146 @@
+/**
+ * Base class for the grid topologies. Subclasses only describe which cell lies in each direction,
+ * and this class precomputes the direction and CSR neighbor tables from that description once.
+ * The description is passed to the constructor as static rules rather than overridden methods,
+ * so building the tables never calls into a subclass that isn't initialized yet.
+ * */
+public abstract class CsrTopology implements Topology {
+    /** returns the cell next to a cell of a width x height grid in the given direction, or -1 if there is none */
+    @FunctionalInterface
+    protected interface NeighborRule {
+        int neighbor(int width, int height, int cell, int direction);
+    }
+
+    /**
+     * Assigns edge ids in a layout of the subclass's own, rather than in cell order.
+     * Fixed layouts may leave ids unused; walls on those ids are never removed.
+     * */
+    protected interface EdgeLayout {
+        /** returns the size of the edge id space */
+        int edgeCount(int width, int height);
+
+        /** returns the id of the edge leaving a cell in the given direction */
+        int edge(int width, int height, int cell, int direction, int neighbor);
+    }
+
+    private final int width;
+    private final int height;
+    private final int numCells;
+    private final int numDirections;
+    private int numEdges;
+
+    // neighbor and edge in each direction, indexed by cell*numDirections + direction (-1 if none)
+    private final int[] directionNeighbors;
+    private final int[] directionEdges;
+
+    // compressed sparse row neighbor tables
+    private final int[] offsets;
+    private final int[] cells;
+    private final int[] edges;
+
+    protected CsrTopology(int width, int height, int numDirections, NeighborRule neighbors) {
+        this(width, height, numDirections, neighbors, null);
+    }
+
+    protected CsrTopology(int width, int height, int numDirections, NeighborRule neighbors, EdgeLayout edgeLayout) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Grid must be at least 1x1, got " + width + "x" + height);
+
+        this.width = width;
+        this.height = height;
+        this.numCells = width * height;
+        this.numDirections = numDirections;
+
+        this.directionNeighbors = new int[this.numCells * numDirections];
+        this.directionEdges = new int[this.numCells * numDirections];
+        this.offsets = new int[this.numCells + 1];
+
+        int slots = 0;
+        for (int cell = 0; cell < this.numCells; cell++) {
+            for (int direction = 0; direction < numDirections; direction++) {
+                int neighbor = neighbors.neighbor(width, height, cell, direction);
+                this.directionNeighbors[cell*numDirections + direction] = neighbor;
+                if (neighbor >= 0) slots++;
+            }
+        }
+
+        this.cells = new int[slots];
+        this.edges = new int[slots];
+
+        // assign edge ids in cell order, so the lower cell of every pair creates the edge,
+        // unless the subclass lays its edges out itself
+        if (edgeLayout != null)
+            this.numEdges = edgeLayout.edgeCount(width, height);
+        int slot = 0;
+        for (int cell = 0; cell < this.numCells; cell++) {
+            this.offsets[cell] = slot;
+            for (int direction = 0; direction < numDirections; direction++) {
+                int index = cell*numDirections + direction;
+                int neighbor = this.directionNeighbors[index];
+                if (neighbor < 0) {
+                    this.directionEdges[index] = -1;
+                    continue;
+                }
+
+                int edge;
+                if (edgeLayout != null)
+                    edge = edgeLayout.edge(width, height, cell, direction, neighbor);
+                else
+                    edge = neighbor > cell ? this.numEdges++ : this.reverseEdge(neighbor, cell);
+                this.directionEdges[index] = edge;
+                this.cells[slot] = neighbor;
+                this.edges[slot] = edge;
+                slot++;
+            }
+        }
+        this.offsets[this.numCells] = slot;
+    }
+
+    private int reverseEdge(int cell, int neighbor) {
+        for (int direction = 0; direction < this.numDirections; direction++) {
+            if (this.directionNeighbors[cell*this.numDirections + direction] == neighbor)
+                return this.directionEdges[cell*this.numDirections + direction];
+        }
+        throw new IllegalStateException("Neighbor relation is not symmetric between cells " + cell + " and " + neighbor);
+    }
+
+    public final int width() {
+        return this.width;
+    }
+
+    public final int height() {
+        return this.height;
+    }
+
+    public final int cellCount() {
+        return this.numCells;
+    }
+
+    public final int edgeCount() {
+        return this.numEdges;
+    }
+
+    public final int directionCount() {
+        return this.numDirections;
+    }
+
+    public final int[] neighborOffsets() {
+        return this.offsets;
+    }
+
+    public final int[] neighborCells() {
+        return this.cells;
+    }
+
+    public final int[] neighborEdges() {
+        return this.edges;
+    }
+
+    public final int neighbor(int cell, int direction) {
+        return this.directionNeighbors[cell*this.numDirections + direction];
+    }
+
+    public final int edge(int cell, int direction) {
+        return this.directionEdges[cell*this.numDirections + direction];
+    }
+}
@@ -0,0 +1,238 @@
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Game events published by the simulation thread into a ring of primitive slots allocated up front,
+ * in the style of the LMAX Disruptor.  Every subscriber reads every event in order from the same ring,
+ * tracking how far it has read with its own sequence, so publishing and reading allocate nothing and take no locks.
+ *
+ * Subscribers either run on the publishing thread when it calls dispatch(), or on a worker thread of their own.
+ * The publisher never overwrites an event a subscriber hasn't read: if the ring is full it dispatches to the
+ * subscribers on its own thread, and waits for the workers.
+ * */
+public class EventBus implements AutoCloseable {
+    /**
+     * Receives the events of a bus, oldest first, each with the simulation tick it happened on.
+     * Only the events a subscriber cares about need overriding.
+     * */
+    public interface Subscriber {
+        default void moved(long tick, int fromCell, int toCell) {
+        }
+
+        default void moveUndone(long tick, int fromCell, int toCell) {
+        }
+
+        default void reset(long tick, MazeConfig.Difficulty difficulty, long seed) {
+        }
+
+        default void won(long tick, int score, double time) {
+        }
+
+        default void paused(long tick, boolean paused) {
+        }
+    }
+
+    private static final int MOVED = 0;
+    private static final int MOVE_UNDONE = 1;
+    private static final int RESET = 2;
+    private static final int WON = 3;
+    private static final int PAUSED = 4;
+
+    // how long an idle worker or a publisher waiting on one sleeps before looking again
+    private static final long idleNanos = 50_000;
+
+    private final int mask;
+    private final int[] kinds;
+    private final long[] ticks;
+    private final long[] firsts;
+    private final long[] seconds;
+
+    // the last slot published, only ever increasing
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final ArrayList<Subscription> subscriptions = new ArrayList<>();
+    private volatile Subscription[] gates = new Subscription[0];
+    private long waits;
+    private volatile boolean closed;
+
+    /** creates a bus holding at least the given number of unread events, rounded up to a power of two */
+    public EventBus(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+
+        int size = Math.max(Integer.highestOneBit(capacity - 1) << 1, 1);
+        this.mask = size - 1;
+        this.kinds = new int[size];
+        this.ticks = new long[size];
+        this.firsts = new long[size];
+        this.seconds = new long[size];
+    }
+
+    /** adds a subscriber that is handed events on the publishing thread whenever it calls dispatch */
+    public synchronized Subscription subscribe(Subscriber subscriber) {
+        return this.add(new Subscription(subscriber, null));
+    }
+
+    /** adds a subscriber that is handed events on a daemon thread of its own, soon after they are published */
+    public synchronized Subscription subscribeOnWorker(Subscriber subscriber, String threadName) {
+        Subscription subscription = this.add(new Subscription(subscriber, threadName));
+        subscription.worker.start();
+        return subscription;
+    }
+
+    public void moved(long tick, int fromCell, int toCell) {
+        this.publish(MOVED, tick, fromCell, toCell);
+    }
+
+    public void moveUndone(long tick, int fromCell, int toCell) {
+        this.publish(MOVE_UNDONE, tick, fromCell, toCell);
+    }
+
+    public void reset(long tick, MazeConfig.Difficulty difficulty, long seed) {
+        this.publish(RESET, tick, difficulty.ordinal(), seed);
+    }
+
+    public void won(long tick, int score, double time) {
+        this.publish(WON, tick, score, Double.doubleToRawLongBits(time));
+    }
+
+    public void paused(long tick, boolean paused) {
+        this.publish(PAUSED, tick, paused ? 1 : 0, 0);
+    }
+
+    /** hands every event published so far to the subscribers on the publishing thread */
+    public void dispatch() {
+        long published = this.cursor.get();
+        for (Subscription subscription : this.gates) {
+            if (subscription.worker == null)
+                subscription.readTo(published);
+        }
+    }
+
+    /** returns the number of events published so far */
+    public long published() {
+        return this.cursor.get() + 1;
+    }
+
+    /** returns the number of times the publisher had to wait for a worker to make room */
+    public long waits() {
+        return this.waits;
+    }
+
+    /** dispatches what is left, then stops the workers once they have read every event */
+    @Override
+    public void close() {
+        this.dispatch();
+        this.closed = true;
+        for (Subscription subscription : this.gates) {
+            if (subscription.worker == null)
+                continue;
+            LockSupport.unpark(subscription.worker);
+            try {
+                subscription.worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Subscription add(Subscription subscription) {
+        // a new subscriber only sees events published after it joins
+        subscription.sequence.set(this.cursor.get());
+        this.subscriptions.add(subscription);
+        this.gates = this.subscriptions.toArray(new Subscription[0]);
+        return subscription;
+    }
+
+    private void publish(int kind, long tick, long first, long second) {
+        long next = this.cursor.get() + 1;
+        this.awaitSlot(next);
+
+        int slot = (int) next & this.mask;
+        this.kinds[slot] = kind;
+        this.ticks[slot] = tick;
+        this.firsts[slot] = first;
+        this.seconds[slot] = second;
+        // publishing the cursor after the slot is written lets the workers see the whole event
+        this.cursor.lazySet(next);
+    }
+
+    /** waits until every subscriber has read the event the given sequence will overwrite */
+    private void awaitSlot(long next) {
+        long wrapPoint = next - this.mask - 1;
+        for (Subscription subscription : this.gates) {
+            if (subscription.sequence.get() >= wrapPoint)
+                continue;
+            if (subscription.worker == null) {
+                subscription.readTo(this.cursor.get());
+                continue;
+            }
+            this.waits++;
+            while (subscription.sequence.get() < wrapPoint) {
+                LockSupport.unpark(subscription.worker);
+                LockSupport.parkNanos(idleNanos);
+            }
+        }
+    }
+
+    private void deliver(Subscriber subscriber, long sequence) {
+        int slot = (int) sequence & this.mask;
+        long tick = this.ticks[slot];
+        long first = this.firsts[slot];
+        long second = this.seconds[slot];
+        switch (this.kinds[slot]) {
+            case MOVED -> subscriber.moved(tick, (int) first, (int) second);
+            case MOVE_UNDONE -> subscriber.moveUndone(tick, (int) first, (int) second);
+            case RESET -> subscriber.reset(tick, MazeConfig.Difficulty.values()[(int) first], second);
+            case WON -> subscriber.won(tick, (int) first, Double.longBitsToDouble(second));
+            default -> subscriber.paused(tick, first != 0);
+        }
+    }
+
+    /**
+     * A subscriber's place in the bus: the last event it has read, and the thread reading for it if it has one.
+     * */
+    public final class Subscription {
+        private final Subscriber subscriber;
+        private final AtomicLong sequence = new AtomicLong(-1);
+        private final Thread worker;
+
+        private Subscription(Subscriber subscriber, String threadName) {
+            this.subscriber = subscriber;
+            if (threadName == null) {
+                this.worker = null;
+            } else {
+                this.worker = new Thread(this::work, threadName);
+                this.worker.setDaemon(true);
+            }
+        }
+
+        /** returns the number of events published that this subscriber hasn't read yet */
+        public long lag() {
+            return cursor.get() - this.sequence.get();
+        }
+
+        private void readTo(long published) {
+            long read = this.sequence.get();
+            for (long next = read + 1; next <= published; next++)
+                deliver(this.subscriber, next);
+            if (published > read)
+                this.sequence.lazySet(published);
+        }
+
+        private void work() {
+            while (true) {
+                // read closed before the cursor, so nothing published before closing is missed
+                boolean stopping = closed;
+                long published = cursor.get();
+                if (published > this.sequence.get())
+                    this.readTo(published);
+                else if (stopping)
+                    return;
+                else
+                    LockSupport.parkNanos(idleNanos);
+            }
+        }
+    }
+}
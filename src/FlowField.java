@@ -0,0 +1,201 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The direction to move from every cell of a maze to reach one target cell, usually the player,
+ * so any number of pursuers find their next step with a single array read.
+ * Directions are the maze's, UPSTAIRS and DOWNSTAIRS included, or NONE at the target and at cells that can't reach it.
+ *
+ * Retargeting runs one breadth first search from the target, O(cells) however many pursuers read the field,
+ * so every direction is on a shortest path.
+ * Following the target to a neighboring cell is O(1) in a perfect maze: the path from every other cell still runs
+ * through the old target, so only the old and new targets change direction.  A mask with rooms leaves more than one
+ * path between some cells, so the search notices the cycles and following always searches again.
+ * */
+public class FlowField {
+    public static final byte NONE = Byte.MIN_VALUE;
+
+    private final Maze maze;
+    private final int directionCount;
+    private final int floorCells;
+    private final byte[] directions;
+
+    // queue and visited bitset of the search, kept between searches so retargeting doesn't allocate
+    private final int[] queue;
+    private final long[] seen;
+
+    private int target = -1;
+    // set by the search when there is only one path between any two cells it reached
+    private boolean perfect;
+    private int searches;
+    private int follows;
+
+    public FlowField(Maze maze) {
+        this.maze = maze;
+        this.directionCount = maze.topology().directionCount();
+        this.floorCells = maze.floorCellCount();
+        this.directions = new byte[maze.cellCount()];
+        this.queue = new int[maze.cellCount()];
+        this.seen = new long[(maze.cellCount() + 63) >>> 6];
+        Arrays.fill(this.directions, NONE);
+    }
+
+    /** returns the cell every direction leads to, or -1 before the field has a target */
+    public int target() {
+        return this.target;
+    }
+
+    /** returns the direction to move from the cell towards the target, or NONE if it is the target or can't reach it */
+    public byte direction(int cell) {
+        return this.directions[cell];
+    }
+
+    /** returns the cell one move closer to the target, or -1 if the cell is the target or can't reach it */
+    public int next(int cell) {
+        byte direction = this.directions[cell];
+        return direction == NONE ? -1 : this.maze.move(cell, direction);
+    }
+
+    /** returns the number of full searches run so far */
+    public int searches() {
+        return this.searches;
+    }
+
+    /** returns the number of moves followed without a search so far */
+    public int follows() {
+        return this.follows;
+    }
+
+    /** points the field at a new target, following it in O(1) if it moved to a neighboring cell and searching otherwise */
+    public void follow(int cell) {
+        if (cell == this.target)
+            return;
+
+        int previous = this.target;
+        if (previous >= 0 && this.perfect) {
+            for (int direction = Maze.DOWNSTAIRS; direction < this.directionCount; direction++) {
+                if (this.maze.move(previous, direction) == cell) {
+                    this.directions[previous] = (byte) direction;
+                    this.directions[cell] = NONE;
+                    this.target = cell;
+                    this.follows++;
+                    return;
+                }
+            }
+        }
+        this.retarget(cell);
+    }
+
+    /** points the field at a new target with a breadth first search out from it */
+    public void retarget(int cell) {
+        Arrays.fill(this.directions, NONE);
+        Arrays.fill(this.seen, 0);
+        int head = 0;
+        int tail = 0;
+        this.queue[tail++] = cell;
+        this.seen[cell >>> 6] |= 1L << cell;
+
+        // every passage is seen once from each end, and a tree over the cells reached has one passage fewer than cells
+        long passageEnds = 0;
+        while (head < tail) {
+            int from = this.queue[head++];
+            for (int direction = Maze.DOWNSTAIRS; direction < this.directionCount; direction++) {
+                int neighbor = this.maze.move(from, direction);
+                if (neighbor < 0)
+                    continue;
+                passageEnds++;
+                if ((this.seen[neighbor >>> 6] & (1L << neighbor)) != 0)
+                    continue;
+
+                this.seen[neighbor >>> 6] |= 1L << neighbor;
+                this.directions[neighbor] = (byte) this.directionBack(neighbor, from, direction);
+                this.queue[tail++] = neighbor;
+            }
+        }
+        this.perfect = passageEnds == 2L * (tail - 1);
+        this.target = cell;
+        this.searches++;
+    }
+
+    /** returns the direction from a cell back to the one it was reached from by moving in the given direction */
+    private int directionBack(int cell, int from, int direction) {
+        if (direction == Maze.UPSTAIRS)
+            return Maze.DOWNSTAIRS;
+        if (direction == Maze.DOWNSTAIRS)
+            return Maze.UPSTAIRS;
+
+        int levelStart = this.maze.cellLevel(cell) * this.floorCells;
+        for (int back = 0; back < this.directionCount; back++) {
+            if (this.maze.topology().neighbor(cell - levelStart, back) == from - levelStart)
+                return back;
+        }
+        throw new IllegalStateException("Cell " + cell + " has no way back to " + from);
+    }
+
+    /**
+     * Times a crowd of pursuers chasing a randomly walking player.
+     * Usage: FlowField [pursuers] [maze size] [player moves]
+     * */
+    public static void main(String[] args) {
+        int pursuers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int playerMoves = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+        Random random = new Random(1);
+
+        long start = System.nanoTime();
+        Maze maze = new Maze(SquareTopology.of(size), 1, null, MazeConfig.Algorithm.PRIMS, 1);
+        System.out.printf("%dx%d maze generated in %.1f ms\n", size, size, (System.nanoTime() - start) / 1e6);
+
+        FlowField field = new FlowField(maze);
+        int[] cells = new int[pursuers];
+        for (int i = 0; i < pursuers; i++)
+            cells[i] = random.nextInt(maze.cellCount());
+
+        // warm up both the search and the per-cell lookups before timing
+        for (int i = 0; i < 20; i++)
+            field.retarget(random.nextInt(maze.cellCount()));
+
+        int searchRuns = 50;
+        start = System.nanoTime();
+        for (int i = 0; i < searchRuns; i++)
+            field.retarget(random.nextInt(maze.cellCount()));
+        double searchMillis = (System.nanoTime() - start) / 1e6 / searchRuns;
+
+        int player = maze.getStart();
+        field.retarget(player);
+        int searchesBefore = field.searches();
+        long followNanos = 0;
+        long stepNanos = 0;
+        int caught = 0;
+        for (int move = 0; move < playerMoves; move++) {
+            int next = -1;
+            while (next < 0)
+                next = maze.move(player, random.nextInt(maze.topology().directionCount()));
+            player = next;
+
+            // every pursuer steps once for each player move
+            long moveStart = System.nanoTime();
+            field.follow(player);
+            long stepStart = System.nanoTime();
+            for (int i = 0; i < pursuers; i++) {
+                int step = field.next(cells[i]);
+                if (step >= 0)
+                    cells[i] = step;
+            }
+            long stepEnd = System.nanoTime();
+            followNanos += stepStart - moveStart;
+            stepNanos += stepEnd - stepStart;
+        }
+        for (int cell : cells) {
+            if (cell == player)
+                caught++;
+        }
+
+        System.out.printf("full search: %.2f ms for %d cells, once per move shared by %d pursuers\n",
+                searchMillis, maze.cellCount(), pursuers);
+        System.out.printf("solving per pursuer would take about %.0f ms per move\n", searchMillis * pursuers);
+        System.out.printf("%d player moves: %.3f us to follow and %.3f ms to step every pursuer per move (%d searches, %d follows)\n",
+                playerMoves, followNanos / 1e3 / playerMoves, stepNanos / 1e6 / playerMoves, field.searches() - searchesBefore, field.follows());
+        System.out.printf("%d of %d pursuers on the player after %d moves\n", caught, pursuers, playerMoves);
+    }
+}
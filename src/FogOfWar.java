@@ -0,0 +1,161 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The cells of a maze a player has seen, one bit per cell.  From each cell the player stands in they see straight down
+ * every open corridor until a wall, and every cell seen stays revealed.
+ * Each move only scans the corridors through the new cell, so its cost depends on how long they are, not on the maze.
+ * On plain square grids the corridors along a row are found a word of east walls at a time, since a row's walls are consecutive bits.
+ * */
+public class FogOfWar {
+    /** Told about each cell as it is revealed. */
+    public interface Listener {
+        void revealed(int cell);
+    }
+
+    private final Maze maze;
+    private final long[] revealed;
+    private int revealedCount;
+    private Listener listener;
+
+    // the square grid's layout, or null for other topologies, which scan a cell at a time.  A torus is a square
+    // topology too, but its rows wrap around, which the row scan doesn't follow
+    private final SquareTopology square;
+
+    public FogOfWar(Maze maze) {
+        this.maze = maze;
+        this.revealed = new long[(maze.cellCount() + 63) >>> 6];
+        this.square = maze.topology().getClass() == SquareTopology.class ? (SquareTopology) maze.topology() : null;
+    }
+
+    /** sets the listener told about every cell revealed from now on, or null for none */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** returns the revealed bitset, one bit per cell. Must not be modified. */
+    public long[] revealed() {
+        return this.revealed;
+    }
+
+    public int revealedCount() {
+        return this.revealedCount;
+    }
+
+    public boolean isRevealed(int cell) {
+        return isRevealed(this.revealed, cell);
+    }
+
+    public static boolean isRevealed(long[] revealed, int cell) {
+        return (revealed[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /** reveals the cell and every cell seen from it down straight corridors, returning the number newly revealed */
+    public int reveal(int cell) {
+        int before = this.revealedCount;
+        this.revealRange(cell, cell);
+
+        if (this.square != null) {
+            this.scanRow(cell);
+            this.scanColumn(cell, SquareTopology.DOWN);
+            this.scanColumn(cell, SquareTopology.UP);
+        } else {
+            for (int direction = 0; direction < this.maze.topology().directionCount(); direction++)
+                this.scanColumn(cell, direction);
+        }
+        return this.revealedCount - before;
+    }
+
+    /** forgets every revealed cell */
+    public void clear() {
+        Arrays.fill(this.revealed, 0);
+        this.revealedCount = 0;
+    }
+
+    /**
+     * reveals the open stretch of the cell's row around it.  A cell's east wall is bit floorCell of its floor's east plane,
+     * and the rightmost column is treated as walled, so the stretch ends at the nearest set bits on either side.
+     * */
+    private void scanRow(int cell) {
+        long[] walls = this.maze.wallWords();
+        long[] lastColumn = this.square.lastColumnMask();
+        int level = this.maze.cellLevel(cell);
+        int levelStart = level * this.maze.floorCellCount();
+        int wallBase = level * this.maze.wordsPerLevel();
+        int floorCell = cell - levelStart;
+
+        // the first wall at or right of the cell
+        int index = floorCell >>> 6;
+        long word = (walls[wallBase + index] | lastColumn[index]) & (-1L << floorCell);
+        while (word == 0)
+            word = walls[wallBase + ++index] | lastColumn[index];
+        int last = (index << 6) + Long.numberOfTrailingZeros(word);
+
+        // and the first wall left of it, where the previous row's last column stops the scan at the start of this row
+        int first = 0;
+        if (floorCell > 0) {
+            index = (floorCell - 1) >>> 6;
+            word = (walls[wallBase + index] | lastColumn[index]) & (-1L >>> (63 - ((floorCell - 1) & 63)));
+            while (word == 0 && index > 0)
+                word = walls[wallBase + --index] | lastColumn[index];
+            if (word != 0)
+                first = (index << 6) + 64 - Long.numberOfLeadingZeros(word);
+        }
+
+        this.revealRange(levelStart + first, levelStart + last);
+    }
+
+    /** reveals the cells seen from the cell in one direction, a cell at a time, stopping if it wraps back around to the cell */
+    private void scanColumn(int cell, int direction) {
+        for (int next = this.maze.move(cell, direction); next >= 0 && next != cell; next = this.maze.move(next, direction))
+            this.revealRange(next, next);
+    }
+
+    /** reveals every cell from first to last inclusive, a word at a time */
+    private void revealRange(int first, int last) {
+        for (int index = first >>> 6; index <= last >>> 6; index++) {
+            long mask = -1L;
+            if (index == first >>> 6)
+                mask &= -1L << first;
+            if (index == last >>> 6)
+                mask &= -1L >>> (63 - (last & 63));
+
+            long word = this.revealed[index];
+            long added = mask & ~word;
+            this.revealedCount += Long.bitCount(added);
+            this.revealed[index] = word | mask;
+
+            if (this.listener != null) {
+                for (; added != 0; added &= added - 1)
+                    this.listener.revealed((index << 6) + Long.numberOfTrailingZeros(added));
+            }
+        }
+    }
+
+    /**
+     * Times revealing along a random walk.
+     * Usage: FogOfWar [maze size] [moves]
+     * */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Random random = new Random(1);
+
+        Maze maze = new Maze(SquareTopology.of(size), 1, null, MazeConfig.Algorithm.PRIMS, 1);
+        FogOfWar fog = new FogOfWar(maze);
+
+        int cell = maze.getStart();
+        long start = System.nanoTime();
+        for (int move = 0; move < moves; move++) {
+            int next = -1;
+            while (next < 0)
+                next = maze.move(cell, random.nextInt(maze.topology().directionCount()));
+            cell = next;
+            fog.reveal(cell);
+        }
+        double nanos = System.nanoTime() - start;
+
+        System.out.printf("%dx%d maze, %d moves: %.0f ns per move, %d cells revealed\n",
+                size, size, moves, nanos / moves, fog.revealedCount());
+    }
+}
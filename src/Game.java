@@ -1,48 +1,114 @@
-import edu.usu.graphics.*;
+import edu.usu.graphics.Rectangle;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import static org.lwjgl.glfw.GLFW.*;
 
 public class Game {
-    private final Graphics2D graphics;
+    private final Renderer renderer;
+    private final InputSource input;
+    private final Clock clock;
+    private final MazePool mazePool = new MazePool(MazeConfig.mazePoolDepth);
+    private PreparedMaze prepared;
     private Maze maze;
+    private MazeLayout layout;
+
+    // maze being carved a few cells per frame while generation is watched, its walls indexed by edge,
+    // and the edges carved so far in the order they were carved
+    private Maze generatingMaze;
+    private List<Rectangle> generatingWalls;
+    private int[] carvedWalls;
+    private int carvedCount;
+    private boolean watchGeneration;
     private MazeConfig.Difficulty difficulty;
 
-    // color palette retrieved from https://www.color-hex.com/color-palette/1055758
-    private final Color wallColor = new Color(211/255f, 211/255f, 211/255f);
-    private final Color playerColor = new Color(255/255f, 244/255f, 230/255f);
-    private final Color solutionColor = new Color(0/255f, 106/255f, 108/255f);
-    private final Color breadcrumbColor = new Color(0/255f, 79/255f, 81/255f);;
-    private final Color fontColor = new Color(211/255f, 211/255f, 211/255f);
+    // the log the session is being recorded to, or the mazes of the log being replayed
+    private SessionLog.Writer recording;
+    private Iterator<SessionLog.MazeEntry> replayMazes;
 
-    // background image retrieved from https://www.rawpixel.com/image/12226156/image-background-texture-aesthetic
-    private final Texture backgroundImage = new Texture("./resources/images/background.jpg");
-    private Rectangle backgroundRect;
+    private final KeyboardInput inputHandler;
+    // what happens in the game, for anything that reacts to it without being part of the simulation
+    private final EventBus events = new EventBus(MazeConfig.eventBusCapacity);
+    // prepared rectangles of the floor being shown
+    private List<Rectangle> walls = List.of();
+    private List<Rectangle> stairs = List.of();
 
-    private Font textFont;
+    // cells the player has seen while fog of war is on, and the walls next to them that are drawn
+    private boolean fogOfWar;
+    private FogOfWar fog;
+    private RevealedWalls revealedWalls;
 
-    private final KeyboardInput inputHandler;
-    private final ArrayList<Rectangle> walls = new ArrayList<>();
+    // number of floors in new mazes, and the floor currently shown
+    private int levels;
+    private int currentLevel;
 
     private Player player;
     private int startCell;
     private boolean gameWon;
 
-    private Rectangle pauseBar;
+    private Rectangle backgroundRect;
     private boolean isPaused;
 
-    private final LinkedList<Rectangle> solutionPath = new LinkedList<>();
-    private Rectangle goal;
+    private RectangleStack solutionPath = RectangleStack.empty();
+    // goals on the floor being shown
+    private final ArrayList<Rectangle> goals = new ArrayList<>();
+    private boolean goalsChanged;
     private boolean displaySolution;
 
-    private final ArrayList<Rectangle> breadcrumbs = new ArrayList<>();
+    // breadcrumb squares of each floor, and how many visited cells already have a square
+    private final ArrayList<RectangleStack> breadcrumbs = new ArrayList<>();
+    private int breadcrumbCount;
     private boolean displayBreadcrumbs;
 
     private Rectangle hint;
+    private boolean hintChanged;
     private boolean displayHint;
 
+    // bots racing the player through the same maze, and the buffers their markers are handed to the render thread in
+    private boolean raceCrowd;
+    private AgentSwarm crowd;
+    private final TripleBuffer<AgentSwarm.Frame> crowdFrames = new TripleBuffer<>(AgentSwarm.Frame::new);
+
+    // enemies chasing the player, and their markers in the last snapshot, made again only after they step
+    private boolean chase;
+    private Pursuers pursuers;
+    private List<Rectangle> publishedPursuers;
+    private int publishedPursuerSteps;
+    private int publishedPursuerLevel;
+
+    // simulation ticks run so far, and real time skipped by ticks too slow to catch up on
+    private long ticks;
+    private double droppedTime;
+
+    // the simulation runs on its own thread and hands the render thread the latest snapshot of the game
+    private final AtomicReference<GameSnapshot> snapshot = new AtomicReference<>();
+    private volatile boolean running;
+    private volatile Throwable simulationError;
+
+    // copies of what the last snapshot holds, made again only after it changes; the breadcrumbs and
+    // solution path are never changed once published, so they are handed over without copying
+    private List<Rectangle> publishedGoals = List.of();
+    private Rectangle publishedHint;
+    private Rectangle publishedPlayerFrom;
+    private Rectangle publishedPlayerTo;
+    private boolean scoresChanged;
+    private List<Integer> publishedHighScores;
+    private List<Double> publishedBestTimes;
+
+    // where the player is before and after the last tick, reused every publish
+    private final Rectangle playerFrom = new Rectangle(0, 0, 0, 0);
+    private final Rectangle playerTo = new Rectangle(0, 0, 0, 0);
+
+    // number of overlay rebuilds and deltas applied since the last snapshot, every overlay change counts one
+    private int frameRebuilds;
+
     private final int correctSquarePoints = 5;
     private final int foundGoalPoints = 10;
     private final int incorrectSquarePoints = -6;
@@ -56,23 +122,29 @@ public class Game {
     private boolean displayHighScores;
     private boolean displayCredits;
 
-    public Game(Graphics2D graphics) {
-        this.graphics = graphics;
-        this.inputHandler = new KeyboardInput(this.graphics.getWindow());
+    public Game(Renderer renderer, InputSource input, Clock clock) {
+        this.renderer = renderer;
+        this.input = input;
+        this.clock = clock;
+        this.inputHandler = new KeyboardInput(input, clock);
     }
 
     public void initialize() {
-        this.maze = new Maze(MazeConfig.Difficulty.EASY);
-        this.maze.enableShortestPathPrint();
         this.difficulty = MazeConfig.Difficulty.EASY;
+        this.levels = 1;
+        if (this.replayMazes == null)
+            this.mazePool.prefill(this.levels);
+        this.prepared = this.takeMaze();
+        this.maze = this.prepared.maze();
+        this.maze.enableShortestPathPrint();
+        this.layout = this.prepared.layout();
+        this.currentLevel = 0;
 
         this.isPaused = false;
         this.displayBreadcrumbs = false;
         this.displaySolution = false;
         this.displayHint = false;
 
-        this.pauseBar = new Rectangle(-0.3f, -0.2f, 0.6f, 0.2f, 0.8f);
-
         this.currentScore = 0;
         this.highScores = new ArrayList<>();
 
@@ -83,62 +155,149 @@ public class Game {
             this.highScores.add(0);
             this.bestTimes.add(0.0);
         }
+        this.scoresChanged = true;
 
-        textFont = new Font("Arial", java.awt.Font.PLAIN, 42, false);
-
-        this.startCell = MazeConfig.startCell;
-        this.player = new Player(this.difficulty, this.startCell, this.maze.solve());
-
-        this.goal = MazeConfig.createMazeRect(MazeConfig.goalLeft(difficulty), MazeConfig.goalTop(difficulty));
+        this.startCell = this.maze.getStart();
+        this.player = new Player(this.layout, this.maze);
+        this.player.setListener(new PlayerEvents());
 
-        updateSolutionPath();
-        updateBreadcrumbs();
+        this.createGoals();
+        this.rebuildOverlays();
 
         this.registerInputCommands();
         this.makeMazeWalls();
         this.createMazeBackground();
+        this.publish(this.clock.nanoTime());
+
+        if (MazeConfig.verbose) {
+            System.out.println(this.maze);
+            this.events.subscribe(new ConsoleEvents());
+        }
+        this.events.reset(this.ticks, this.difficulty, this.maze.seed());
+    }
+
+    /** records the session to the log, from the first maze on; call before initialize */
+    public void record(SessionLog.Writer writer) {
+        this.recording = writer;
+        this.inputHandler.setRecorder((key, pressed, nanos) -> this.recording.key(this.ticks, key, pressed));
+    }
+
+    /** plays the mazes of a recorded session instead of new ones; call before initialize */
+    public void replay(SessionLog log) {
+        this.replayMazes = log.mazes().iterator();
+    }
+
+    /** ends the recording with where the session is now, and returns that */
+    public SessionLog.Result finishRecording() {
+        SessionLog.Result result = this.result();
+        this.recording.end(result);
+        return result;
+    }
 
-        System.out.println(this.maze);
+    /** returns where the session is now: the ticks run, the player's cell, the score and the time */
+    public SessionLog.Result result() {
+        return new SessionLog.Result(this.ticks, this.player.getCurrentCell(), this.currentScore, this.currentTime);
+    }
+
+    public long ticks() {
+        return this.ticks;
+    }
+
+    /** returns the bus the game publishes its events to; subscribe before the game starts to see them all */
+    public EventBus events() {
+        return this.events;
+    }
+
+    private void createGoals() {
+        this.goals.clear();
+        for (int goalCell : this.maze.getGoals()) {
+            if (this.maze.cellLevel(goalCell) != this.currentLevel)
+                continue;
+            this.goals.add(this.layout.createMarker(goalCell));
+        }
+        this.goalsChanged = true;
     }
 
     private void createMazeBackground() {
-        int mazeSize = MazeConfig.mazeSize(difficulty);
-        float wallWidth = MazeConfig.wallWidth(difficulty);
         float bgRenderValue = 0.4f;
+        this.backgroundRect = this.layout.createBackground(bgRenderValue);
+    }
 
-        this.backgroundRect = new Rectangle(
-                MazeConfig.startLeft(difficulty) + wallWidth/2,
-                MazeConfig.startTop(difficulty) + wallWidth/2,
-                MazeConfig.cellLength(difficulty) * mazeSize + wallWidth,
-                MazeConfig.cellLength(difficulty) * mazeSize + wallWidth,
-                bgRenderValue
-        );
-    }
-
-    private void updateSolutionPath() {
-        this.solutionPath.clear();
-        for (int cell : this.player.getSolutionPath()) {
-            float left = MazeConfig.cellLeft(this.maze.cellRow(cell), difficulty);
-            float top = MazeConfig.cellTop(this.maze.cellCol(cell), difficulty);
-            this.solutionPath.push(MazeConfig.createMazeRect(left, top));
+    /** rebuilds every overlay from scratch, for a new maze or player */
+    private void rebuildOverlays() {
+        this.rebuildSolutionPath();
+        this.moveHint();
+        this.clearBreadcrumbs();
+        this.updateBreadcrumbs();
+    }
+
+    /** rebuilds the squares of the solution path on the floor being shown, with the square of the path's head first */
+    private void rebuildSolutionPath() {
+        // the cursor starts at the head, which has to be pushed last
+        ArrayList<Rectangle> squares = new ArrayList<>();
+        CellPath.Cursor path = this.player.getSolutionPath().cursor();
+        while (path.hasNext()) {
+            int cell = path.next();
+            if (this.maze.cellLevel(cell) == this.currentLevel)
+                squares.add(this.layout.createMarker(cell));
+        }
+        this.solutionPath = RectangleStack.empty();
+        for (int i = squares.size() - 1; i >= 0; i--)
+            this.solutionPath = this.solutionPath.push(squares.get(i));
+        this.frameRebuilds++;
+    }
+
+    private void moveHint() {
+        // the hint square should be the next square towards the nearest goal
+        if (this.gameWon)
+            return;
+
+        int hintCell = this.maze.nextStepToGoal(this.player.getCurrentCell());
+        // if the next square is on another floor, point at the stairs instead
+        if (hintCell < 0 || this.maze.cellLevel(hintCell) != this.currentLevel)
+            hintCell = this.player.getCurrentCell();
+
+        if (this.hint == null) {
+            this.hint = this.layout.createMarker(hintCell);
+        } else {
+            this.hint.left = this.layout.cellX(hintCell);
+            this.hint.top = this.layout.cellY(hintCell);
+            this.hint.width = this.layout.markerLength();
+            this.hint.height = this.layout.markerLength();
         }
-        // the hint square should be the second to last square on the solution path
-        if (!gameWon)
-            this.hint = solutionPath.get(solutionPath.size()-2);
+        this.hintChanged = true;
+        this.frameRebuilds++;
     }
 
+    /** adds a square for each cell visited for the first time since the last update */
     private void updateBreadcrumbs() {
-        this.breadcrumbs.clear();
-        for (int cell : this.player.getBreadcrumbs()) {
-            float left = MazeConfig.cellLeft(this.maze.cellRow(cell), difficulty);
-            float top = MazeConfig.cellTop(this.maze.cellCol(cell), difficulty);
-            this.breadcrumbs.add(MazeConfig.createMazeRect(left, top));
+        Breadcrumbs visited = this.player.getBreadcrumbs();
+        for (; this.breadcrumbCount < visited.count(); this.breadcrumbCount++) {
+            int cell = visited.cellAt(this.breadcrumbCount);
+            int level = this.maze.cellLevel(cell);
+            this.breadcrumbs.set(level, this.breadcrumbs.get(level).push(this.layout.createMarker(cell)));
+            this.frameRebuilds++;
         }
     }
 
+    /** removes the square of the cell whose first visit was just taken back, which is the newest square of its floor */
+    private void removeLastBreadcrumb(int cell) {
+        int level = this.maze.cellLevel(cell);
+        this.breadcrumbs.set(level, this.breadcrumbs.get(level).pop());
+        this.breadcrumbCount--;
+        this.frameRebuilds++;
+    }
+
+    private void clearBreadcrumbs() {
+        this.breadcrumbs.clear();
+        for (int level = 0; level < this.maze.levels(); level++)
+            this.breadcrumbs.add(RectangleStack.empty());
+        this.breadcrumbCount = 0;
+    }
+
     private void registerInputCommands() {
         inputHandler.registerCommand(GLFW_KEY_ESCAPE, false, (double elapsedTime) -> {
-            glfwSetWindowShouldClose(graphics.getWindow(), true);
+            this.renderer.requestClose();
         });
         inputHandler.registerCommand(GLFW_KEY_F1, true, (double elapsedTime) -> {
             if (!this.isPaused) {
@@ -164,6 +323,12 @@ public class Game {
                 this.resetMaze();
             }
         });
+        inputHandler.registerCommand(GLFW_KEY_F11, true, (double elapsedTime) -> {
+            if (!this.isPaused && MazeConfig.isAvailable(MazeConfig.Difficulty.CUSTOM)) {
+                this.difficulty = MazeConfig.Difficulty.CUSTOM;
+                this.resetMaze();
+            }
+        });
         inputHandler.registerCommand(GLFW_KEY_F5, true, (double elapsedTime) -> {
             if (!this.isPaused)
                 this.displayHighScores = !this.displayHighScores;
@@ -172,9 +337,41 @@ public class Game {
 
             this.displayCredits = !this.displayCredits;
         });
+        inputHandler.registerCommand(GLFW_KEY_F7, true, (double elapsedTime) -> {
+            if (!this.isPaused) {
+                this.levels = this.levels == 1 ? MazeConfig.multiLevelFloors : 1;
+                this.resetMaze();
+            }
+        });
+        inputHandler.registerCommand(GLFW_KEY_F8, true, (double elapsedTime) -> {
+            if (!this.isPaused) {
+                this.watchGeneration = !this.watchGeneration;
+                this.resetMaze();
+            }
+        });
+        inputHandler.registerCommand(GLFW_KEY_F9, true, (double elapsedTime) -> {
+            if (!this.isPaused) {
+                this.raceCrowd = !this.raceCrowd;
+                this.resetMaze();
+            }
+        });
+        inputHandler.registerCommand(GLFW_KEY_F12, true, (double elapsedTime) -> {
+            if (!this.isPaused) {
+                this.chase = !this.chase;
+                this.resetMaze();
+            }
+        });
+        inputHandler.registerCommand(GLFW_KEY_F10, true, (double elapsedTime) -> {
+            if (!this.isPaused) {
+                this.fogOfWar = !this.fogOfWar;
+                this.resetMaze();
+            }
+        });
         inputHandler.registerCommand(GLFW_KEY_SPACE, true, (double elapsedTime) -> {
-            if (!this.gameWon)
+            if (!this.gameWon) {
                 this.isPaused = !this.isPaused;
+                this.events.paused(this.ticks, this.isPaused);
+            }
         });
 
         inputHandler.registerCommand(GLFW_KEY_W, false, this::moveUp);
@@ -192,6 +389,16 @@ public class Game {
         inputHandler.registerCommand(GLFW_KEY_K, false, this::moveDown);
         inputHandler.registerCommand(GLFW_KEY_L, false, this::moveRight);
 
+        inputHandler.registerCommand(GLFW_KEY_E, false, this::moveUpstairs);
+        inputHandler.registerCommand(GLFW_KEY_Q, false, this::moveDownstairs);
+        inputHandler.registerCommand(GLFW_KEY_O, false, this::moveUpstairs);
+        inputHandler.registerCommand(GLFW_KEY_U, false, this::moveDownstairs);
+        inputHandler.registerCommand(GLFW_KEY_PAGE_UP, false, this::moveUpstairs);
+        inputHandler.registerCommand(GLFW_KEY_PAGE_DOWN, false, this::moveDownstairs);
+
+        inputHandler.registerCommand(GLFW_KEY_Z, false, this::undoMove);
+        inputHandler.registerCommand(GLFW_KEY_BACKSPACE, false, this::undoMove);
+
         inputHandler.registerCommand(GLFW_KEY_P, true, (double elapsedTime) -> {
             if (!this.isPaused)
                 this.displaySolution = !this.displaySolution;
@@ -209,133 +416,403 @@ public class Game {
     }
 
     private void resetMaze() {
-        this.maze = new Maze(this.difficulty);
+        if (this.watchGeneration)
+            this.startGenerating();
+        else
+            this.startMaze(this.takeMaze());
+    }
+
+    /** returns the next maze to play: the next one in the log being replayed, otherwise one from the pool */
+    private PreparedMaze takeMaze() {
+        if (this.replayMazes != null)
+            return PreparedMaze.prepare(this.replayMazes.next().create());
+
+        PreparedMaze taken = this.mazePool.take(this.difficulty, this.levels);
+        Maze maze = taken.maze();
+        this.recordMaze(new SessionLog.MazeEntry(this.ticks, maze.seed(), maze.algorithm(), this.difficulty, maze.topology().width(), maze.levels()));
+        return taken;
+    }
+
+    private void recordMaze(SessionLog.MazeEntry maze) {
+        if (this.recording != null)
+            this.recording.maze(maze);
+    }
+
+    private void startMaze(PreparedMaze prepared) {
+        this.prepared = prepared;
+        this.maze = this.prepared.maze();
+        this.layout = this.prepared.layout();
+        this.currentLevel = 0;
         this.gameWon = false;
         this.currentTime = 0;
         this.displaySolution = false;
         this.displayBreadcrumbs = false;
         this.displayHint = false;
 
-        this.goal = MazeConfig.createMazeRect(MazeConfig.goalLeft(difficulty), MazeConfig.goalTop(difficulty));
-        this.player.resetPlayer(this.difficulty, this.maze.solve());
-
+        this.startCell = this.maze.getStart();
+        this.createGoals();
         this.currentScore = 0;
+        this.pursuers = this.chase ? new Pursuers(this.maze, MazeConfig.pursuerCount, this.startCell, this.maze.seed()) : null;
+        this.publishedPursuers = null;
+        this.fog = null;
+        this.revealedWalls = null;
+        if (this.fogOfWar) {
+            this.fog = new FogOfWar(this.maze);
+            this.revealedWalls = new RevealedWalls(this.prepared);
+            this.fog.setListener(this.revealedWalls);
+        }
+        // the player's reset event rebuilds the overlays and reveals the start
+        this.player.resetPlayer(this.layout, this.maze);
 
-        this.updateSolutionPath();
-        this.updateBreadcrumbs();
         this.createMazeBackground();
         this.makeMazeWalls();
+        this.events.reset(this.ticks, this.difficulty, this.maze.seed());
+        this.crowd = this.raceCrowd ? new AgentSwarm(this.maze, MazeConfig.crowdAgents, this.maze.seed()) : null;
     }
 
-    private void makeMazeWalls() {
-        this.walls.clear();
-
-        float cellLength = MazeConfig.cellLength(difficulty);
-        float left = MazeConfig.startLeft(difficulty);
-        float top = MazeConfig.startTop(difficulty);
-
-        for (int cell = 0; cell < this.maze.cellCount(); cell++) {
-            // if cell is on the leftmost column
-            if (cell % this.maze.size() == 0)
-                this.walls.add(MazeConfig.createMazeWall(left, top, true, this.difficulty));
-            // if wall between this cell and the cell to the right
-            else if (this.maze.hasWallBetween(cell-1, cell))
-                this.walls.add(MazeConfig.createMazeWall(left, top, true, this.difficulty));
-            // if cell is on topmost row
-            if (cell < this.maze.size())
-                this.walls.add(MazeConfig.createMazeWall(left, top, false, this.difficulty));
-            // if wall between this cell and the cell directly above
-            else if (this.maze.hasWallBetween(cell-this.maze.size(), cell))
-                this.walls.add(MazeConfig.createMazeWall(left, top, false, this.difficulty));
-
-            // if cell is on bottommost row
-            if (cell + this.maze.size() >= this.maze.cellCount())
-                this.walls.add(MazeConfig.createMazeWall(left, top+cellLength, false, this.difficulty));
-
-            // if cell is on rightmost columns
-            if ((cell+1) % this.maze.size() == 0) {
-                this.walls.add(MazeConfig.createMazeWall(left+cellLength, top, true, this.difficulty));
-                left = -(cellLength * this.maze.size())/2;
-                top += cellLength;
-                continue;
-            }
-            left += cellLength;
+    /** starts carving a new maze a few cells per frame, beginning with every wall in place */
+    private void startGenerating() {
+        SessionLog.MazeEntry entry = this.replayMazes != null
+                ? this.replayMazes.next()
+                : new SessionLog.MazeEntry(this.ticks, new Random().nextLong(), MazeConfig.Algorithm.PRIMS, this.difficulty,
+                        MazeConfig.mazeSize(this.difficulty), this.levels);
+        this.recordMaze(entry);
+
+        SquareTopology topology = entry.topology();
+        this.generatingMaze = entry.createIncremental();
+        this.crowd = null;
+        this.fog = null;
+        this.revealedWalls = null;
+        this.pursuers = null;
+        this.publishedPursuers = null;
+        this.layout = MazeLayout.of(this.generatingMaze);
+        this.currentLevel = 0;
+        this.createMazeBackground();
+
+        // the east and south wall of each cell sit at its edge ids, followed by the top and left walls of the maze
+        int width = topology.width();
+        int outerWalls = topology.edgeCount();
+        Rectangle[] walls = new Rectangle[outerWalls + width + topology.height()];
+        for (int cell = 0; cell < topology.cellCount(); cell++) {
+            walls[cell] = this.layout.createWall(cell % width + 1, cell / width, true);
+            walls[topology.planeStride() + cell] = this.layout.createWall(cell % width, cell / width + 1, false);
         }
+        for (int column = 0; column < width; column++)
+            walls[outerWalls + column] = this.layout.createWall(column, 0, false);
+        for (int row = 0; row < topology.height(); row++)
+            walls[outerWalls + width + row] = this.layout.createWall(0, row, true);
+        this.generatingWalls = Collections.unmodifiableList(Arrays.asList(walls));
+
+        // only the first floor is shown while carving; carved walls are only ever appended to the log,
+        // so a snapshot can share it and read the part that was written before it was published
+        this.carvedWalls = new int[64];
+        this.carvedCount = 0;
+        this.generatingMaze.setCarveListener((level, edge) -> {
+            if (level != 0)
+                return;
+            if (this.carvedCount == this.carvedWalls.length)
+                this.carvedWalls = Arrays.copyOf(this.carvedWalls, this.carvedCount * 2);
+            this.carvedWalls[this.carvedCount++] = edge;
+        });
+    }
+
+    private void updateGeneration() {
+        // a recorded or replayed session carves a fixed number of cells per tick, so the tick the maze is finished on
+        // doesn't depend on how fast the machine is
+        boolean logged = this.recording != null || this.replayMazes != null;
+        long nanosBudget = logged ? Long.MAX_VALUE : MazeConfig.generationFrameNanos;
+        int maxCells = Math.max(MazeConfig.generationCellsPerFrame, this.generatingMaze.cellCount() / MazeConfig.generationFrames);
+        if (!this.generatingMaze.step(maxCells, nanosBudget))
+            return;
+
+        Maze generated = this.generatingMaze;
+        generated.setCarveListener(null);
+        this.generatingMaze = null;
+        this.generatingWalls = null;
+        this.carvedWalls = null;
+        this.startMaze(PreparedMaze.prepare(generated));
+    }
+
+    private void makeMazeWalls() {
+        this.walls = this.prepared.walls(this.currentLevel);
+        this.stairs = this.prepared.stairs(this.currentLevel);
     }
 
     public void shutdown() {
+        if (MazeConfig.verbose) {
+            System.out.printf("%d ticks simulated, %.2f s skipped by slow ticks\n", this.ticks, this.droppedTime);
+            System.out.printf("%d key presses, %.2f ms average and %.2f ms max until handled, %d events dropped\n",
+                    this.inputHandler.presses(), this.inputHandler.averageLatencyMillis(),
+                    this.inputHandler.maxLatencyMillis(), this.input.droppedEvents());
+            System.out.println(this.mazePool);
+            System.out.println(JobSystem.shared());
+        }
+        this.mazePool.shutdown();
+        this.events.close();
     }
 
+    /**
+     * Runs the simulation on its own thread while this thread, which owns the window, polls input and draws.
+     * Drawing only reads the latest published snapshot, so a slow tick holds back the next snapshot, not the next frame.
+     * */
     public void run() {
-        // Grab the first time
-        double previousTime = glfwGetTime();
+        Thread simulation = new Thread(this::simulate, "simulation");
+        simulation.setDaemon(true);
+        this.running = true;
+        simulation.start();
+
+        while (!this.renderer.shouldClose() && this.simulationError == null) {
+            this.input.poll();
+            // results of background jobs that need the window's thread, like texture uploads, are applied between frames
+            JobSystem.shared().runCompletions();
+            this.renderer.render(this.snapshot.get(), this.clock.nanoTime());
+        }
 
-        while (!graphics.shouldClose()) {
-            double currentTime = glfwGetTime();
-            double elapsedTime = currentTime - previousTime;    // elapsed time is in seconds
-            previousTime = currentTime;
+        this.running = false;
+        try {
+            simulation.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.simulationError != null)
+            throw new IllegalStateException("Simulation thread failed", this.simulationError);
+    }
+
+    /** returns the snapshot published after the latest tick */
+    public GameSnapshot latestSnapshot() {
+        return this.snapshot.get();
+    }
+
+    /**
+     * Runs the given number of ticks back to back on this thread, without waiting for real time,
+     * and renders a snapshot after each.  Headless games run this way, with a manual clock that is moved one tick per tick.
+     * */
+    public void runTicks(long ticks) {
+        long tickNanos = 1_000_000_000L / MazeConfig.ticksPerSecond;
+        for (long tick = 0; tick < ticks && !this.renderer.shouldClose(); tick++) {
+            this.input.poll();
+            if (this.clock instanceof ManualClock manualClock)
+                manualClock.advance(tickNanos);
+            this.tick(tickNanos / 1e9);
+
+            long now = this.clock.nanoTime();
+            this.publish(now);
+            this.renderer.render(this.snapshot.get(), now);
+        }
+    }
 
-            processInput(elapsedTime);
-            update(elapsedTime);
-            render(elapsedTime);
+    /** runs fixed ticks for as long as the game is running, publishing a snapshot after each batch of them */
+    private void simulate() {
+        long tickNanos = 1_000_000_000L / MazeConfig.ticksPerSecond;
+        // stalls longer than this only run this many ticks, so a stall can't snowball into ever longer ones
+        long maxElapsedNanos = tickNanos * MazeConfig.maxTicksPerFrame;
+        long accumulator = 0;
+        long previousTime = this.clock.nanoTime();
+
+        try {
+            while (this.running) {
+                long currentTime = this.clock.nanoTime();
+                long elapsedTime = currentTime - previousTime;
+                previousTime = currentTime;
+
+                if (elapsedTime > maxElapsedNanos) {
+                    this.droppedTime += (elapsedTime - maxElapsedNanos) / 1e9;
+                    elapsedTime = maxElapsedNanos;
+                }
+                accumulator += elapsedTime;
+
+                boolean ticked = false;
+                while (accumulator >= tickNanos) {
+                    this.tick(tickNanos / 1e9);
+                    accumulator -= tickNanos;
+                    ticked = true;
+                }
+                if (ticked)
+                    this.publish(this.clock.nanoTime());
+
+                LockSupport.parkNanos(tickNanos - accumulator);
+            }
+        } catch (Throwable e) {
+            this.simulationError = e;
         }
     }
 
+    /** hands the render thread a snapshot of the game as it is now, copying only what changed since the last one */
+    private void publish(long nanos) {
+        // goal squares are never moved, so a shallow copy is enough
+        if (this.goalsChanged)
+            this.publishedGoals = List.copyOf(this.goals);
+        this.goalsChanged = false;
+        if (this.hintChanged || this.publishedHint == null)
+            this.publishedHint = GameSnapshot.copyOf(this.hint);
+        this.hintChanged = false;
+
+        if (this.pursuers == null)
+            this.publishedPursuers = null;
+        else if (this.publishedPursuers == null || this.pursuers.steps() != this.publishedPursuerSteps
+                || this.currentLevel != this.publishedPursuerLevel) {
+            this.publishedPursuers = this.pursuers.markers(this.layout, this.currentLevel);
+            this.publishedPursuerSteps = this.pursuers.steps();
+            this.publishedPursuerLevel = this.currentLevel;
+        }
+
+        if (this.crowd != null) {
+            this.crowd.writeFrame(this.crowdFrames.back(), this.layout, this.currentLevel);
+            this.crowdFrames.publish();
+        }
+
+        this.player.interpolate(0, this.playerFrom);
+        this.player.interpolate(1, this.playerTo);
+        if (!samePlace(this.playerFrom, this.publishedPlayerFrom))
+            this.publishedPlayerFrom = GameSnapshot.copyOf(this.playerFrom);
+        if (!samePlace(this.playerTo, this.publishedPlayerTo))
+            this.publishedPlayerTo = GameSnapshot.copyOf(this.playerTo);
+
+        if (this.scoresChanged) {
+            this.publishedHighScores = List.copyOf(this.highScores);
+            this.publishedBestTimes = List.copyOf(this.bestTimes);
+        }
+        this.scoresChanged = false;
+
+        this.snapshot.set(new GameSnapshot(
+                this.backgroundRect,
+                this.walls,
+                this.revealedWalls != null ? this.revealedWalls.shown(this.currentLevel) : null,
+                this.stairs,
+                this.generatingWalls,
+                this.carvedWalls,
+                this.carvedCount,
+                this.breadcrumbs.get(this.currentLevel),
+                this.solutionPath,
+                this.publishedGoals,
+                this.publishedHint,
+                this.publishedPlayerFrom,
+                this.publishedPlayerTo,
+                this.displayBreadcrumbs,
+                this.displaySolution,
+                this.displayHint,
+                this.levels,
+                this.currentLevel,
+                this.currentScore,
+                this.currentTime,
+                this.gameWon,
+                this.isPaused,
+                this.displayHighScores,
+                this.displayCredits,
+                this.publishedHighScores,
+                this.publishedBestTimes,
+                this.crowd != null ? this.crowdFrames : null,
+                this.crowd != null ? this.crowd.count() : 0,
+                this.crowd != null ? this.crowd.finishedCount() : 0,
+                this.crowd != null ? this.crowd.lastTickMillis() : 0,
+                this.publishedPursuers,
+                this.pursuers != null ? this.pursuers.caught() : 0,
+                this.frameRebuilds,
+                nanos));
+        this.frameRebuilds = 0;
+    }
+
+    /** returns true if the rectangle has already been copied where it is now */
+    private static boolean samePlace(Rectangle rect, Rectangle copy) {
+        return copy != null && rect.left == copy.left && rect.top == copy.top
+                && rect.width == copy.width && rect.height == copy.height && rect.z == copy.z;
+    }
+
+    /** advances the simulation by one fixed step */
+    private void tick(double tickTime) {
+        this.player.beginTick();
+        processInput(tickTime);
+        update(tickTime);
+        this.events.dispatch();
+        this.ticks++;
+    }
+
     private void processInput(double elapsedTime) {
-        // Poll for window events: required in order for window, keyboard, etc events are captured.
-        glfwPollEvents();
         inputHandler.update(elapsedTime);
     }
 
     private void moveUp(double elapsedTime) {
-        if (this.gameWon || this.isPaused)
+        if (this.gameWon || this.isPaused || this.generatingMaze != null)
             return;
 
         this.player.moveUp(this.maze, elapsedTime);
     }
 
     private void moveDown(double elapsedTime) {
-        if (this.gameWon || this.isPaused)
+        if (this.gameWon || this.isPaused || this.generatingMaze != null)
             return;
 
         this.player.moveDown(this.maze, elapsedTime);
     }
 
     private void moveLeft(double elapsedTime) {
-        if (this.gameWon || this.isPaused)
+        if (this.gameWon || this.isPaused || this.generatingMaze != null)
             return;
 
         this.player.moveLeft(this.maze, elapsedTime);
     }
 
     private void moveRight(double elapsedTime) {
-        if (this.gameWon || this.isPaused)
+        if (this.gameWon || this.isPaused || this.generatingMaze != null)
             return;
 
         this.player.moveRight(this.maze, elapsedTime);
     }
 
-    private void updateScores() {
-        if (!this.player.hasMoved())
+    private void moveUpstairs(double elapsedTime) {
+        if (this.gameWon || this.isPaused || this.generatingMaze != null)
+            return;
+
+        this.player.moveUpstairs(this.maze, elapsedTime);
+    }
+
+    private void moveDownstairs(double elapsedTime) {
+        if (this.gameWon || this.isPaused || this.generatingMaze != null)
             return;
 
+        this.player.moveDownstairs(this.maze, elapsedTime);
+    }
+
+    /** scores the move the player just made, returning the points it earned */
+    private int updateScores() {
+        int scoreChange;
         if (this.maze.isAtGoal(this.player.getCurrentCell())) {
-            this.currentScore += this.foundGoalPoints;
+            scoreChange = this.foundGoalPoints;
+            this.currentScore += scoreChange;
 
             int difficultyIndex = MazeConfig.difficultyIndex(this.difficulty);
             int currentHighScore = this.highScores.get(difficultyIndex);
             if (this.currentScore > currentHighScore) {
                 this.highScores.set(difficultyIndex, currentScore);
                 this.bestTimes.set(difficultyIndex, currentTime);
+                this.scoresChanged = true;
             }
 
             this.gameWon = true;
+            this.events.won(this.ticks, this.currentScore, this.currentTime);
         } else if (this.player.isOnSolutionPath()) {
-            this.currentScore += this.correctSquarePoints;
+            scoreChange = this.correctSquarePoints;
+            this.currentScore += scoreChange;
         } else {
-            this.currentScore += this.incorrectSquarePoints;
+            scoreChange = this.incorrectSquarePoints;
+            this.currentScore += scoreChange;
         }
-        this.player.setMovedToFalse();
+        return scoreChange;
+    }
+
+    /**
+     * takes back the points of a move the player took back.  Moves can't be taken back once the game is won,
+     * so the high scores never need undoing.
+     * */
+    private void undoScores(int scoreChange) {
+        this.currentScore -= scoreChange;
+    }
+
+    private void undoMove(double elapsedTime) {
+        if (this.gameWon || this.isPaused || this.generatingMaze != null)
+            return;
+
+        this.player.undoMove(elapsedTime);
     }
 
     private void updateTimes(double elapsedTime) {
@@ -343,101 +820,102 @@ public class Game {
             this.currentTime += elapsedTime;
     }
 
-    private void update(double elapsedTime) {
-        this.updateScores();
-        this.updateTimes(elapsedTime);
-        this.updateSolutionPath();
-        this.updateBreadcrumbs();
+    private void updateLevel() {
+        int playerLevel = this.maze.cellLevel(this.player.getCurrentCell());
+        if (playerLevel != this.currentLevel) {
+            this.currentLevel = playerLevel;
+            this.makeMazeWalls();
+            this.createGoals();
+            this.rebuildSolutionPath();
+        }
     }
 
-    public void renderText() {
-        float controlTextLeft = -0.9f;
-        float textHeight = 0.04f;
-
-        graphics.drawTextByHeight(textFont, "CONTROLS", controlTextLeft, -0.55f, textHeight, fontColor);
-        graphics.drawTextByHeight(textFont, "New 5x5 Maze: F1", controlTextLeft, -0.5f, textHeight, fontColor);
-        graphics.drawTextByHeight(textFont, "New 10x10 Maze: F2", controlTextLeft, -0.45f, textHeight, fontColor);
-        graphics.drawTextByHeight(textFont, "New 15x15 Maze: F3", controlTextLeft, -0.4f, textHeight, fontColor);
-        graphics.drawTextByHeight(textFont, "New 20x20 Maze: F4", controlTextLeft, -0.35f, textHeight, fontColor);
-
-        graphics.drawTextByHeight(textFont, "Toggle Hint: H", controlTextLeft, -0.25f, textHeight, fontColor);
-        graphics.drawTextByHeight(textFont, "Toggle Breadcrumbs: B", controlTextLeft, -0.20f, textHeight, fontColor);
-        graphics.drawTextByHeight(textFont, "Toggle Solution: P", controlTextLeft, -0.15f, textHeight, fontColor);
-
-        graphics.drawTextByHeight(textFont, "Move Up : W|I|UP", controlTextLeft, -0.05f, textHeight, fontColor);
-        graphics.drawTextByHeight(textFont, "Move Down : S|K|DOWN", controlTextLeft, 0.0f, textHeight, fontColor);
-        graphics.drawTextByHeight(textFont, "Move Left : A|J|LEFT", controlTextLeft, 0.05f, textHeight, fontColor);
-        graphics.drawTextByHeight(textFont, "Move Right : D|L|RIGHT", controlTextLeft, 0.1f, textHeight, fontColor);
-
-        graphics.drawTextByHeight(textFont, "Pause: SPACE", controlTextLeft, 0.2f, textHeight, fontColor);
-
-        graphics.drawTextByHeight(textFont, "See HighScores: F5", controlTextLeft, 0.25f, textHeight, fontColor);
-        graphics.drawTextByHeight(textFont, "See Credits: F6", controlTextLeft, 0.3f, textHeight, fontColor);
+    /**
+     * moves, resets and the like are handled as the player makes them, so an idle tick only advances the clock,
+     * the crowd and the pursuers.
+     * */
+    private void update(double elapsedTime) {
+        if (this.generatingMaze != null) {
+            this.updateGeneration();
+            return;
+        }
 
-        graphics.drawTextByHeight(textFont, ("Score: " + this.currentScore), -0.5f, -0.6f, textHeight, fontColor);
+        this.updateTimes(elapsedTime);
+        if (this.crowd != null && !this.gameWon && !this.isPaused)
+            this.crowd.update(elapsedTime);
+        if (this.pursuers != null && !this.gameWon && !this.isPaused)
+            this.pursuers.update(elapsedTime);
+    }
 
-        graphics.drawTextByHeight(textFont, String.format("Time: %.1f s", this.currentTime), 0.3f, -0.6f, textHeight, fontColor);
+    /** reveals what the player can see from the cell while fog of war is on */
+    private void reveal(int cell) {
+        if (this.fog != null)
+            this.fog.reveal(cell);
+    }
 
-        if (gameWon) {
-            graphics.drawTextByHeight(textFont, "Great Job!", 0.6f, 0.3f, textHeight, fontColor);
+    /**
+     * Prints where the player moves to, and each new maze, to the console.
+     * */
+    private static final class ConsoleEvents implements EventBus.Subscriber {
+        public void moved(long tick, int fromCell, int toCell) {
+            System.out.println(toCell);
         }
 
-        if (this.isPaused)
-            graphics.drawTextByHeight(textFont, "PAUSED", -0.14f, -0.14f, 0.08f, 0.8f, breadcrumbColor);
-
-        if (this.displayHighScores) {
-            graphics.drawTextByHeight(textFont, "HIGH SCORES", 0.6f, -0.55f, textHeight, fontColor);
-            for (int i = 0; i < this.highScores.size(); i++) {
-                int mazeSize = MazeConfig.mazeSizeByIndex(i);
-                graphics.drawTextByHeight(textFont,
-                        String.format("%dx%d: %d @%.1f s",
-                                mazeSize, mazeSize,
-                                this.highScores.get(i),
-                                this.bestTimes.get(i)
-                                ),
-                        0.6f, (-0.5f + 0.05f*i), textHeight, fontColor);
-            }
+        public void moveUndone(long tick, int fromCell, int toCell) {
+            System.out.println(toCell);
         }
 
-        if (displayCredits) {
-            graphics.drawTextByHeight(textFont, "Designed by Preston Hall for CS5410", -0.3f, 0.52f, textHeight, fontColor);
-            graphics.drawTextByHeight(textFont, "Background Image at rawpixel.com", -0.28f, 0.57f, textHeight, fontColor);
+        public void reset(long tick, MazeConfig.Difficulty difficulty, long seed) {
+            System.out.printf("New %s maze, seed %d\n", difficulty, seed);
         }
-
     }
 
-    private void render(double elapsedTime) {
-        graphics.begin();
-
-        graphics.draw(backgroundImage, backgroundRect, Color.WHITE);
-
-        for (Rectangle wall : this.walls) {
-            graphics.draw(wall, this.wallColor);
+    /**
+     * Applies each change the player makes to the overlays it affects.
+     * */
+    private final class PlayerEvents implements Player.Listener {
+        public void solutionPathPushed(int cell) {
+            if (maze.cellLevel(cell) == currentLevel) {
+                solutionPath = solutionPath.push(layout.createMarker(cell));
+                frameRebuilds++;
+            }
         }
 
-        if (this.displayBreadcrumbs) {
-            for (Rectangle breadcrumb : breadcrumbs) {
-                graphics.draw(breadcrumb, this.breadcrumbColor);
+        public void solutionPathPopped(int cell) {
+            if (maze.cellLevel(cell) == currentLevel) {
+                solutionPath = solutionPath.pop();
+                frameRebuilds++;
             }
         }
 
-        if (this.displayHint) {
-            graphics.draw(hint, this.solutionColor);
+        public void moved(int fromCell, int toCell, boolean firstVisit) {
+            events.moved(ticks, fromCell, toCell);
+            if (pursuers != null)
+                pursuers.follow(toCell);
+            updateLevel();
+            player.setLastMoveScore(updateScores());
+            moveHint();
+            reveal(toCell);
+            if (firstVisit)
+                updateBreadcrumbs();
         }
 
-        if (this.displaySolution) {
-            for (Rectangle solutionSquare : solutionPath) {
-                graphics.draw(solutionSquare, this.solutionColor);
-            }
+        public void moveUndone(int fromCell, int toCell, boolean unvisited, int scoreChange) {
+            events.moveUndone(ticks, fromCell, toCell);
+            if (pursuers != null)
+                pursuers.follow(toCell);
+            updateLevel();
+            undoScores(scoreChange);
+            moveHint();
+            if (unvisited)
+                removeLastBreadcrumb(fromCell);
         }
 
-        graphics.draw(this.goal, solutionColor);
-        graphics.draw(this.player.playerRect(), playerColor);
-
-        if (isPaused)
-            graphics.draw(pauseBar, wallColor);
-        renderText();
-
-        graphics.end();
+        public void reset(int startCell) {
+            if (pursuers != null)
+                pursuers.follow(startCell);
+            rebuildOverlays();
+            reveal(startCell);
+        }
     }
 }
@@ -0,0 +1,85 @@
+import edu.usu.graphics.Rectangle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything the render thread needs to draw the game as it was after a simulation tick.
+ * The simulation never changes a snapshot once it is published, so the render thread reads it without locking.
+ * Rectangles that the simulation moves in place are copied into the snapshot, ones it never changes are shared.
+ * The breadcrumbs and solution path are stacks the simulation never changes, only replaces, so they are shared too.
+ * While a maze is carved, generatingWalls holds every wall it started with, indexed by edge, and the first carvedCount
+ * entries of carvedWalls are the edges carved so far; the simulation only appends to that log, so it is shared as well.
+ * Under fog of war, revealedWalls holds the walls next to cells the player has seen, which are the only walls drawn;
+ * without it revealedWalls is null.
+ * The crowd's markers are too many to copy, so they are handed over in a triple buffer that is null when there's no crowd.
+ * Pursuers holds a marker for each pursuer on the floor shown, or is null when nothing is chasing the player.
+ * */
+public record GameSnapshot(
+        Rectangle background,
+        List<Rectangle> walls,
+        RectangleStack revealedWalls,
+        List<Rectangle> stairs,
+        List<Rectangle> generatingWalls,
+        int[] carvedWalls,
+        int carvedCount,
+        RectangleStack breadcrumbs,
+        RectangleStack solutionPath,
+        List<Rectangle> goals,
+        Rectangle hint,
+        Rectangle playerFrom,
+        Rectangle playerTo,
+        boolean displayBreadcrumbs,
+        boolean displaySolution,
+        boolean displayHint,
+        int levels,
+        int currentLevel,
+        int score,
+        double time,
+        boolean gameWon,
+        boolean isPaused,
+        boolean displayHighScores,
+        boolean displayCredits,
+        List<Integer> highScores,
+        List<Double> bestTimes,
+        TripleBuffer<AgentSwarm.Frame> crowd,
+        int crowdSize,
+        int crowdFinished,
+        double crowdTickMillis,
+        List<Rectangle> pursuers,
+        int caught,
+        int rebuilds,
+        long publishedNanos) {
+
+    /** returns true while a maze is being carved, when only its walls are drawn */
+    public boolean isGenerating() {
+        return this.generatingWalls != null;
+    }
+
+    /**
+     * sets the rectangle to where the player is drawn at the given time,
+     * moving it from where it was before the snapshot's last tick to where it is now over the length of one tick.
+     * */
+    public void playerAt(long nanos, long tickNanos, Rectangle out) {
+        float alpha = Math.min(1, Math.max(0, (nanos - this.publishedNanos) / (float) tickNanos));
+        out.left = this.playerFrom.left + (this.playerTo.left - this.playerFrom.left) * alpha;
+        out.top = this.playerFrom.top + (this.playerTo.top - this.playerFrom.top) * alpha;
+        out.width = this.playerTo.width;
+        out.height = this.playerTo.height;
+        out.z = this.playerTo.z;
+    }
+
+    /** returns an unchangeable copy of the rectangles, so the simulation can keep moving its own */
+    public static List<Rectangle> copyOf(Iterable<Rectangle> rects) {
+        ArrayList<Rectangle> copies = new ArrayList<>();
+        for (Rectangle rect : rects) {
+            if (rect != null)
+                copies.add(copyOf(rect));
+        }
+        return List.copyOf(copies);
+    }
+
+    public static Rectangle copyOf(Rectangle rect) {
+        return new Rectangle(rect.left, rect.top, rect.width, rect.height, rect.z);
+    }
+}
@@ -0,0 +1,33 @@
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * Keys from a GLFW window, recorded by its key callback as they happen rather than sampled once a frame,
+ * so a key tapped between two frames still counts.  GLFW only runs callbacks on the main thread,
+ * inside glfwPollEvents, and the ring buffer hands the events to whichever thread runs the commands.
+ * */
+public class GlfwInput implements InputSource {
+    private final KeyEventBuffer events = new KeyEventBuffer(MazeConfig.keyEventCapacity);
+    private final Clock clock;
+
+    public GlfwInput(long window, Clock clock) {
+        this.clock = clock;
+        glfwSetKeyCallback(window, (callbackWindow, key, scancode, action, mods) -> {
+            // held keys are tracked by their press and release, so repeats add nothing
+            if (key != GLFW_KEY_UNKNOWN && action != GLFW_REPEAT)
+                this.events.offer(key, action == GLFW_PRESS, this.clock.nanoTime());
+        });
+    }
+
+    public void poll() {
+        // Poll for window events: required in order for window, keyboard, etc events are captured.
+        glfwPollEvents();
+    }
+
+    public void drainEvents(KeyEventBuffer.Listener listener) {
+        this.events.drain(listener);
+    }
+
+    public long droppedEvents() {
+        return this.events.dropped();
+    }
+}
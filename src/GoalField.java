@@ -0,0 +1,22 @@
+/**
+ * The distance from every cell of a maze to its nearest goal, and which goal that is.
+ * Built with a single breadth first search seeded from every goal at once.
+ * The arrays are shared through the solution cache and must not be modified.
+ * */
+public record GoalField(int[] goals, int[] distances, int[] owners) {
+    /** returns the number of moves from the cell to its nearest goal, or -1 if no goal can be reached */
+    public int distance(int cell) {
+        return this.distances[cell];
+    }
+
+    /** returns the goal cell nearest to the given cell, or -1 if no goal can be reached */
+    public int nearestGoal(int cell) {
+        int owner = this.owners[cell];
+        return owner < 0 ? -1 : this.goals[owner];
+    }
+
+    /** returns the index of the goal nearest to the given cell, or -1 if no goal can be reached */
+    public int owner(int cell) {
+        return this.owners[cell];
+    }
+}
@@ -0,0 +1,309 @@
+import edu.usu.graphics.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.glfw.GLFW.glfwSetWindowShouldClose;
+
+/**
+ * Draws snapshots of the game into a Graphics2D window.  Fonts and textures are GL objects,
+ * so this has to be created and used on the thread that owns the GL context.
+ * */
+public class GraphicsRenderer implements Renderer {
+    private final Graphics2D graphics;
+
+    // color palette retrieved from https://www.color-hex.com/color-palette/1055758
+    private final Color wallColor = new Color(211/255f, 211/255f, 211/255f);
+    private final Color playerColor = new Color(255/255f, 244/255f, 230/255f);
+    private final Color solutionColor = new Color(0/255f, 106/255f, 108/255f);
+    private final Color breadcrumbColor = new Color(0/255f, 79/255f, 81/255f);;
+    private final Color fontColor = new Color(211/255f, 211/255f, 211/255f);
+    private final Color stairsColor = new Color(255/255f, 244/255f, 230/255f, 0.4f);
+    private final Color pursuerColor = new Color(178/255f, 34/255f, 34/255f);
+
+    // background image retrieved from https://www.rawpixel.com/image/12226156/image-background-texture-aesthetic
+    // decoded by a job and uploaded on the GL thread once ready, so until then no background is drawn
+    private Texture backgroundImage;
+
+    private final Font textFont = new Font("Arial", java.awt.Font.PLAIN, 42, false);
+
+    private final Rectangle pauseBar = new Rectangle(-0.3f, -0.2f, 0.6f, 0.2f, 0.8f);
+    private final Rectangle drawnPlayerRect = new Rectangle(0, 0, 0, 0);
+
+    // walls, stairs and goals of the floor shown, kept on the GPU until the snapshot hands over different lists,
+    // and under fog of war the walls revealed so far, added to as more are revealed
+    private final RetainedRectangles retainedWalls = new RetainedRectangles(wallColor);
+    private final RevealedRectangles revealedWalls = new RevealedRectangles(wallColor);
+    private final RetainedRectangles retainedStairs = new RetainedRectangles(stairsColor);
+    private final RetainedRectangles retainedGoals = new RetainedRectangles(solutionColor);
+    // walls of the maze being carved, hidden from the batch as they are carved
+    private final CarvedRectangles generatingWalls = new CarvedRectangles(wallColor);
+
+    public GraphicsRenderer(Graphics2D graphics) {
+        this.graphics = graphics;
+        JobSystem.shared()
+                .submit("texture decode", JobSystem.Priority.HIGH, () -> Texture.decode("./resources/images/background.jpg"))
+                .onMainThread(image -> this.backgroundImage = new Texture(image));
+    }
+
+    public boolean shouldClose() {
+        return graphics.shouldClose();
+    }
+
+    public void requestClose() {
+        glfwSetWindowShouldClose(graphics.getWindow(), true);
+    }
+
+    private void renderText(GameSnapshot snapshot) {
+        float controlTextLeft = -0.9f;
+        float textHeight = 0.04f;
+
+        graphics.drawTextByHeight(textFont, "CONTROLS", controlTextLeft, -0.55f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "New 5x5 Maze: F1", controlTextLeft, -0.5f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "New 10x10 Maze: F2", controlTextLeft, -0.45f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "New 15x15 Maze: F3", controlTextLeft, -0.4f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "New 20x20 Maze: F4", controlTextLeft, -0.35f, textHeight, fontColor);
+        if (MazeConfig.isAvailable(MazeConfig.Difficulty.CUSTOM)) {
+            int customSize = MazeConfig.mazeSize(MazeConfig.Difficulty.CUSTOM);
+            graphics.drawTextByHeight(textFont, String.format("New %dx%d Maze: F11", customSize, customSize), controlTextLeft, 0.55f, textHeight, fontColor);
+        }
+
+        graphics.drawTextByHeight(textFont, "Toggle Hint: H", controlTextLeft, -0.25f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "Toggle Breadcrumbs: B", controlTextLeft, -0.20f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "Toggle Solution: P", controlTextLeft, -0.15f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "Race the Crowd: F9", controlTextLeft, -0.1f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "Fog of War: F10", controlTextLeft, -0.3f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "Chase: F12", controlTextLeft, 0.6f, textHeight, fontColor);
+
+        graphics.drawTextByHeight(textFont, "Move Up : W|I|UP", controlTextLeft, -0.05f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "Move Down : S|K|DOWN", controlTextLeft, 0.0f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "Move Left : A|J|LEFT", controlTextLeft, 0.05f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "Move Right : D|L|RIGHT", controlTextLeft, 0.1f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "Rewind : Z|BACKSPACE", controlTextLeft, 0.15f, textHeight, fontColor);
+
+        graphics.drawTextByHeight(textFont, "Pause: SPACE", controlTextLeft, 0.2f, textHeight, fontColor);
+
+        graphics.drawTextByHeight(textFont, "See HighScores: F5", controlTextLeft, 0.25f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "See Credits: F6", controlTextLeft, 0.3f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "Toggle Floors: F7", controlTextLeft, 0.35f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, "Watch Generation: F8", controlTextLeft, 0.4f, textHeight, fontColor);
+
+        if (snapshot.levels() > 1) {
+            graphics.drawTextByHeight(textFont, "Stairs Up : E|O|PGUP", controlTextLeft, 0.45f, textHeight, fontColor);
+            graphics.drawTextByHeight(textFont, "Stairs Down : Q|U|PGDN", controlTextLeft, 0.5f, textHeight, fontColor);
+            graphics.drawTextByHeight(textFont, String.format("Floor: %d/%d", snapshot.currentLevel()+1, snapshot.levels()), -0.1f, -0.6f, textHeight, fontColor);
+        }
+
+        graphics.drawTextByHeight(textFont, ("Score: " + snapshot.score()), -0.5f, -0.6f, textHeight, fontColor);
+
+        graphics.drawTextByHeight(textFont, String.format("Time: %.1f s", snapshot.time()), 0.3f, -0.6f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, String.format("Rebuilds: %d", snapshot.rebuilds()), 0.6f, 0.55f, textHeight, fontColor);
+        graphics.drawTextByHeight(textFont, String.format("Draw: %.2f ms (%.2f avg)", graphics.getLastEndMillis(), graphics.getAverageEndMillis()), 0.6f, 0.5f, textHeight, fontColor);
+
+        if (snapshot.crowd() != null) {
+            graphics.drawTextByHeight(textFont,
+                    String.format("Crowd: %d/%d finished (%.2f ms/tick)", snapshot.crowdFinished(), snapshot.crowdSize(), snapshot.crowdTickMillis()),
+                    0.6f, 0.45f, textHeight, fontColor);
+        }
+
+        if (snapshot.pursuers() != null)
+            graphics.drawTextByHeight(textFont, String.format("Caught: %d", snapshot.caught()), 0.6f, 0.4f, textHeight, fontColor);
+
+        if (snapshot.gameWon()) {
+            graphics.drawTextByHeight(textFont, "Great Job!", 0.6f, 0.3f, textHeight, fontColor);
+        }
+
+        if (snapshot.isPaused())
+            graphics.drawTextByHeight(textFont, "PAUSED", -0.14f, -0.14f, 0.08f, 0.8f, breadcrumbColor);
+
+        if (snapshot.displayHighScores()) {
+            graphics.drawTextByHeight(textFont, "HIGH SCORES", 0.6f, -0.55f, textHeight, fontColor);
+            for (int i = 0; i < snapshot.highScores().size(); i++) {
+                int mazeSize = MazeConfig.mazeSizeByIndex(i);
+                if (mazeSize == 0)
+                    continue;
+                graphics.drawTextByHeight(textFont,
+                        String.format("%dx%d: %d @%.1f s",
+                                mazeSize, mazeSize,
+                                snapshot.highScores().get(i),
+                                snapshot.bestTimes().get(i)
+                                ),
+                        0.6f, (-0.5f + 0.05f*i), textHeight, fontColor);
+            }
+        }
+
+        if (snapshot.displayCredits()) {
+            graphics.drawTextByHeight(textFont, "Designed by Preston Hall for CS5410", -0.3f, 0.52f, textHeight, fontColor);
+            graphics.drawTextByHeight(textFont, "Background Image at rawpixel.com", -0.28f, 0.57f, textHeight, fontColor);
+        }
+
+    }
+
+    /** draws a snapshot of the game, with the player moved as far through the tick after it as has passed */
+    public void render(GameSnapshot snapshot, long nanos) {
+        graphics.begin();
+
+        if (backgroundImage != null)
+            graphics.draw(backgroundImage, snapshot.background(), Color.WHITE);
+
+        if (snapshot.isGenerating()) {
+            this.generatingWalls.draw(snapshot.generatingWalls(), snapshot.carvedWalls(), snapshot.carvedCount());
+            renderText(snapshot);
+            graphics.end();
+            return;
+        }
+        this.generatingWalls.release();
+
+        if (snapshot.revealedWalls() != null)
+            this.revealedWalls.draw(snapshot.revealedWalls(), snapshot.walls());
+        else
+            this.retainedWalls.draw(snapshot.walls());
+        this.retainedStairs.draw(snapshot.stairs());
+
+        if (snapshot.displayBreadcrumbs()) {
+            for (Rectangle breadcrumb : snapshot.breadcrumbs()) {
+                graphics.draw(breadcrumb, this.breadcrumbColor);
+            }
+        }
+
+        if (snapshot.displayHint()) {
+            graphics.draw(snapshot.hint(), this.solutionColor);
+        }
+
+        if (snapshot.displaySolution()) {
+            for (Rectangle solutionSquare : snapshot.solutionPath()) {
+                graphics.draw(solutionSquare, this.solutionColor);
+            }
+        }
+
+        this.retainedGoals.draw(snapshot.goals());
+
+        if (snapshot.pursuers() != null) {
+            for (Rectangle pursuer : snapshot.pursuers()) {
+                graphics.draw(pursuer, this.pursuerColor);
+            }
+        }
+
+        // every bot on the floor is drawn in one batch, just behind the player
+        if (snapshot.crowd() != null) {
+            AgentSwarm.Frame frame = snapshot.crowd().acquire();
+            graphics.drawQuads(frame.positions(), frame.colors(), frame.count(), frame.size(), frame.size(),
+                    MazeConfig.mazeRectRenderValue - 0.01f);
+        }
+        snapshot.playerAt(nanos, 1_000_000_000L / MazeConfig.ticksPerSecond, this.drawnPlayerRect);
+        graphics.draw(this.drawnPlayerRect, playerColor);
+
+        if (snapshot.isPaused())
+            graphics.draw(pauseBar, wallColor);
+        renderText(snapshot);
+
+        graphics.end();
+    }
+
+    /**
+     * A list of rectangles from the snapshots drawn as one static batch.  Lists in a snapshot are never changed once
+     * published, so the batch is only rebuilt when a snapshot hands over a different list.
+     * */
+    private final class RetainedRectangles {
+        private final Color color;
+        private List<Rectangle> source;
+        private StaticBatch batch;
+
+        RetainedRectangles(Color color) {
+            this.color = color;
+        }
+
+        void draw(List<Rectangle> rectangles) {
+            if (rectangles != this.source) {
+                if (this.batch != null)
+                    this.batch.invalidate();
+                this.batch = graphics.createStaticBatch(rectangles, this.color);
+                this.source = rectangles;
+            }
+            graphics.draw(this.batch);
+        }
+    }
+
+    /**
+     * The walls of a maze being carved drawn as one static batch, with each wall hidden once a snapshot's log of carved
+     * edges reaches it.  The log only grows, so a frame hides just the walls carved since the last one;
+     * the batch is rebuilt for a different maze, and freed once carving is over.
+     * */
+    private final class CarvedRectangles {
+        private final Color color;
+        private List<Rectangle> source;
+        // the batch index of the wall at each edge, or -1 for an edge with no wall
+        private int[] batchIndex;
+        private int carved;
+        private StaticBatch batch;
+
+        CarvedRectangles(Color color) {
+            this.color = color;
+        }
+
+        /** draws the walls that aren't among the first carvedCount edges of carvedWalls */
+        void draw(List<Rectangle> walls, int[] carvedWalls, int carvedCount) {
+            if (walls != this.source) {
+                this.release();
+                ArrayList<Rectangle> present = new ArrayList<>();
+                this.batchIndex = new int[walls.size()];
+                for (int edge = 0; edge < walls.size(); edge++) {
+                    this.batchIndex[edge] = walls.get(edge) != null ? present.size() : -1;
+                    if (walls.get(edge) != null)
+                        present.add(walls.get(edge));
+                }
+                this.batch = graphics.createStaticBatch(present.size(), this.color);
+                this.batch.append(present, present.size());
+                this.source = walls;
+                this.carved = 0;
+            }
+            for (; this.carved < carvedCount; this.carved++) {
+                int index = this.batchIndex[carvedWalls[this.carved]];
+                if (index >= 0)
+                    this.batch.hide(index);
+            }
+            graphics.draw(this.batch);
+        }
+
+        /** frees the batch, if there is one */
+        void release() {
+            if (this.batch == null)
+                return;
+            this.batch.invalidate();
+            this.batch = null;
+            this.source = null;
+            this.batchIndex = null;
+        }
+    }
+
+    /**
+     * A growing stack of rectangles from the snapshots drawn as one static batch with room for all of a floor's.
+     * A snapshot's stack is the last one drawn with more pushed on top, so only those are appended to the batch;
+     * it is only rebuilt for a different floor, or a stack that doesn't grow from the last one.
+     * */
+    private final class RevealedRectangles {
+        private final Color color;
+        private List<Rectangle> all;
+        private RectangleStack source;
+        private StaticBatch batch;
+
+        RevealedRectangles(Color color) {
+            this.color = color;
+        }
+
+        /** draws the rectangles of the stack, which are some of all */
+        void draw(RectangleStack rectangles, List<Rectangle> all) {
+            int added = rectangles.size() - (this.source != null ? this.source.size() : 0);
+            if (all != this.all || added < 0 || rectangles.pop(added) != this.source) {
+                if (this.batch != null)
+                    this.batch.invalidate();
+                this.batch = graphics.createStaticBatch(all.size(), this.color);
+                this.all = all;
+                added = rectangles.size();
+            }
+            this.batch.append(rectangles, added);
+            this.source = rectangles;
+            graphics.draw(this.batch);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * Plays the game without a window or GL context, as fast as the ticks can run.
+ * A bot steps in a random direction at a time, and starts a new maze whenever it wins.
+ * Usage: HeadlessGame [ticks] [seed] [session log to record]
+ * */
+public class HeadlessGame {
+    private static final int[] directionKeys = {GLFW_KEY_UP, GLFW_KEY_DOWN, GLFW_KEY_LEFT, GLFW_KEY_RIGHT};
+    // ticks the bot holds each direction for, long enough for about one move so it can turn into side passages
+    private static final int ticksPerChoice = 9;
+
+    public static void main(String[] args) throws IOException {
+        long ticks = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 0);
+
+        ManualClock clock = new ManualClock();
+        ScriptedInput input = new ScriptedInput(clock);
+        RecordingRenderer renderer = new RecordingRenderer();
+        Game game = new Game(renderer, input, clock);
+        SessionLog.Writer recording = new SessionLog.Writer();
+        if (args.length > 2)
+            game.record(recording);
+        Telemetry telemetry = new Telemetry();
+        game.events().subscribeOnWorker(telemetry, "telemetry");
+        game.initialize();
+
+        long start = System.nanoTime();
+        int mazesWon = playBot(game, input, random, ticks);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d ticks in %.2f s (%.0f ticks/s), %d frames recorded, %d mazes won\n",
+                ticks, seconds, ticks / seconds, renderer.frames(), mazesWon);
+        if (args.length > 2) {
+            System.out.println("Recorded " + game.finishRecording() + " in " + recording.sizeBytes() + " bytes");
+            recording.writeTo(Path.of(args[2]));
+        }
+        game.shutdown();
+        // shutting down waits for the telemetry thread to read every event
+        System.out.printf("Telemetry: %d moves, %d taken back, %d mazes, %d wins, %d waits for the telemetry thread\n",
+                telemetry.moves, telemetry.undos, telemetry.mazes, telemetry.wins, game.events().waits());
+    }
+
+    /** plays the given number of ticks with the random bot, returning the number of mazes it won */
+    public static int playBot(Game game, ScriptedInput input, Random random, long ticks) {
+        int heldKey = directionKeys[0];
+        int mazesWon = 0;
+        for (long tick = 0; tick < ticks; tick += ticksPerChoice) {
+            if (game.latestSnapshot().gameWon()) {
+                input.tap(GLFW_KEY_F1);
+                mazesWon++;
+            }
+            input.release(heldKey);
+            heldKey = directionKeys[random.nextInt(directionKeys.length)];
+            input.press(heldKey);
+
+            game.runTicks(Math.min(ticksPerChoice, ticks - tick));
+        }
+        return mazesWon;
+    }
+
+    /**
+     * Counts the game's events on a thread of its own.
+     * */
+    private static final class Telemetry implements EventBus.Subscriber {
+        private long moves;
+        private long undos;
+        private long mazes;
+        private long wins;
+
+        public void moved(long tick, int fromCell, int toCell) {
+            this.moves++;
+        }
+
+        public void moveUndone(long tick, int fromCell, int toCell) {
+            this.undos++;
+        }
+
+        public void reset(long tick, MazeConfig.Difficulty difficulty, long seed) {
+            this.mazes++;
+        }
+
+        public void won(long tick, int score, double time) {
+            this.wins++;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * A hexagonal grid of pointy-topped cells stored in rows, where every odd row is shifted half a cell to the right.
+ * Each cell connects to up to six neighbors.
+ * */
+public class HexTopology extends CsrTopology {
+    public static final int EAST = 0;
+    public static final int SOUTH_EAST = 1;
+    public static final int SOUTH_WEST = 2;
+    public static final int WEST = 3;
+    public static final int NORTH_WEST = 4;
+    public static final int NORTH_EAST = 5;
+
+    public HexTopology(int width, int height) {
+        super(width, height, 6, HexTopology::hexNeighbor);
+    }
+
+    private static int hexNeighbor(int width, int height, int cell, int direction) {
+        int col = cell % width;
+        int row = cell / width;
+        // on odd rows the diagonal neighbors are shifted one column to the right
+        int shift = row & 1;
+
+        int neighborCol = switch (direction) {
+            case EAST -> col+1;
+            case WEST -> col-1;
+            case SOUTH_EAST, NORTH_EAST -> col + shift;
+            case SOUTH_WEST, NORTH_WEST -> col - 1 + shift;
+            default -> -1;
+        };
+        int neighborRow = switch (direction) {
+            case SOUTH_EAST, SOUTH_WEST -> row+1;
+            case NORTH_EAST, NORTH_WEST -> row-1;
+            default -> row;
+        };
+
+        if (neighborCol < 0 || neighborCol >= width || neighborRow < 0 || neighborRow >= height)
+            return -1;
+        return neighborRow*width + neighborCol;
+    }
+}
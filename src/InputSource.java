@@ -0,0 +1,14 @@
+/**
+ * Where key presses come from, so the game can be played by a window's keyboard or by a program.
+ * Keys are GLFW key codes either way.
+ * */
+public interface InputSource {
+    /** collects waiting input, on the thread that owns the window */
+    void poll();
+
+    /** hands every key press and release since the last call to the listener, oldest first */
+    void drainEvents(KeyEventBuffer.Listener listener);
+
+    /** returns the number of events lost because they arrived faster than they were drained */
+    long droppedEvents();
+}
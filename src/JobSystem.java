@@ -0,0 +1,250 @@
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs background work as named jobs on work-stealing ForkJoinPools, one for each priority, so a job only ever waits
+ * in a queue behind jobs of its own priority.  The pools' workers still share the cores, and nothing stops a running
+ * low priority job for an urgent one, so each priority below HIGH gets half the workers of the one above it:
+ * a burst of background work can't take more than a few of the cores an urgent job needs.
+ * Idle workers are retired, so a pool with nothing to do costs no threads.
+ * A job can wait on other jobs, and only becomes ready once they have all finished; if any of them fails, so does it.
+ * A job that becomes ready on a worker of its own pool, because the last job it waited on just finished there, is forked
+ * onto that worker's deque and runs next on the same worker while what it needs is still in cache, unless an idle worker
+ * steals it first.  Jobs that become ready anywhere else go to their pool's shared queue, in submission order.
+ * Jobs must never touch GL or audio state: anything that has to happen on the thread that owns the window goes
+ * through the main thread completion queue, which that thread drains between frames.
+ * */
+public class JobSystem {
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    private static final JobSystem shared = new JobSystem(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    // a pool for each priority, by ordinal, with fewer workers the less urgent it is
+    private final ForkJoinPool[] workers;
+    private final ConcurrentLinkedQueue<Runnable> completions = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, Timing> timings = new ConcurrentHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    // jobs still waiting on others, and the most jobs ever ready at once
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    /** creates a job system whose HIGH jobs run on up to the given number of threads, and other jobs on fewer */
+    public JobSystem(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Job system needs at least one thread, got " + threads);
+
+        Priority[] priorities = Priority.values();
+        this.workers = new ForkJoinPool[priorities.length];
+        for (Priority priority : priorities) {
+            String prefix = "job-" + priority.name().toLowerCase() + "-worker-";
+            int parallelism = Math.max(1, threads >> priority.ordinal());
+            // not async mode, so a worker runs the jobs it forks last in, first out, while their inputs are fresh
+            this.workers[priority.ordinal()] = new ForkJoinPool(parallelism, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(prefix + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        }
+    }
+
+    /** returns the job system shared by the whole game, with a HIGH worker for every core but one */
+    public static JobSystem shared() {
+        return shared;
+    }
+
+    /** submits a job that computes a result once the given jobs have finished */
+    public <T> Job<T> submit(String name, Priority priority, Supplier<T> work, Job<?>... dependencies) {
+        Job<T> job = new Job<>(name, priority, work);
+        this.submitted.incrementAndGet();
+        if (dependencies.length == 0) {
+            this.enqueue(job);
+            return job;
+        }
+
+        this.waiting.incrementAndGet();
+        AtomicInteger remaining = new AtomicInteger(dependencies.length);
+        for (Job<?> dependency : dependencies) {
+            dependency.result.whenComplete((value, error) -> {
+                if (error != null && job.result.completeExceptionally(error))
+                    this.waiting.decrementAndGet();
+                else if (remaining.decrementAndGet() == 0 && !job.result.isDone()) {
+                    this.waiting.decrementAndGet();
+                    this.enqueue(job);
+                }
+            });
+        }
+        return job;
+    }
+
+    /** submits a job with no result once the given jobs have finished */
+    public Job<Void> run(String name, Priority priority, Runnable work, Job<?>... dependencies) {
+        return this.submit(name, priority, () -> {
+            work.run();
+            return null;
+        }, dependencies);
+    }
+
+    /** runs every completion queued so far, on the calling thread, returning how many ran */
+    public int runCompletions() {
+        int ran = 0;
+        for (Runnable completion = this.completions.poll(); completion != null; completion = this.completions.poll()) {
+            completion.run();
+            ran++;
+        }
+        return ran;
+    }
+
+    /** returns the number of jobs ready to run that no worker has taken yet */
+    public int queueDepth() {
+        long queued = 0;
+        for (ForkJoinPool pool : this.workers)
+            queued += pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+        return (int) queued;
+    }
+
+    public int maxQueueDepth() {
+        return this.maxQueueDepth.get();
+    }
+
+    /** returns the number of jobs waiting on other jobs to finish */
+    public int waitingJobs() {
+        return this.waiting.get();
+    }
+
+    /** returns the number of completions waiting for the main thread */
+    public int pendingCompletions() {
+        return this.completions.size();
+    }
+
+    public String toString() {
+        int threads = 0;
+        for (ForkJoinPool pool : this.workers)
+            threads += pool.getParallelism();
+        StringBuilder jobsStr = new StringBuilder(String.format("JobSystem: %d threads, %d jobs submitted, %d queued (%d max), %d waiting",
+                threads, this.submitted.get(), this.queueDepth(), this.maxQueueDepth(), this.waitingJobs()));
+        for (Map.Entry<String, Timing> entry : new TreeMap<>(this.timings).entrySet())
+            jobsStr.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+        return jobsStr.toString();
+    }
+
+    private void enqueue(Job<?> job) {
+        job.readyNanos = System.nanoTime();
+        ForkJoinPool pool = this.workers[job.priority.ordinal()];
+        ForkJoinTask<?> task = ForkJoinTask.adapt(() -> this.runJob(job));
+        if (ForkJoinTask.getPool() == pool)
+            task.fork();
+        else
+            pool.execute(task);
+        this.maxQueueDepth.accumulateAndGet(this.queueDepth(), Math::max);
+    }
+
+    private void runJob(Job<?> job) {
+        long start = System.nanoTime();
+        try {
+            job.run();
+        } finally {
+            long end = System.nanoTime();
+            this.timings.computeIfAbsent(job.name, name -> new Timing()).add(start - job.readyNanos, end - start);
+        }
+    }
+
+    /**
+     * A piece of work submitted to the job system, and the result it finishes with.
+     * */
+    public final class Job<T> {
+        private final String name;
+        private final Priority priority;
+        private final Supplier<T> work;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private long readyNanos;
+
+        private Job(String name, Priority priority, Supplier<T> work) {
+            this.name = name;
+            this.priority = priority;
+            this.work = work;
+        }
+
+        public String name() {
+            return this.name;
+        }
+
+        public boolean isDone() {
+            return this.result.isDone();
+        }
+
+        /** waits for the job to finish and returns its result, rethrowing what it failed with wrapped in a CompletionException */
+        public T join() {
+            return this.result.join();
+        }
+
+        /** submits a job that turns this job's result into another */
+        public <R> Job<R> then(String name, Priority priority, Function<T, R> work) {
+            return submit(name, priority, () -> work.apply(this.result.join()), this);
+        }
+
+        /** queues the action to be handed the result on the main thread, which rethrows the failure if the job failed */
+        public Job<T> onMainThread(Consumer<T> action) {
+            this.result.whenComplete((value, error) -> completions.add(() -> {
+                if (error != null)
+                    throw new IllegalStateException("Job " + this.name + " failed", error);
+                action.accept(value);
+            }));
+            return this;
+        }
+
+        /** runs the action on the thread that finishes the job, whether it succeeded or not */
+        public Job<T> whenDone(Runnable action) {
+            this.result.whenComplete((value, error) -> action.run());
+            return this;
+        }
+
+        private void run() {
+            try {
+                this.result.complete(this.work.get());
+            } catch (Throwable e) {
+                this.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * How many times jobs of one name ran, how long they waited once ready, and how long they ran.
+     * */
+    private static final class Timing {
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder runNanos = new LongAdder();
+        private final AtomicLong maxRunNanos = new AtomicLong();
+
+        void add(long waited, long ran) {
+            this.runs.increment();
+            this.waitNanos.add(waited);
+            this.runNanos.add(ran);
+            this.maxRunNanos.accumulateAndGet(ran, Math::max);
+        }
+
+        public String toString() {
+            long runs = Math.max(1, this.runs.sum());
+            return String.format("%d runs, %.2f ms average wait, %.2f ms average and %.2f ms max run",
+                    this.runs.sum(), this.waitNanos.sum() / 1e6 / runs, this.runNanos.sum() / 1e6 / runs, this.maxRunNanos.get() / 1e6);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed size ring of timestamped key presses and releases, written by one thread and read by another without locking.
+ * Events are kept in primitive arrays allocated up front, so recording and draining them allocates nothing.
+ * Events offered while the ring is full are dropped and counted, which only happens if the reader stalls for a long time.
+ * */
+public class KeyEventBuffer {
+    /**
+     * Receives the events drained from the buffer, oldest first.
+     * */
+    public interface Listener {
+        void keyEvent(int key, boolean pressed, long nanos);
+    }
+
+    private final int mask;
+    // key code shifted left once, with the low bit set for a press
+    private final int[] events;
+    private final long[] times;
+
+    // the next slot to write and the next slot to read, only ever increasing
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** creates a buffer holding at least the given number of events, rounded up to a power of two */
+    public KeyEventBuffer(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = Math.max(size, 1) - 1;
+        this.events = new int[this.mask + 1];
+        this.times = new long[this.mask + 1];
+    }
+
+    /** records an event, returning false if the buffer was full and the event was dropped */
+    public boolean offer(int key, boolean pressed, long nanos) {
+        long head = this.head.get();
+        if (head - this.tail.get() > this.mask) {
+            this.dropped.incrementAndGet();
+            return false;
+        }
+
+        int slot = (int) head & this.mask;
+        this.events[slot] = key << 1 | (pressed ? 1 : 0);
+        this.times[slot] = nanos;
+        // publishing the head after the slot is written lets the reader see the whole event
+        this.head.lazySet(head + 1);
+        return true;
+    }
+
+    /** hands every event recorded so far to the listener, returning how many there were */
+    public int drain(Listener listener) {
+        long tail = this.tail.get();
+        long head = this.head.get();
+        for (long index = tail; index < head; index++) {
+            int slot = (int) index & this.mask;
+            listener.keyEvent(this.events[slot] >> 1, (this.events[slot] & 1) != 0, this.times[slot]);
+        }
+        this.tail.lazySet(head);
+        return (int) (head - tail);
+    }
+
+    public int capacity() {
+        return this.mask + 1;
+    }
+
+    /** returns the number of events dropped because the buffer was full */
+    public long dropped() {
+        return this.dropped.get();
+    }
+}
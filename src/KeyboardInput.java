@@ -1,7 +1,11 @@
-import java.util.HashMap;
+import java.util.Arrays;
 
-import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.glfw.GLFW.GLFW_KEY_LAST;
 
+/**
+ * Runs the commands bound to keys, from the key events of an input source.
+ * Bindings and key states live in arrays indexed by GLFW key code, so dispatching boxes and allocates nothing.
+ */
 public class KeyboardInput {
 
     /**
@@ -11,49 +15,99 @@ public class KeyboardInput {
         void invoke(double elapsedTime);
     }
 
-    public KeyboardInput(long window) {
-        this.window = window;
+    public KeyboardInput(InputSource source, Clock clock) {
+        this.source = source;
+        this.clock = clock;
     }
 
     public void registerCommand(int key, boolean keyPressOnly, ICommand callback) {
-        commandEntries.put(key, new CommandEntry(key, keyPressOnly, callback));
-        // Start out by assuming the key isn't currently pressed
-        keysPressed.put(key, false);
+        if (key < 0 || key > GLFW_KEY_LAST)
+            throw new IllegalArgumentException("Not a GLFW key code: " + key);
+
+        if (commandEntries[key] == null) {
+            int[] keys = Arrays.copyOf(boundKeys, boundKeys.length + 1);
+            keys[boundKeys.length] = key;
+            boundKeys = keys;
+        }
+        commandEntries[key] = new CommandEntry(keyPressOnly, callback);
+    }
+
+    /** sets a listener that sees every key event before it is dispatched, such as a session recorder */
+    public void setRecorder(KeyEventBuffer.Listener recorder) {
+        this.recorder = recorder;
     }
 
     /**
-     * Go through all the registered command and invoke the callbacks as appropriate
+     * Go through the key events since the last update and invoke the callbacks as appropriate.
+     * Key press only commands run once for each press, the others run once per update while their key is held,
+     * and at least once for a key pressed and released between two updates.
      */
     public void update(double elapsedTime) {
-        for (var entry : commandEntries.entrySet()) {
-            if (entry.getValue().keyPressOnly && isKeyNewlyPressed(entry.getValue().key)) {
-                entry.getValue().callback.invoke(elapsedTime);
-            } else if (!entry.getValue().keyPressOnly && glfwGetKey(window, entry.getKey()) == GLFW_PRESS) {
-                entry.getValue().callback.invoke(elapsedTime);
-            }
-
-            // For the next time around, remember the current state of the key (pressed or not)
-            keysPressed.put(entry.getKey(), glfwGetKey(window, entry.getKey()) == GLFW_PRESS);
+        this.elapsedTime = elapsedTime;
+        source.drainEvents(dispatcher);
+
+        for (int key : boundKeys) {
+            CommandEntry entry = commandEntries[key];
+            if (!entry.keyPressOnly && (keysDown[key] || keysTapped[key]))
+                entry.callback.invoke(elapsedTime);
+            keysTapped[key] = false;
         }
     }
 
-    /**
-     * Returns true if the key is newly pressed.  If it was already pressed, then
-     * it returns false
-     */
-    private boolean isKeyNewlyPressed(int key) {
-        return (glfwGetKey(window, key) == GLFW_PRESS) && !keysPressed.get(key);
+    /** returns the number of key presses dispatched so far */
+    public long presses() {
+        return presses;
+    }
+
+    /** returns the average time between a key press happening and its commands getting to see it */
+    public double averageLatencyMillis() {
+        return presses == 0 ? 0 : totalLatencyNanos / 1e6 / presses;
     }
 
-    private final long window;
-    // Table of registered callbacks
-    private final HashMap<Integer, CommandEntry> commandEntries = new HashMap<>();
-    // Table of registered callback keys previous pressed state
-    private final HashMap<Integer, Boolean> keysPressed = new HashMap<>();
+    public double maxLatencyMillis() {
+        return maxLatencyNanos / 1e6;
+    }
+
+    private void keyEvent(int key, boolean pressed, long nanos) {
+        if (key < 0 || key > GLFW_KEY_LAST)
+            return;
+        if (recorder != null)
+            recorder.keyEvent(key, pressed, nanos);
+
+        if (pressed && !keysDown[key]) {
+            long latency = clock.nanoTime() - nanos;
+            presses++;
+            totalLatencyNanos += latency;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+
+            CommandEntry entry = commandEntries[key];
+            if (entry != null && entry.keyPressOnly)
+                entry.callback.invoke(elapsedTime);
+            keysTapped[key] = true;
+        }
+        keysDown[key] = pressed;
+    }
+
+    private final InputSource source;
+    private final Clock clock;
+    private final KeyEventBuffer.Listener dispatcher = this::keyEvent;
+    private KeyEventBuffer.Listener recorder;
+    private double elapsedTime;
+
+    // Table of registered callbacks, and the keys that have one
+    private final CommandEntry[] commandEntries = new CommandEntry[GLFW_KEY_LAST + 1];
+    private int[] boundKeys = new int[0];
+    // Keys held down, and keys pressed since the last update
+    private final boolean[] keysDown = new boolean[GLFW_KEY_LAST + 1];
+    private final boolean[] keysTapped = new boolean[GLFW_KEY_LAST + 1];
+
+    private long presses;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
 
     /**
      * Used to keep track of the details associated with a registered command
      */
-    private record CommandEntry(int key, boolean keyPressOnly, ICommand callback) {
+    private record CommandEntry(boolean keyPressOnly, ICommand callback) {
     }
 }
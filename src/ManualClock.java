@@ -0,0 +1,14 @@
+/**
+ * A clock that only moves when it is told to, for running games headless.
+ * */
+public class ManualClock implements Clock {
+    private volatile long nanos;
+
+    public long nanoTime() {
+        return this.nanos;
+    }
+
+    public void advance(long nanos) {
+        this.nanos += nanos;
+    }
+}
@@ -1,38 +1,169 @@
-import edu.usu.utils.Tuple2;
-
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.stream.IntStream;
 
 public class Maze {
-    private boolean[][] mazeGraph;
+    // pseudo directions accepted by move() for taking the stairs between floors
+    public static final int UPSTAIRS = -1;
+    public static final int DOWNSTAIRS = -2;
+
+    // layout of a single floor, shared by every floor of the maze
+    private final Topology topology;
+    private final int levels;
+    private final int floorCells;
+    // one bit per edge of each floor, set when a wall separates the two cells of the edge.
+    // every floor starts on a word boundary so floors can be carved in parallel.
+    private final long[] walls;
+    private final int wordsPerLevel;
+    // one bit per cell of every floor but the top one, set when stairs lead up from that cell
+    private final long[] stairs;
+    // cells and pre-opened edges of a single floor, or null when every cell is used
+    private final MazeMask mask;
+    private final MazeConfig.Algorithm algorithm;
+    private final long seed;
+    // zobrist style hashes of each floor's wall words and of the stairs, updated whenever a word changes
+    private final long[] levelHashes;
+    private long stairsHash;
     private final int mazeSize;
     private final int numCells;
 
+    // generation still to do for mazes carved a few cells at a time, null once the maze is finished
+    private Generation generation;
+    private CarveListener carveListener;
+
     private int start;
-    private int goal;
+    // the first goal is the maze's exit, any others are extra exits or checkpoints
+    private int[] goals;
+    private long[] goalCells;
     private boolean printShortestPath;
 
     public Maze(MazeConfig.Difficulty difficulty) {
-        this.mazeSize = MazeConfig.mazeSize(difficulty);
-        this.numCells = MazeConfig.numberOfCells(difficulty);
+        this(SquareTopology.of(MazeConfig.mazeSize(difficulty)));
+    }
+
+    public Maze(MazeConfig.Difficulty difficulty, int levels) {
+        this(SquareTopology.of(MazeConfig.mazeSize(difficulty)), levels);
+    }
+
+    public Maze(MazeConfig.Difficulty difficulty, MazeMask mask) {
+        this(SquareTopology.of(MazeConfig.mazeSize(difficulty)), 1, mask);
+    }
+
+    public Maze(Topology topology) {
+        this(topology, 1);
+    }
+
+    public Maze(Topology topology, int levels) {
+        this(topology, levels, null);
+    }
+
+    public Maze(Topology topology, int levels, MazeMask mask) {
+        this(topology, levels, mask, MazeConfig.Algorithm.PRIMS);
+    }
 
-        this.start = 0;
-        this.goal = this.numCells-1;
+    public Maze(Topology topology, int levels, MazeMask mask, MazeConfig.Algorithm algorithm) {
+        this(topology, levels, mask, algorithm, new Random().nextLong());
+    }
+
+    /**
+     * creates a maze with the given number of floors, each laid out by the topology and carved with the given algorithm.
+     * If a mask is given it applies to every floor, and the maze is only carved through the cells it contains.
+     * The same arguments and seed always produce the same maze.
+     * */
+    public Maze(Topology topology, int levels, MazeMask mask, MazeConfig.Algorithm algorithm, long seed) {
+        this(topology, levels, mask, algorithm, seed, false);
+    }
+
+    private Maze(Topology topology, int levels, MazeMask mask, MazeConfig.Algorithm algorithm, long seed, boolean stepped) {
+        if (levels < 1)
+            throw new IllegalArgumentException("Maze must have at least one level, got " + levels);
+        if (mask != null && mask.topology().cellCount() != topology.cellCount())
+            throw new IllegalArgumentException("Mask has " + mask.topology().cellCount() + " cells but each floor has " + topology.cellCount());
+        if (mask != null && mask.cellCount() == 0)
+            throw new IllegalArgumentException("Mask excludes every cell of the maze");
+        // the row algorithms never carve a torus's wrap edges, so it would come out as a plain grid
+        if (algorithm != MazeConfig.Algorithm.PRIMS && (mask != null || topology.getClass() != SquareTopology.class))
+            throw new IllegalArgumentException(algorithm + " only supports square grids without a mask, not " + topology.getClass().getSimpleName());
+
+        this.topology = topology;
+        this.levels = levels;
+        this.mazeSize = topology.width();
+        this.floorCells = topology.cellCount();
+        this.numCells = this.floorCells * levels;
+        this.mask = mask;
+        this.algorithm = algorithm;
+        this.seed = seed;
+
+        this.start = mask == null ? 0 : mask.firstCell();
+        this.goals = new int[] {this.numCells - this.floorCells + (mask == null ? this.floorCells-1 : mask.lastCell())};
+        this.goalCells = new long[(this.numCells + 63) >>> 6];
+        this.goalCells[this.goals[0] >>> 6] |= 1L << this.goals[0];
         this.printShortestPath = false;
 
         // initially make the maze full of walls
-        this.mazeGraph = new boolean[this.numCells][this.numCells];
-        for (int cell = 0; cell < this.numCells; cell++) {
-            ArrayList<Integer> neighborCells = getNeighbors(cell);
-
-            // all neighbors have walls separating them.
-            for (int neighbor: neighborCells) {
-                this.mazeGraph[cell][neighbor] = true;
-                this.mazeGraph[neighbor][cell] = true;
-            }
+        this.wordsPerLevel = (topology.edgeCount() + 63) >>> 6;
+        this.walls = new long[this.wordsPerLevel * levels];
+        Arrays.fill(this.walls, -1L);
+        if ((topology.edgeCount() & 63) != 0) {
+            for (int level = 1; level <= levels; level++)
+                this.walls[level*this.wordsPerLevel - 1] = (1L << topology.edgeCount()) - 1;
         }
-        this.generateMaze();
+        this.stairs = new long[(this.floorCells * (levels-1) + 63) >>> 6];
+
+        this.levelHashes = new long[levels];
+        for (int level = 0; level < levels; level++)
+            this.rehashLevel(level);
+
+        if (stepped)
+            this.generation = new Generation();
+        else
+            this.generateMaze();
+    }
+
+    /**
+     * creates a maze that starts full of walls and is carved by calling step().
+     * Once finished it is identical to the maze made by the constructor with the same arguments and seed.
+     * */
+    public static Maze incremental(Topology topology, int levels, MazeMask mask, MazeConfig.Algorithm algorithm, long seed) {
+        return new Maze(topology, levels, mask, algorithm, seed, true);
+    }
+
+    /** returns true once every floor and the stairs have been carved */
+    public boolean isGenerated() {
+        return this.generation == null;
+    }
+
+    /** carves up to the given number of cells, returning true once the maze is finished */
+    public boolean step(int maxCells) {
+        return this.step(maxCells, Long.MAX_VALUE);
+    }
+
+    /** carves for up to the given number of nanoseconds, returning true once the maze is finished */
+    public boolean stepFor(long nanosBudget) {
+        return this.step(Integer.MAX_VALUE, nanosBudget);
+    }
+
+    /**
+     * carves until either the cell count or the time budget runs out, returning true once the maze is finished.
+     * The clock is checked between small batches of cells, so a step may run slightly over its budget.
+     * */
+    public boolean step(int maxCells, long nanosBudget) {
+        long start = System.nanoTime();
+        int carved = 0;
+        while (this.generation != null && carved < maxCells && System.nanoTime() - start < nanosBudget)
+            carved += this.generation.advance(maxCells - carved);
+        return this.generation == null;
+    }
+
+    /** sets the listener told about every wall removed by step(), or null for none */
+    public void setCarveListener(CarveListener listener) {
+        this.carveListener = listener;
+    }
+
+    /** receives the walls removed while a maze is carved a step at a time */
+    public interface CarveListener {
+        void wallRemoved(int level, int edge);
     }
 
     public void enableShortestPathPrint() {
@@ -43,196 +174,710 @@ public class Maze {
         this.printShortestPath = false;
     }
 
+    /** returns true if the cell is any of the maze's goals */
     public boolean isAtGoal(int cell) {
-        return cell == this.goal;
+        return (this.goalCells[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public long seed() {
+        return this.seed;
+    }
+
+    public MazeConfig.Algorithm algorithm() {
+        return this.algorithm;
+    }
+
+    /**
+     * returns a 64 bit hash of the layout, walls and stairs of this maze.
+     * Mazes with the same structure have the same hash, whatever seed or algorithm made them.
+     * */
+    public long structuralHash() {
+        long hash = mix(this.topology.getClass().getName().hashCode());
+        hash = mix(hash ^ ((long) this.topology.width() << 32 | this.topology.height()));
+        hash = mix(hash ^ this.levels);
+        for (long levelHash : this.levelHashes)
+            hash = mix(hash ^ levelHash);
+        return hash ^ this.stairsHash;
+    }
+
+    public int getStart() {
+        return this.start;
+    }
+
+    /** returns the first goal of the maze */
+    public int getGoal() {
+        return this.goals[0];
+    }
+
+    public int[] getGoals() {
+        return this.goals.clone();
+    }
+
+    public int goalCount() {
+        return this.goals.length;
+    }
+
+    /** replaces the goals of the maze. Hints and solutions lead to whichever goal is nearest. */
+    public void setGoals(int... cells) {
+        if (cells.length == 0)
+            throw new IllegalArgumentException("Maze must have at least one goal");
+
+        long[] goalCells = new long[this.goalCells.length];
+        for (int cell : cells) {
+            if (cell < 0 || cell >= this.numCells || this.isExcluded(cell))
+                throw new IllegalArgumentException("Goal " + cell + " is not a cell of the maze");
+            if ((goalCells[cell >>> 6] & (1L << cell)) != 0)
+                throw new IllegalArgumentException("Goal " + cell + " was given more than once");
+            goalCells[cell >>> 6] |= 1L << cell;
+        }
+        this.goals = cells.clone();
+        this.goalCells = goalCells;
+    }
+
+    /** adds another goal to the maze */
+    public void addGoal(int cell) {
+        int[] cells = Arrays.copyOf(this.goals, this.goals.length + 1);
+        cells[this.goals.length] = cell;
+        this.setGoals(cells);
+    }
+
+    /** returns the goal nearest to the start */
+    public int nearestGoal() {
+        if (this.goals.length == 1)
+            return this.goals[0];
+        return this.goalField().nearestGoal(this.start);
+    }
+
+    /** returns true if the cell was left out of the maze by its mask */
+    public boolean isExcluded(int cell) {
+        return this.mask != null && !this.mask.contains(cell % this.floorCells);
+    }
+
+    /** returns the topology of a single floor of the maze */
+    public Topology topology() {
+        return this.topology;
     }
 
     public int size() {
         return this.mazeSize;
     }
 
+    public int levels() {
+        return this.levels;
+    }
+
+    /** returns the number of cells on all floors of the maze */
     public int cellCount() {
         return this.numCells;
     }
 
+    public int floorCellCount() {
+        return this.floorCells;
+    }
+
     public int cellValue(int row, int col) {
         return this.mazeSize * row + col;
     }
 
+    public int cellValue(int level, int row, int col) {
+        return this.floorCells * level + this.mazeSize * row + col;
+    }
+
     public int cellRow(int cell) {
         return cell % this.mazeSize;
     }
 
     public int cellCol(int cell) {
-        return Math.floorDiv(cell, this.mazeSize);
+        return Math.floorDiv(cell % this.floorCells, this.mazeSize);
+    }
+
+    public int cellLevel(int cell) {
+        return cell / this.floorCells;
+    }
+
+    /** returns true if the given edge on the given floor has a wall on it */
+    public boolean hasWall(int level, int edge) {
+        int bit = level*this.wordsPerLevel*64 + edge;
+        return (this.walls[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /** adds or removes the wall on the given edge of the given floor */
+    public void setWall(int level, int edge, boolean wall) {
+        int bit = level*this.wordsPerLevel*64 + edge;
+        long word = this.walls[bit >>> 6];
+        this.setWallWord(level, bit >>> 6, wall ? word | (1L << bit) : word & ~(1L << bit));
+    }
+
+    private void setWallWord(int level, int index, long word) {
+        this.levelHashes[level] ^= wallKey(index, this.walls[index]) ^ wallKey(index, word);
+        this.walls[index] = word;
+    }
+
+    private void rehashLevel(int level) {
+        long hash = 0;
+        for (int index = level*this.wordsPerLevel; index < (level+1)*this.wordsPerLevel; index++)
+            hash ^= wallKey(index, this.walls[index]);
+        this.levelHashes[level] = hash;
+    }
+
+    private void addStairs(int cell) {
+        long word = this.stairs[cell >>> 6];
+        this.stairsHash ^= stairsKey(cell >>> 6, word) ^ stairsKey(cell >>> 6, word | (1L << cell));
+        this.stairs[cell >>> 6] = word | (1L << cell);
+    }
+
+    // every word of walls or stairs contributes a key made from its position and value, so a change only rehashes one word
+    private static long wallKey(int index, long word) {
+        return mix(mix(index) ^ word);
+    }
+
+    private static long stairsKey(int index, long word) {
+        return mix(mix(~(long) index) ^ word);
+    }
+
+    /** the splitmix64 finalizer */
+    private static long mix(long x) {
+        x += 0x9E3779B97F4A7C15L;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /** returns true if stairs lead up from the given cell */
+    public boolean hasStairsUp(int cell) {
+        return cell < this.numCells - this.floorCells && (this.stairs[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /** returns true if stairs lead down from the given cell */
+    public boolean hasStairsDown(int cell) {
+        return cell >= this.floorCells && this.hasStairsUp(cell - this.floorCells);
     }
 
     /** returns true if this maze has a wall between the given cells, false otherwise */
     public boolean hasWallBetween(int cell1, int cell2) {
-        return this.mazeGraph[cell1][cell2];
+        int level = this.cellLevel(cell1);
+        if (level != this.cellLevel(cell2))
+            return false;
+        int edge = this.topology.edgeBetween(cell1 - level*this.floorCells, cell2 - level*this.floorCells);
+        return edge >= 0 && this.hasWall(level, edge);
     }
 
     /**
-     * generates a maze using Randomized Prim's algorithm
+     * returns the cell reached by moving from a cell in the given direction (or UPSTAIRS/DOWNSTAIRS),
+     * or -1 if the maze ends there or a wall is in the way
+     * */
+    public int move(int cell, int direction) {
+        if (direction == UPSTAIRS)
+            return this.hasStairsUp(cell) ? cell + this.floorCells : -1;
+        if (direction == DOWNSTAIRS)
+            return this.hasStairsDown(cell) ? cell - this.floorCells : -1;
+
+        int level = this.cellLevel(cell);
+        int floorCell = cell - level*this.floorCells;
+        int edge = this.topology.edge(floorCell, direction);
+        if (edge < 0 || this.hasWall(level, edge))
+            return -1;
+        return level*this.floorCells + this.topology.neighbor(floorCell, direction);
+    }
+
+    /** returns the packed wall words of every floor. Must not be modified. */
+    long[] wallWords() {
+        return this.walls;
+    }
+
+    /** returns the stairs bitset, one bit per cell with stairs up. Must not be modified. */
+    long[] stairWords() {
+        return this.stairs;
+    }
+
+    /** returns the number of wall words used by each floor */
+    int wordsPerLevel() {
+        return this.wordsPerLevel;
+    }
+
+    /**
+     * generates every floor in parallel,
+     * then links each pair of neighboring floors with a single staircase so the whole maze stays perfect
      * */
     private void generateMaze() {
-        Random random = new Random();
+        Random random = new Random(this.seed);
+        long[] floorSeeds = this.floorSeeds(random);
+
+        if (this.levels == 1)
+            this.generateLevel(0, new Random(floorSeeds[0]));
+        else
+            IntStream.range(0, this.levels).parallel().forEach(level -> this.generateLevel(level, new Random(floorSeeds[level])));
+
+        this.addRandomStairs(random);
+    }
+
+    /** draws the floor seeds up front so each floor has its own generator */
+    private long[] floorSeeds(Random random) {
+        long[] floorSeeds = new long[this.levels];
+        for (int level = 0; level < this.levels; level++)
+            floorSeeds[level] = random.nextLong();
+        return floorSeeds;
+    }
 
-        // add a random cell and it's neighbors to initialize lists
-        int visitedCell = random.nextInt(this.numCells);
-        ArrayList<Integer> mazeCells = new ArrayList<>();
-        mazeCells.add(visitedCell);
+    private void addRandomStairs(Random random) {
+        for (int level = 0; level < this.levels-1; level++) {
+            int floorCell;
+            do {
+                floorCell = random.nextInt(this.floorCells);
+            } while (this.mask != null && !this.mask.contains(floorCell));
+            this.addStairs(level*this.floorCells + floorCell);
+        }
+    }
 
-        ArrayList<Integer> unvisitedCells = new ArrayList<>(this.getNeighbors(visitedCell));
+    private void generateLevel(int level, Random random) {
+        switch (this.algorithm) {
+            case PRIMS -> new FloorCarver(level, random).carve(Integer.MAX_VALUE);
+            case BINARY_TREE, SIDEWINDER -> this.generateRows(level, random);
+        }
+    }
 
-        while (!unvisitedCells.isEmpty()) {
-            // pick a random unvisited cell
-            int unvisitedCellIndex = random.nextInt(unvisitedCells.size());
-            int unvisitedCell = unvisitedCells.get(unvisitedCellIndex);
+    private void generateRows(int level, Random random) {
+        int firstWord = level*this.wordsPerLevel;
+        long[] before = this.carveListener == null ? null : Arrays.copyOfRange(this.walls, firstWord, firstWord + this.wordsPerLevel);
 
-            // if the chosen cell is not already in the maze
-            if (!mazeCells.contains(unvisitedCell)) {
-                ArrayList<Integer> neighbors = this.getNeighbors(unvisitedCell);
+        // the row generators rewrite whole words at once, so the floor is rehashed afterwards
+        RowGenerator.generate(this.algorithm, (SquareTopology) this.topology, this.walls, firstWord, random);
+        this.rehashLevel(level);
 
-                // pick a random visited cell that is a neighbor of the unvisited cell
-                do {
-                    int visitedCellIndex = random.nextInt(neighbors.size());
-                    visitedCell = neighbors.get(visitedCellIndex);
-                } while (!mazeCells.contains(visitedCell));
+        if (before != null) {
+            for (int i = 0; i < before.length; i++) {
+                for (long removed = before[i] & ~this.walls[firstWord + i]; removed != 0; removed &= removed - 1)
+                    this.carveListener.wallRemoved(level, (i << 6) + Long.numberOfTrailingZeros(removed));
+            }
+        }
+    }
 
-                // remove the wall separating the cells
-                this.mazeGraph[visitedCell][unvisitedCell] = false;
-                this.mazeGraph[unvisitedCell][visitedCell] = false;
+    private void requireGenerated() {
+        if (this.generation != null)
+            throw new IllegalStateException("Maze has not finished generating");
+    }
 
-                // add all neighbors of unvisited cell to unvisited cells (if not already in list)
-                for (int neighbor: neighbors) {
-                    if (!unvisitedCells.contains(neighbor))
-                        unvisitedCells.add(neighbor);
-                }
+    /**
+     * The progress of a maze carved a step at a time. Floors are carved one after another,
+     * each with the same generator the one-shot constructor gives it, and the stairs are added last.
+     * */
+    private final class Generation {
+        // cells carved between checks of the clock
+        private static final int batchCells = 64;
+
+        private final Random random = new Random(Maze.this.seed);
+        private final long[] floorSeeds = Maze.this.floorSeeds(this.random);
+        private int level;
+        private FloorCarver carver;
+
+        /** carves up to the given number of cells of the current floor, moving on to the next when it's done */
+        private int advance(int maxCells) {
+            if (this.level == Maze.this.levels) {
+                Maze.this.addRandomStairs(this.random);
+                Maze.this.generation = null;
+                return 0;
+            }
 
-                // add the unvisited cell to the maze (making it visited)
-                mazeCells.add(unvisitedCell);
+            if (Maze.this.algorithm != MazeConfig.Algorithm.PRIMS) {
+                // the row generators work on whole words, so each step carves a full floor
+                Maze.this.generateRows(this.level, new Random(this.floorSeeds[this.level]));
+                this.level++;
+                return Maze.this.floorCells;
             }
-            // remove the unvisited cell from the list of unvisited cells
-            unvisitedCells.remove(Integer.valueOf(unvisitedCell));
+
+            if (this.carver == null)
+                this.carver = new FloorCarver(this.level, new Random(this.floorSeeds[this.level]));
+            int carved = this.carver.carve(Math.min(maxCells, batchCells));
+            if (this.carver.isDone()) {
+                this.carver = null;
+                this.level++;
+            }
+            return carved;
         }
     }
 
     /**
-     * returns all neighbors of a cell
+     * carves a single floor using Randomized Prim's algorithm, as many cells at a time as asked for.
+     * Cells joined by edges the mask forces open are added to the maze together, as one node of the spanning tree.
      * */
-    private ArrayList<Integer> getNeighbors(int cell) {
-        ArrayList<Integer> neighborCells = new ArrayList<>();
-        // cell to right is neighbor if on same row
-        if (cell+1 < this.numCells && (cell+1) % mazeSize != 0)
-            neighborCells.add(cell+1);
-        // cell below is neighbor
-        if (cell+this.mazeSize < this.numCells)
-            neighborCells.add(cell+this.mazeSize);
-        // cell to left is neighbor if on same row
-        if (cell-1 >= 0 && cell % mazeSize != 0)
-            neighborCells.add(cell-1);
-        // cell above is neighbor
-        if (cell-this.mazeSize >= 0)
-            neighborCells.add(cell-this.mazeSize);
-
-        return neighborCells;
+    private final class FloorCarver {
+        private final int level;
+        private final Random random;
+        private final int firstBit;
+        private final long[] openEdges;
+
+        // cells already in the maze, and cells that are in the maze, the frontier, or excluded by the mask
+        private final long[] inMaze;
+        private final long[] seen;
+        private final int[] frontier;
+        private int frontierSize;
+        // edges joining the chosen frontier cell to cells already in the maze
+        private final int[] mazeEdges;
+        // cells of a pre-opened group that still need to be added to the maze
+        private final int[] group;
+
+        private FloorCarver(int level, Random random) {
+            this.level = level;
+            this.random = random;
+            int firstWord = level*Maze.this.wordsPerLevel;
+            this.firstBit = firstWord*64;
+            this.openEdges = Maze.this.mask == null ? null : Maze.this.mask.openEdges();
+
+            this.inMaze = new long[(Maze.this.floorCells + 63) >>> 6];
+            this.seen = new long[this.inMaze.length];
+            this.frontier = new int[Maze.this.floorCells];
+            this.mazeEdges = new int[Maze.this.topology.directionCount()];
+            this.group = new int[Maze.this.floorCells];
+
+            if (Maze.this.mask != null) {
+                long[] cells = Maze.this.mask.cells();
+                for (int i = 0; i < this.seen.length; i++)
+                    this.seen[i] = ~cells[i];
+                for (int i = 0; i < this.openEdges.length; i++) {
+                    long removed = Maze.this.walls[firstWord + i] & this.openEdges[i];
+                    Maze.this.setWallWord(level, firstWord + i, Maze.this.walls[firstWord + i] & ~this.openEdges[i]);
+                    if (Maze.this.carveListener == null)
+                        continue;
+                    for (; removed != 0; removed &= removed - 1)
+                        Maze.this.carveListener.wallRemoved(level, (i << 6) + Long.numberOfTrailingZeros(removed));
+                }
+            }
+
+            // add a random cell and it's neighbors to initialize lists
+            int visitedCell = random.nextInt(Maze.this.floorCells);
+            while ((this.seen[visitedCell >>> 6] & (1L << visitedCell)) != 0)
+                visitedCell = (visitedCell + 1) % Maze.this.floorCells;
+            this.addToMaze(visitedCell);
+        }
+
+        private boolean isDone() {
+            return this.frontierSize == 0;
+        }
+
+        /** takes up to the given number of cells off the frontier, returning how many were taken */
+        private int carve(int maxCells) {
+            int[] offsets = Maze.this.topology.neighborOffsets();
+            int[] neighbors = Maze.this.topology.neighborCells();
+            int[] edges = Maze.this.topology.neighborEdges();
+
+            int taken = 0;
+            while (this.frontierSize > 0 && taken < maxCells) {
+                taken++;
+                // pick a random unvisited cell and remove it from the frontier
+                int unvisitedCellIndex = this.random.nextInt(this.frontierSize);
+                int unvisitedCell = this.frontier[unvisitedCellIndex];
+                this.frontier[unvisitedCellIndex] = this.frontier[--this.frontierSize];
+
+                // cells of a pre-opened group may already have joined along with the rest of their group
+                if ((this.inMaze[unvisitedCell >>> 6] & (1L << unvisitedCell)) != 0)
+                    continue;
+
+                // pick a random visited cell that is a neighbor of the unvisited cell
+                int numMazeEdges = 0;
+                for (int i = offsets[unvisitedCell]; i < offsets[unvisitedCell+1]; i++) {
+                    int neighbor = neighbors[i];
+                    if ((this.inMaze[neighbor >>> 6] & (1L << neighbor)) != 0)
+                        this.mazeEdges[numMazeEdges++] = edges[i];
+                }
+
+                // remove the wall separating the cells
+                int edge = this.mazeEdges[this.random.nextInt(numMazeEdges)];
+                int bit = this.firstBit + edge;
+                Maze.this.setWallWord(this.level, bit >>> 6, Maze.this.walls[bit >>> 6] & ~(1L << bit));
+                if (Maze.this.carveListener != null)
+                    Maze.this.carveListener.wallRemoved(this.level, edge);
+
+                this.addToMaze(unvisitedCell);
+            }
+            return taken;
+        }
+
+        /** adds a cell, and every cell joined to it by pre-opened edges, to the maze and puts their unseen neighbors on the frontier */
+        private void addToMaze(int cell) {
+            int[] offsets = Maze.this.topology.neighborOffsets();
+            int[] neighbors = Maze.this.topology.neighborCells();
+            int[] edges = Maze.this.topology.neighborEdges();
+
+            this.inMaze[cell >>> 6] |= 1L << cell;
+            this.seen[cell >>> 6] |= 1L << cell;
+            int groupSize = 0;
+            this.group[groupSize++] = cell;
+
+            while (groupSize > 0) {
+                int current = this.group[--groupSize];
+
+                for (int i = offsets[current]; i < offsets[current+1]; i++) {
+                    int neighbor = neighbors[i];
+                    if ((this.inMaze[neighbor >>> 6] & (1L << neighbor)) != 0)
+                        continue;
+
+                    if (this.openEdges != null && (this.openEdges[edges[i] >>> 6] & (1L << edges[i])) != 0) {
+                        // pre-opened neighbors join the maze right away
+                        this.inMaze[neighbor >>> 6] |= 1L << neighbor;
+                        this.seen[neighbor >>> 6] |= 1L << neighbor;
+                        this.group[groupSize++] = neighbor;
+                    } else if ((this.seen[neighbor >>> 6] & (1L << neighbor)) == 0) {
+                        // add all neighbors of the cell to the frontier (if not already in it or the maze)
+                        this.frontier[this.frontierSize++] = neighbor;
+                        this.seen[neighbor >>> 6] |= 1L << neighbor;
+                    }
+                }
+            }
+        }
     }
 
     /**
     * returns all neighbors of a cell that are reachable by the cell
     * */
     public ArrayList<Integer> getReachableNeighbors(int cell) {
-        ArrayList<Integer> neighbors = getNeighbors(cell);
+        int[] offsets = this.topology.neighborOffsets();
+        int[] neighbors = this.topology.neighborCells();
+        int[] edges = this.topology.neighborEdges();
+        int level = this.cellLevel(cell);
+        int floorCell = cell - level*this.floorCells;
+
         ArrayList<Integer> validNeighbors = new ArrayList<>();
-        for (int neighbor : neighbors) {
-            if (!this.mazeGraph[cell][neighbor])
-                validNeighbors.add(neighbor);
+        for (int i = offsets[floorCell]; i < offsets[floorCell+1]; i++) {
+            if (!this.hasWall(level, edges[i]))
+                validNeighbors.add(level*this.floorCells + neighbors[i]);
         }
+        if (this.hasStairsUp(cell))
+            validNeighbors.add(cell + this.floorCells);
+        if (this.hasStairsDown(cell))
+            validNeighbors.add(cell - this.floorCells);
         return validNeighbors;
     }
 
     /**
      * Finds the shortest path of this maze using breadth first search.
-     * Returns a stack of integers representing the cells (top cell is the start cell)
+     * Returns a new path of cells with the start cell at its head and the goal at its tail
      * */
-    public LinkedList<Integer> solve() {
-        // solve maze using BFS
-        LinkedList<Integer> nextCells = new LinkedList<>();
-        ArrayList<Integer> visitedCells = new ArrayList<>();
-        nextCells.add(this.start);
-        while (!nextCells.isEmpty()) {
-            int nextCell = nextCells.pop();
-            visitedCells.add(nextCell);
-
-            if (nextCell == this.goal) break;
-
-            // append neighbors to the list and continue
-            ArrayList<Integer> validNeighbors = getReachableNeighbors(nextCell);
-            for (int neighbor : validNeighbors) {
-                if (!visitedCells.contains(neighbor))
-                    nextCells.add(neighbor);
-            }
+    public CellPath solve() {
+        int[] path = this.solutionPath();
+        CellPath shortestPath = new CellPath(this, path[path.length-1]);
+        for (int i = path.length-2; i >= 0; i--)
+            shortestPath.push(path[i]);
+        return shortestPath;
+    }
+
+    /**
+     * returns the cells of the shortest path from the start to the goal, in order.
+     * The array is shared through the solution cache and must not be modified.
+     * */
+    public int[] solutionPath() {
+        this.requireGenerated();
+        int goal = this.nearestGoal();
+        return SolutionCache.shared().path(this.structuralHash(), this.start, goal, () -> this.findSolutionPath(goal));
+    }
+
+    /**
+     * returns the distance from every cell to its nearest goal, and which goal that is.
+     * The field is shared through the solution cache and must not be modified.
+     * */
+    public GoalField goalField() {
+        this.requireGenerated();
+        int[] goals = this.goals;
+        long goalsHash = 0;
+        for (int i = 0; i < goals.length; i++)
+            goalsHash = mix(goalsHash ^ goals[i]);
+        return SolutionCache.shared().goalField(this.structuralHash(), goalsHash, () -> this.findGoalField(goals));
+    }
+
+    /** returns the neighbor of a cell that is one move closer to its nearest goal, or -1 if it is a goal or cut off from them */
+    public int nextStepToGoal(int cell) {
+        int[] distances = this.goalField().distances();
+        if (distances[cell] <= 0)
+            return -1;
+        for (int direction = DOWNSTAIRS; direction < this.topology.directionCount(); direction++) {
+            int neighbor = this.move(cell, direction);
+            if (neighbor >= 0 && distances[neighbor] == distances[cell] - 1)
+                return neighbor;
         }
+        return -1;
+    }
 
-        // reconstruct shortest path
-        LinkedList<Integer> shortestPath = new LinkedList<>();
-        int currCell = visitedCells.getLast();
-        shortestPath.push(currCell);
-        ArrayList<Integer> neighbors = getReachableNeighbors(currCell);
-        for (int i = visitedCells.size()-1; i >= 0; i--) {
-            int nextCell = visitedCells.get(i);
-            if (neighbors.contains(nextCell)) {
-                shortestPath.push(nextCell);
-                currCell = nextCell;
-                neighbors = getReachableNeighbors(currCell);
-            }
+    /**
+     * returns the number of moves from the given cell to every cell of the maze, or -1 for unreachable cells.
+     * The array is shared through the solution cache and must not be modified.
+     * */
+    public int[] distancesFrom(int cell) {
+        this.requireGenerated();
+        return SolutionCache.shared().distances(this.structuralHash(), cell, () -> this.findDistances(cell));
+    }
+
+    public MazeMetrics metrics() {
+        this.requireGenerated();
+        return SolutionCache.shared().metrics(this.structuralHash(), this.start, this.nearestGoal(), () -> {
+            int farthest = 0;
+            for (int distance : this.distancesFrom(this.start))
+                farthest = Math.max(farthest, distance);
+            return new MazeMetrics(
+                    MazeAnalytics.wallCount(this),
+                    MazeAnalytics.deadEndCount(this),
+                    this.solutionPath().length,
+                    farthest
+            );
+        });
+    }
+
+    private int[] findSolutionPath(int goal) {
+        int[] parents = new int[this.numCells];
+        int[] order = new int[this.numCells];
+        this.breadthFirstSearch(new int[] {this.start}, goal, parents, order);
+
+        // reconstruct shortest path by walking back from the goal
+        int length = 1;
+        for (int cell = goal; cell != this.start; cell = parents[cell])
+            length++;
+
+        int[] path = new int[length];
+        int cell = goal;
+        for (int i = length-1; i >= 0; i--) {
+            path[i] = cell;
+            cell = parents[cell];
+        }
+        return path;
+    }
+
+    private int[] findDistances(int from) {
+        int[] parents = new int[this.numCells];
+        int[] distances = new int[this.numCells];
+        int visited = this.breadthFirstSearch(new int[] {from}, -1, parents, distances);
+
+        // the visiting order was written into the distance array, so copy it out before filling in distances
+        int[] order = Arrays.copyOf(distances, visited);
+        Arrays.fill(distances, -1);
+        distances[from] = 0;
+        for (int i = 1; i < visited; i++)
+            distances[order[i]] = distances[parents[order[i]]] + 1;
+        return distances;
+    }
+
+    private GoalField findGoalField(int[] goals) {
+        int[] parents = new int[this.numCells];
+        int[] distances = new int[this.numCells];
+        int[] owners = new int[this.numCells];
+        int visited = this.breadthFirstSearch(goals, -1, parents, distances);
+
+        // every goal is its own parent, so each cell inherits its distance and goal from its parent in visiting order
+        int[] order = Arrays.copyOf(distances, visited);
+        Arrays.fill(distances, -1);
+        Arrays.fill(owners, -1);
+        for (int i = 0; i < goals.length; i++) {
+            distances[goals[i]] = 0;
+            owners[goals[i]] = i;
+        }
+        for (int i = goals.length; i < visited; i++) {
+            int parent = parents[order[i]];
+            distances[order[i]] = distances[parent] + 1;
+            owners[order[i]] = owners[parent];
         }
+        return new GoalField(goals, distances, owners);
+    }
 
-        return shortestPath;
+    /**
+     * runs a breadth first search outwards from every source cell at once until the target is reached (or everywhere if target is -1),
+     * filling in the parent of each visited cell and the order cells were visited in. Returns the number of cells visited.
+     * Sources are their own parents and are always the first cells in the order.
+     * */
+    private int breadthFirstSearch(int[] sources, int target, int[] parents, int[] order) {
+        int[] offsets = this.topology.neighborOffsets();
+        int[] neighbors = this.topology.neighborCells();
+        int[] edges = this.topology.neighborEdges();
+
+        // the parent of each visited cell doubles as the visited flag
+        Arrays.fill(parents, -1);
+        int head = 0;
+        int tail = 0;
+
+        for (int from : sources) {
+            order[tail++] = from;
+            parents[from] = from;
+        }
+        while (head < tail) {
+            int nextCell = order[head++];
+            if (nextCell == target) break;
+
+            // append neighbors on the same floor to the queue
+            int level = nextCell / this.floorCells;
+            int levelStart = level*this.floorCells;
+            int floorCell = nextCell - levelStart;
+            int firstBit = level*this.wordsPerLevel*64;
+            for (int i = offsets[floorCell]; i < offsets[floorCell+1]; i++) {
+                int neighbor = levelStart + neighbors[i];
+                int bit = firstBit + edges[i];
+                if (parents[neighbor] < 0 && (this.walls[bit >>> 6] & (1L << bit)) == 0) {
+                    parents[neighbor] = nextCell;
+                    order[tail++] = neighbor;
+                }
+            }
+
+            // and the floors connected by stairs
+            if (this.hasStairsUp(nextCell) && parents[nextCell + this.floorCells] < 0) {
+                parents[nextCell + this.floorCells] = nextCell;
+                order[tail++] = nextCell + this.floorCells;
+            }
+            if (this.hasStairsDown(nextCell) && parents[nextCell - this.floorCells] < 0) {
+                parents[nextCell - this.floorCells] = nextCell;
+                order[tail++] = nextCell - this.floorCells;
+            }
+        }
+        return tail;
     }
 
     public String toString() {
         StringBuilder mazeStr = new StringBuilder();
-        mazeStr.append(String.format("MazeSize = %dx%d, # of Cells = %d\n", this.mazeSize, this.mazeSize, (int) Math.pow(this.mazeSize, 2)));
-        mazeStr.append("|---".repeat(this.mazeSize));
-        mazeStr.append("|\n");
+        mazeStr.append(String.format("MazeSize = %dx%d, # of Cells = %d\n", this.mazeSize, this.topology.height(), this.numCells));
+        // only square grids can be drawn as text
+        if (!(this.topology instanceof SquareTopology))
+            return mazeStr.toString();
 
-        LinkedList<Integer> shortestPath = this.solve();
+        CellPath shortestPath = this.solve();
 
-        for (int i = 0; i < this.mazeSize; i++) {
-            mazeStr.append("|");
-            for (int j = 0; j < this.mazeSize; j++) {
-                int cell = cellValue(i, j);
-                int neighbor = (cell+1 < this.numCells && (cell+1) % this.mazeSize != 0) ? cell+1 : -1;
+        for (int level = 0; level < this.levels; level++) {
+            if (this.levels > 1)
+                mazeStr.append(String.format("Floor %d\n", level+1));
+            mazeStr.append("|---".repeat(this.mazeSize));
+            mazeStr.append("|\n");
 
-                if (this.printShortestPath && shortestPath.contains(cell))
-                    mazeStr.append(" X ");
-                else
-                    mazeStr.append("   ");
+            for (int i = 0; i < this.topology.height(); i++) {
+                mazeStr.append("|");
+                for (int j = 0; j < this.mazeSize; j++) {
+                    int cell = cellValue(level, i, j);
+
+                    if (this.printShortestPath && shortestPath.contains(cell))
+                        mazeStr.append(" X ");
+                    else if (this.hasStairsUp(cell))
+                        mazeStr.append(" ^ ");
+                    else if (this.hasStairsDown(cell))
+                        mazeStr.append(" v ");
+                    else
+                        mazeStr.append("   ");
+
+                    if (this.move(cell, SquareTopology.RIGHT) == -1)
+                        mazeStr.append("|");
+                    else
+                        mazeStr.append(" ");
+                }
+                mazeStr.append("\n");
 
-                if (neighbor == -1 || this.mazeGraph[cell][neighbor])
+                for (int j = 0; j < this.mazeSize; j++) {
                     mazeStr.append("|");
-                else
-                    mazeStr.append(" ");
-            }
-            mazeStr.append("\n");
-
-            for (int j = 0; j < this.mazeSize; j++) {
-                mazeStr.append("|");
-                int cell = cellValue(i, j);
-                int neighbor = cell+this.mazeSize < this.numCells ? cell+this.mazeSize : -1;
+                    int cell = cellValue(level, i, j);
 
-                if (neighbor == -1 || this.mazeGraph[cell][neighbor])
-                    mazeStr.append("---");
-                else
-                    mazeStr.append("   ");
+                    if (this.move(cell, SquareTopology.DOWN) == -1)
+                        mazeStr.append("---");
+                    else
+                        mazeStr.append("   ");
+                }
+                mazeStr.append("|\n");
             }
-            mazeStr.append("|\n");
         }
 
         if (this.printShortestPath) {
             mazeStr.append("Cell on shortest path is marked with an 'X'.");
+            if (this.levels > 1)
+                mazeStr.append(" Stairs up are marked with '^' and stairs down with 'v'.");
         }
         return mazeStr.toString();
     }
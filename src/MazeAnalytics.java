@@ -0,0 +1,155 @@
+/**
+ * Bulk statistics over the walls of a maze.
+ * Plain square grids are counted 64 cells at a time straight from the packed wall planes,
+ * every other topology falls back to walking the neighbor tables one cell at a time.
+ * */
+public class MazeAnalytics {
+    /** returns the number of walls between neighboring cells, on every floor */
+    public static long wallCount(Maze maze) {
+        if (maze.topology().getClass() == SquareTopology.class)
+            return wallCountWords(maze);
+        return wallCountScalar(maze);
+    }
+
+    /** returns the number of cells with exactly one way out, on every floor */
+    public static long deadEndCount(Maze maze) {
+        if (maze.topology().getClass() == SquareTopology.class)
+            return deadEndCountWords(maze);
+        return deadEndCountScalar(maze);
+    }
+
+    public static long wallCountWords(Maze maze) {
+        SquareTopology topology = (SquareTopology) maze.topology();
+        long[] walls = maze.wallWords();
+        long[] lastColumn = topology.lastColumnMask();
+        int planeWords = topology.planeWords();
+        int numCells = topology.cellCount();
+        int lastRowStart = numCells - topology.width();
+
+        long count = 0;
+        for (int level = 0; level < maze.levels(); level++) {
+            int east = level * maze.wordsPerLevel();
+            int south = east + planeWords;
+            for (int i = 0; i < planeWords; i++) {
+                long valid = RowGenerator.rangeMask(i, 0, numCells);
+                long lastRow = RowGenerator.rangeMask(i, lastRowStart, numCells);
+                count += Long.bitCount(walls[east + i] & ~lastColumn[i] & valid);
+                count += Long.bitCount(walls[south + i] & ~lastRow & valid);
+            }
+        }
+        return count;
+    }
+
+    public static long wallCountScalar(Maze maze) {
+        Topology topology = maze.topology();
+        int[] offsets = topology.neighborOffsets();
+        int[] neighbors = topology.neighborCells();
+        int[] edges = topology.neighborEdges();
+
+        long count = 0;
+        for (int level = 0; level < maze.levels(); level++) {
+            for (int cell = 0; cell < topology.cellCount(); cell++) {
+                // count each edge from its lower cell only
+                for (int i = offsets[cell]; i < offsets[cell+1]; i++) {
+                    if (neighbors[i] > cell && maze.hasWall(level, edges[i]))
+                        count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public static long deadEndCountWords(Maze maze) {
+        SquareTopology topology = (SquareTopology) maze.topology();
+        long[] walls = maze.wallWords();
+        int planeWords = topology.planeWords();
+        int numCells = topology.cellCount();
+        int width = topology.width();
+
+        long count = 0;
+        for (int level = 0; level < maze.levels(); level++) {
+            int east = level * maze.wordsPerLevel();
+            int south = east + planeWords;
+            for (int i = 0; i < planeWords; i++) {
+                long valid = RowGenerator.rangeMask(i, 0, numCells);
+                int firstCell = i << 6;
+
+                // the east wall of a cell's left neighbor is its west wall, and the south wall of the cell above is its north wall.
+                // the unused east edges of the rightmost column always keep their walls, which closes off the leftmost column.
+                long openEast = ~walls[east + i];
+                long openWest = ~bitsFrom(walls, east, planeWords, firstCell - 1);
+                long openSouth = ~walls[south + i];
+                long openNorth = ~bitsFrom(walls, south, planeWords, firstCell - width);
+
+                long any = openEast | openWest | openSouth | openNorth;
+                long twoOrMore = (openEast & openWest) | (openSouth & openNorth) | ((openEast | openWest) & (openSouth | openNorth));
+                count += Long.bitCount(any & ~twoOrMore & valid);
+            }
+        }
+        return count + stairsDeadEndCorrection(maze);
+    }
+
+    public static long deadEndCountScalar(Maze maze) {
+        Topology topology = maze.topology();
+        int[] offsets = topology.neighborOffsets();
+        int[] edges = topology.neighborEdges();
+
+        long count = 0;
+        for (int level = 0; level < maze.levels(); level++) {
+            for (int cell = 0; cell < topology.cellCount(); cell++) {
+                int open = 0;
+                for (int i = offsets[cell]; i < offsets[cell+1]; i++) {
+                    if (!maze.hasWall(level, edges[i]))
+                        open++;
+                }
+                if (open == 1)
+                    count++;
+            }
+        }
+        return count + stairsDeadEndCorrection(maze);
+    }
+
+    /** returns the change in dead ends once the stairs are counted as ways out, since the floor counts ignore them */
+    private static long stairsDeadEndCorrection(Maze maze) {
+        long[] stairs = maze.stairWords();
+        long correction = 0;
+        for (int i = 0; i < stairs.length; i++) {
+            for (long word = stairs[i]; word != 0; word &= word - 1) {
+                int cell = (i << 6) + Long.numberOfTrailingZeros(word);
+                correction += stairsCorrection(maze, cell);
+                // the top of the stairs is handled with its own stairs up, if it has any
+                int upperCell = cell + maze.floorCellCount();
+                if (!maze.hasStairsUp(upperCell))
+                    correction += stairsCorrection(maze, upperCell);
+            }
+        }
+        return correction;
+    }
+
+    private static int stairsCorrection(Maze maze, int cell) {
+        Topology topology = maze.topology();
+        int[] offsets = topology.neighborOffsets();
+        int[] edges = topology.neighborEdges();
+
+        int level = maze.cellLevel(cell);
+        int floorCell = cell % maze.floorCellCount();
+        int open = 0;
+        for (int i = offsets[floorCell]; i < offsets[floorCell+1]; i++) {
+            if (!maze.hasWall(level, edges[i]))
+                open++;
+        }
+        int stairs = (maze.hasStairsUp(cell) ? 1 : 0) + (maze.hasStairsDown(cell) ? 1 : 0);
+        return (open + stairs == 1 ? 1 : 0) - (open == 1 ? 1 : 0);
+    }
+
+    /** reads the 64 bits of a plane starting at any bit, where bits before the plane read as walls */
+    private static long bitsFrom(long[] words, int planeStart, int planeWords, long bit) {
+        int index = (int) Math.floorDiv(bit, 64);
+        int offset = Math.floorMod(bit, 64);
+        long low = index < 0 ? -1L : words[planeStart + index];
+        if (offset == 0)
+            return low;
+        long high = index+1 < 0 ? -1L : (index+1 < planeWords ? words[planeStart + index+1] : -1L);
+        return (low >>> offset) | (high << (64 - offset));
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times the word-at-a-time row generators and analytics against their scalar versions,
+ * and checks that both produce the same walls and counts.
+ * Usage: MazeBenchmark [size] [levels]
+ * */
+public class MazeBenchmark {
+    private static final int warmupRuns = 5;
+    private static final int timedRuns = 20;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int levels = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        SquareTopology topology = new SquareTopology(size, size);
+        System.out.printf("Row generators on a %dx%d grid (%d cells)\n", size, size, topology.cellCount());
+
+        for (MazeConfig.Algorithm algorithm : new MazeConfig.Algorithm[] {MazeConfig.Algorithm.BINARY_TREE, MazeConfig.Algorithm.SIDEWINDER}) {
+            long[] wordWalls = new long[2 * topology.planeWords()];
+            long[] scalarWalls = new long[wordWalls.length];
+
+            double wordMs = timeGenerator(algorithm, topology, wordWalls, true);
+            double scalarMs = timeGenerator(algorithm, topology, scalarWalls, false);
+            System.out.printf("%-12s words: %8.3f ms  scalar: %8.3f ms  speedup: %5.1fx  same walls: %b\n",
+                    algorithm, wordMs, scalarMs, scalarMs / wordMs, Arrays.equals(wordWalls, scalarWalls));
+        }
+
+        Maze maze = new Maze(topology, levels, null, MazeConfig.Algorithm.SIDEWINDER);
+        System.out.printf("Analytics on a %dx%dx%d maze\n", size, size, levels);
+
+        long[] counts = new long[2];
+        double wordMs = time(() -> counts[0] = MazeAnalytics.wallCountWords(maze));
+        double scalarMs = time(() -> counts[1] = MazeAnalytics.wallCountScalar(maze));
+        System.out.printf("%-12s words: %8.3f ms  scalar: %8.3f ms  speedup: %5.1fx  counts: %d / %d\n",
+                "walls", wordMs, scalarMs, scalarMs / wordMs, counts[0], counts[1]);
+
+        wordMs = time(() -> counts[0] = MazeAnalytics.deadEndCountWords(maze));
+        scalarMs = time(() -> counts[1] = MazeAnalytics.deadEndCountScalar(maze));
+        System.out.printf("%-12s words: %8.3f ms  scalar: %8.3f ms  speedup: %5.1fx  counts: %d / %d\n",
+                "dead ends", wordMs, scalarMs, scalarMs / wordMs, counts[0], counts[1]);
+    }
+
+    /** times carving the same random bits over and over, leaving the last result in walls */
+    private static double timeGenerator(MazeConfig.Algorithm algorithm, SquareTopology topology, long[] walls, boolean useWords) {
+        Random random = new Random(5410);
+        long[] carveBits = RowGenerator.randomBits(random, topology.planeWords());
+        long[] closeBits = RowGenerator.randomBits(random, topology.planeWords());
+
+        return time(() -> {
+            Arrays.fill(walls, -1L);
+            if (algorithm == MazeConfig.Algorithm.BINARY_TREE && useWords)
+                RowGenerator.binaryTree(topology, walls, 0, carveBits);
+            else if (algorithm == MazeConfig.Algorithm.BINARY_TREE)
+                RowGenerator.binaryTreeScalar(topology, walls, 0, carveBits);
+            else if (useWords)
+                RowGenerator.sidewinder(topology, walls, 0, carveBits, closeBits);
+            else
+                RowGenerator.sidewinderScalar(topology, walls, 0, carveBits, closeBits);
+        });
+    }
+
+    /** returns the average time of a task in milliseconds, after a few warmup runs */
+    private static double time(Runnable task) {
+        for (int i = 0; i < warmupRuns; i++)
+            task.run();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < timedRuns; i++)
+            task.run();
+        return (System.nanoTime() - start) / 1e6 / timedRuns;
+    }
+}
@@ -1,5 +1,3 @@
-import edu.usu.graphics.Rectangle;
-
 /**
  * Configuration class for the look of the maze in the window.
  * Prevents the data used for rendering from being stored all over the code.
@@ -7,17 +5,60 @@ import edu.usu.graphics.Rectangle;
 public class MazeConfig {
     public static float mazeRectLength = 0.02f;
     public static float mazeRectRenderValue = 0.6f;
+    public static float stairsRectLength = 0.036f;
 
     public static int startCell = 0;
 
+    // size of the CUSTOM difficulty's square grid, usually set from the command line; 0 leaves it off
+    public static int customMazeSize = 0;
+
+    // number of floors used when multi-level mazes are enabled
+    public static int multiLevelFloors = 3;
+
+    // the simulation runs at a fixed rate whatever the frame rate, catching up at most this many ticks per frame
+    public static int ticksPerSecond = 120;
+    public static int maxTicksPerFrame = 8;
+
+    // limits on how much of a maze is carved each frame while generation is watched;
+    // bigger mazes carve more cells per frame so that carving takes about generationFrames frames at most
+    public static int generationCellsPerFrame = 4;
+    public static int generationFrames = 1800;
+    public static long generationFrameNanos = 2_000_000;
+
+    // print each move and new maze to the console
+    public static boolean verbose = true;
+
+    // number of mazes kept ready for each difficulty, so starting a new maze doesn't wait on generation
+    public static int mazePoolDepth = 2;
+    // moves a player can take back before the oldest are forgotten
+    public static int maxUndoMoves = 1 << 16;
+    // key events that can wait between two simulation ticks before new ones are dropped
+    public static int keyEventCapacity = 256;
+    // game events that can wait for their slowest subscriber before the simulation waits for it
+    public static int eventBusCapacity = 1024;
+    // bots racing the player in crowd mode, and the average seconds each takes per move
+    public static int crowdAgents = 10_000;
+    public static float agentMoveTime = 0.07f;
+    // memory the crowd's Trémaux bots may use for their marks; once it's used up, the rest follow walls instead
+    public static long maxTremauxMarkBytes = 256L << 20;
+    // enemies chasing the player in chase mode, and the seconds each takes per move
+    public static int pursuerCount = 3;
+    public static float pursuerMoveTime = 0.4f;
+
     public static float wallRenderValue = 0.6f;
 
+    // mazes bigger than every difficulty are scaled to fit this width, with walls a fixed fraction of a cell
+    public static float maxMazeExtent = 1.0f;
+    public static float maxCellLength = 0.1f;
+    public static float wallWidthRatio = 0.1f;
+
     public static float wallWidth(Difficulty difficulty) {
         return switch (difficulty) {
             case EASY -> 0.01f;
             case MEDIUM -> 0.008f;
             case HARD -> 0.006f;
             case EXTREME -> 0.005f;
+            case CUSTOM -> cellLength(difficulty) * wallWidthRatio;
         };
     }
 
@@ -27,34 +68,16 @@ public class MazeConfig {
             case MEDIUM -> 0.08f;
             case HARD -> 0.06f;
             case EXTREME -> 0.05f;
+            case CUSTOM -> Math.min(maxCellLength, maxMazeExtent / Math.max(1, customMazeSize));
         };
     }
 
-    public static Rectangle createMazeRect(float left, float top) {
-        return new Rectangle(
-                left, top,
-                mazeRectLength,
-                mazeRectLength,
-                mazeRectRenderValue
-        );
-    }
-
-    public static Rectangle createMazeWall(float left, float top, boolean isSideWall, Difficulty difficulty) {
-        float wallWidth = wallWidth(difficulty);
-        float trueLeft = left + wallWidth/2;
-        float trueTop = top + wallWidth/2;
-
-        if (isSideWall)
-            return new Rectangle(trueLeft, trueTop, wallWidth, cellLength(difficulty), wallRenderValue);
-        else
-            return new Rectangle(trueLeft, trueTop, cellLength(difficulty), wallWidth, wallRenderValue);
-    }
-
     /**
      * EASY: 5x5,
      * MEDIUM: 10x10,
      * HARD: 15x15,
-     * EXTREME: 20x20
+     * EXTREME: 20x20,
+     * CUSTOM: customMazeSize x customMazeSize
      * */
     public static int mazeSize(Difficulty difficulty) {
         return switch (difficulty) {
@@ -62,57 +85,17 @@ public class MazeConfig {
             case MEDIUM -> 10;
             case HARD -> 15;
             case EXTREME -> 20;
+            case CUSTOM -> customMazeSize;
         };
     }
 
-    public static int numberOfCells(Difficulty difficulty) {
-        return (int) Math.pow(mazeSize(difficulty), 2);
-    }
-
-    public static float startLeft(Difficulty difficulty) {
-        return -(cellLength(difficulty) * mazeSize(difficulty))/2;
-    }
-
-    public static float startTop(Difficulty difficulty) {
-        return -(cellLength(difficulty) * mazeSize(difficulty))/2;
-    }
-
-    public static float playerStartLeft(Difficulty difficulty) {
-        return (cellLength(difficulty)/ 2.0f) + startLeft(difficulty);
-    }
-
-    public static float playerStartTop(Difficulty difficulty) {
-        return (cellLength(difficulty)/ 2.0f) + startTop(difficulty);
-    }
-
-    public static float goalLeft(Difficulty difficulty) {
-        return playerStartLeft(difficulty) + cellLength(difficulty) * (mazeSize(difficulty)-1);
-    }
-
-    public static float goalTop(Difficulty difficulty) {
-        return playerStartTop(difficulty) + cellLength(difficulty) * (mazeSize(difficulty)-1);
-    }
-
-    public static float cellLeft(int row, Difficulty difficulty) {
-        if (row % mazeSize(difficulty) == 0)
-            return playerStartLeft(difficulty);
-        else
-            return playerStartLeft(difficulty) + cellLength(difficulty) * row;
-    }
-
-    public static float cellTop(int col, Difficulty difficulty) {
-        if (col + mazeSize(difficulty) > numberOfCells(difficulty))
-            return playerStartTop(difficulty);
-        else
-            return playerStartTop(difficulty) + cellLength(difficulty) * col;
-    }
-
     public static int difficultyIndex(Difficulty difficulty) {
         return switch (difficulty) {
             case EASY -> 0;
             case MEDIUM -> 1;
             case HARD -> 2;
             case EXTREME -> 3;
+            case CUSTOM -> 4;
         };
     }
 
@@ -122,11 +105,25 @@ public class MazeConfig {
             case 1 -> mazeSize(Difficulty.MEDIUM);
             case 2 -> mazeSize(Difficulty.HARD);
             case 3 -> mazeSize(Difficulty.EXTREME);
+            case 4 -> mazeSize(Difficulty.CUSTOM);
             default -> mazeSize(Difficulty.EASY);
         };
     }
 
+    /** returns true if the difficulty can be played: every one but CUSTOM, which needs a size */
+    public static boolean isAvailable(Difficulty difficulty) {
+        return difficulty != Difficulty.CUSTOM || customMazeSize > 0;
+    }
+
     public enum Difficulty {
-        EASY, MEDIUM, HARD, EXTREME
+        EASY, MEDIUM, HARD, EXTREME, CUSTOM
+    }
+
+    /**
+     * PRIMS: Randomized Prim's, works on every topology and mask,
+     * BINARY_TREE and SIDEWINDER: row by row generators for unmasked square grids
+     * */
+    public enum Algorithm {
+        PRIMS, BINARY_TREE, SIDEWINDER
     }
 }
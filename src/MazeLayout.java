@@ -0,0 +1,148 @@
+import edu.usu.graphics.Rectangle;
+
+/**
+ * Where the cells and walls of a maze are drawn in the window, worked out once per maze.
+ * Grids the size of a difficulty keep that difficulty's look, any other size is scaled to fit the window.
+ * */
+public final class MazeLayout {
+    private final int columns;
+    private final int rows;
+    private final float cellLength;
+    private final float wallWidth;
+    private final float markerLength;
+    private final float stairsLength;
+    private final float left;
+    private final float top;
+
+    // left and top of the marker drawn in each column and row
+    private final float[] columnX;
+    private final float[] rowY;
+
+    private MazeLayout(int columns, int rows, float cellLength, float wallWidth) {
+        this.columns = columns;
+        this.rows = rows;
+        this.cellLength = cellLength;
+        this.wallWidth = wallWidth;
+        // markers shrink with the cells once the cells get too small to hold them
+        this.markerLength = Math.min(MazeConfig.mazeRectLength, cellLength * 0.4f);
+        this.stairsLength = Math.min(MazeConfig.stairsRectLength, cellLength * 0.72f);
+        this.left = -(cellLength * columns)/2;
+        this.top = -(cellLength * rows)/2;
+
+        this.columnX = new float[columns];
+        for (int column = 0; column < columns; column++)
+            this.columnX[column] = this.left + cellLength/2 + cellLength * column;
+        this.rowY = new float[rows];
+        for (int row = 0; row < rows; row++)
+            this.rowY[row] = this.top + cellLength/2 + cellLength * row;
+    }
+
+    public static MazeLayout of(MazeConfig.Difficulty difficulty) {
+        int size = MazeConfig.mazeSize(difficulty);
+        return new MazeLayout(size, size, MazeConfig.cellLength(difficulty), MazeConfig.wallWidth(difficulty));
+    }
+
+    /** returns the layout of a single floor of the maze */
+    public static MazeLayout of(Maze maze) {
+        return forGrid(maze.topology().width(), maze.topology().height());
+    }
+
+    public static MazeLayout forGrid(int columns, int rows) {
+        for (MazeConfig.Difficulty difficulty : MazeConfig.Difficulty.values()) {
+            if (columns == rows && columns == MazeConfig.mazeSize(difficulty))
+                return of(difficulty);
+        }
+        float cellLength = Math.min(MazeConfig.maxCellLength, MazeConfig.maxMazeExtent / Math.max(columns, rows));
+        return new MazeLayout(columns, rows, cellLength, cellLength * MazeConfig.wallWidthRatio);
+    }
+
+    public int columns() {
+        return this.columns;
+    }
+
+    public int rows() {
+        return this.rows;
+    }
+
+    public float cellLength() {
+        return this.cellLength;
+    }
+
+    public float wallWidth() {
+        return this.wallWidth;
+    }
+
+    public float markerLength() {
+        return this.markerLength;
+    }
+
+    /** returns the left edge of the whole maze */
+    public float left() {
+        return this.left;
+    }
+
+    /** returns the top edge of the whole maze */
+    public float top() {
+        return this.top;
+    }
+
+    /** returns the left of the marker drawn in the given column */
+    public float columnX(int column) {
+        return this.columnX[column];
+    }
+
+    /** returns the top of the marker drawn in the given row */
+    public float rowY(int row) {
+        return this.rowY[row];
+    }
+
+    /** returns the left of the marker drawn in a cell of any floor */
+    public float cellX(int cell) {
+        return this.columnX[cell % this.columns];
+    }
+
+    /** returns the top of the marker drawn in a cell of any floor */
+    public float cellY(int cell) {
+        return this.rowY[(cell / this.columns) % this.rows];
+    }
+
+    public Rectangle createMarker(int cell) {
+        return new Rectangle(
+                this.cellX(cell), this.cellY(cell),
+                this.markerLength,
+                this.markerLength,
+                MazeConfig.mazeRectRenderValue
+        );
+    }
+
+    public Rectangle createStairs(int cell) {
+        float offset = (this.stairsLength - this.markerLength)/2;
+        return new Rectangle(
+                this.cellX(cell) - offset, this.cellY(cell) - offset,
+                this.stairsLength,
+                this.stairsLength,
+                MazeConfig.mazeRectRenderValue
+        );
+    }
+
+    /** creates the wall along the left (side wall) or top of the cell in the given column and row */
+    public Rectangle createWall(int column, int row, boolean isSideWall) {
+        float trueLeft = this.left + this.cellLength * column + this.wallWidth/2;
+        float trueTop = this.top + this.cellLength * row + this.wallWidth/2;
+
+        if (isSideWall)
+            return new Rectangle(trueLeft, trueTop, this.wallWidth, this.cellLength, MazeConfig.wallRenderValue);
+        else
+            return new Rectangle(trueLeft, trueTop, this.cellLength, this.wallWidth, MazeConfig.wallRenderValue);
+    }
+
+    public Rectangle createBackground(float renderValue) {
+        return new Rectangle(
+                this.left + this.wallWidth/2,
+                this.top + this.wallWidth/2,
+                this.cellLength * this.columns + this.wallWidth,
+                this.cellLength * this.rows + this.wallWidth,
+                renderValue
+        );
+    }
+}
@@ -0,0 +1,221 @@
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Constraints for generating a maze over a single floor of a topology.
+ * Cells can be excluded from the maze entirely, and edges can be forced open to pre-carve rooms and corridors.
+ * Cells joined by forced open edges are added to the maze together, so the rest of the maze stays perfect around them.
+ * Both constraints are stored as bitsets so they can be applied a word at a time.
+ * */
+public class MazeMask {
+    private final Topology topology;
+    // one bit per cell, set when the cell is part of the maze
+    private final long[] cells;
+    // one bit per edge, set when the edge must not have a wall
+    private final long[] openEdges;
+    private boolean finished;
+
+    public MazeMask(Topology topology) {
+        this.topology = topology;
+        this.cells = new long[(topology.cellCount() + 63) >>> 6];
+        this.openEdges = new long[(topology.edgeCount() + 63) >>> 6];
+
+        Arrays.fill(this.cells, -1L);
+        if ((topology.cellCount() & 63) != 0)
+            this.cells[this.cells.length-1] = (1L << topology.cellCount()) - 1;
+    }
+
+    /**
+     * creates a mask from an image stretched over the grid.
+     * Dark pixels exclude a cell, red pixels pre-open a cell into the red cells next to it, any other color is a normal cell.
+     * */
+    public static MazeMask fromImage(Topology topology, BufferedImage image) {
+        MazeMask mask = new MazeMask(topology);
+        boolean[] opened = new boolean[topology.cellCount()];
+
+        for (int cell = 0; cell < topology.cellCount(); cell++) {
+            int x = (cell % topology.width()) * image.getWidth() / topology.width();
+            int y = (cell / topology.width()) * image.getHeight() / topology.height();
+            int rgb = image.getRGB(x, y);
+            float r = ((rgb >> 16) & 0xff) / 255f;
+            float g = ((rgb >> 8) & 0xff) / 255f;
+            float b = (rgb & 0xff) / 255f;
+
+            if ((r + g + b) / 3 < 0.25f)
+                mask.exclude(cell);
+            else if (r > 0.5f && g < 0.5f && b < 0.5f)
+                opened[cell] = true;
+        }
+
+        int[] offsets = topology.neighborOffsets();
+        int[] neighbors = topology.neighborCells();
+        int[] edges = topology.neighborEdges();
+        for (int cell = 0; cell < topology.cellCount(); cell++) {
+            if (!opened[cell]) continue;
+            for (int i = offsets[cell]; i < offsets[cell+1]; i++) {
+                if (opened[neighbors[i]])
+                    mask.open(edges[i]);
+            }
+        }
+        return mask;
+    }
+
+    public Topology topology() {
+        return this.topology;
+    }
+
+    /** removes a cell from the maze */
+    public MazeMask exclude(int cell) {
+        this.requireUnfinished();
+        this.cells[cell >>> 6] &= ~(1L << cell);
+        return this;
+    }
+
+    /** removes a rectangle of cells from the maze */
+    public MazeMask exclude(int row, int col, int width, int height) {
+        for (int r = row; r < row + height; r++) {
+            for (int c = col; c < col + width; c++)
+                this.exclude(r*this.topology.width() + c);
+        }
+        return this;
+    }
+
+    /** forces the given edge to have no wall */
+    public MazeMask open(int edge) {
+        this.requireUnfinished();
+        this.openEdges[edge >>> 6] |= 1L << edge;
+        return this;
+    }
+
+    /** pre-carves a room by opening every edge between the cells of the rectangle */
+    public MazeMask room(int row, int col, int width, int height) {
+        for (int r = row; r < row + height; r++) {
+            for (int c = col; c < col + width; c++) {
+                int cell = r*this.topology.width() + c;
+                if (c+1 < col + width)
+                    this.open(this.topology.edgeBetween(cell, cell+1));
+                if (r+1 < row + height)
+                    this.open(this.topology.edgeBetween(cell, cell+this.topology.width()));
+            }
+        }
+        return this;
+    }
+
+    /** pre-carves a corridor that visits the given cells in order, each next to the one before it */
+    public MazeMask corridor(int... path) {
+        for (int i = 1; i < path.length; i++) {
+            int edge = this.topology.edgeBetween(path[i-1], path[i]);
+            if (edge < 0)
+                throw new IllegalArgumentException("Corridor cells " + path[i-1] + " and " + path[i] + " are not neighbors");
+            this.open(edge);
+        }
+        return this;
+    }
+
+    public boolean contains(int cell) {
+        this.finish();
+        return (this.cells[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /** returns the bitset of cells in the maze. Must not be modified. */
+    long[] cells() {
+        this.finish();
+        return this.cells;
+    }
+
+    /** returns the bitset of edges that must be open. Must not be modified. */
+    long[] openEdges() {
+        this.finish();
+        return this.openEdges;
+    }
+
+    /** returns the number of cells in the maze */
+    public int cellCount() {
+        this.finish();
+        int count = 0;
+        for (long word : this.cells)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    public int firstCell() {
+        this.finish();
+        for (int i = 0; i < this.cells.length; i++) {
+            if (this.cells[i] != 0)
+                return (i << 6) + Long.numberOfTrailingZeros(this.cells[i]);
+        }
+        return -1;
+    }
+
+    public int lastCell() {
+        this.finish();
+        for (int i = this.cells.length-1; i >= 0; i--) {
+            if (this.cells[i] != 0)
+                return (i << 6) + 63 - Long.numberOfLeadingZeros(this.cells[i]);
+        }
+        return -1;
+    }
+
+    private void requireUnfinished() {
+        if (this.finished)
+            throw new IllegalStateException("MazeMask cannot be changed once a maze has been generated from it");
+    }
+
+    /**
+     * Keeps only the largest group of connected cells, so every cell left in the mask can be reached,
+     * and drops open edges that touch an excluded cell. Runs once, the first time the mask is used.
+     * */
+    private synchronized void finish() {
+        if (this.finished)
+            return;
+        this.finished = true;
+
+        int[] offsets = this.topology.neighborOffsets();
+        int[] neighbors = this.topology.neighborCells();
+        int[] edges = this.topology.neighborEdges();
+        int numCells = this.topology.cellCount();
+
+        // label each connected group of cells, remembering the largest
+        int[] groups = new int[numCells];
+        int[] queue = new int[numCells];
+        int largestGroup = 0;
+        int largestSize = 0;
+        int numGroups = 0;
+        for (int cell = 0; cell < numCells; cell++) {
+            if (groups[cell] != 0 || (this.cells[cell >>> 6] & (1L << cell)) == 0)
+                continue;
+
+            int group = ++numGroups;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = cell;
+            groups[cell] = group;
+            while (head < tail) {
+                int current = queue[head++];
+                for (int i = offsets[current]; i < offsets[current+1]; i++) {
+                    int neighbor = neighbors[i];
+                    if (groups[neighbor] == 0 && (this.cells[neighbor >>> 6] & (1L << neighbor)) != 0) {
+                        groups[neighbor] = group;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+            if (tail > largestSize) {
+                largestSize = tail;
+                largestGroup = group;
+            }
+        }
+
+        for (int cell = 0; cell < numCells; cell++) {
+            if (groups[cell] != largestGroup)
+                this.cells[cell >>> 6] &= ~(1L << cell);
+        }
+
+        for (int cell = 0; cell < numCells; cell++) {
+            if (groups[cell] == largestGroup)
+                continue;
+            for (int i = offsets[cell]; i < offsets[cell+1]; i++)
+                this.openEdges[edges[i] >>> 6] &= ~(1L << edges[i]);
+        }
+    }
+}
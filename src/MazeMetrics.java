@@ -0,0 +1,5 @@
+/**
+ * Summary statistics of a maze, cached alongside its solution.
+ * */
+public record MazeMetrics(long wallCount, long deadEndCount, int solutionLength, int farthestDistance) {
+}
@@ -0,0 +1,156 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a few prepared mazes of each difficulty and floor count ready, generating them as background jobs.
+ * Taking a maze swaps in one that is already prepared and starts making its replacement,
+ * so only a pool that was emptied faster than it refills makes the caller wait.
+ * Each maze is generated by one job, then solved and given its walls by two more running side by side.
+ * Refills run at low priority.  A take that has to wait always starts a maze of its own at high priority,
+ * even if that overfills the pool by one, so it never waits behind low priority refills.
+ * */
+public class MazePool {
+    private final int depth;
+    private final JobSystem jobs;
+    private volatile boolean closed;
+    private final ConcurrentHashMap<Key, LinkedBlockingQueue<PreparedMaze>> ready = new ConcurrentHashMap<>();
+    // mazes being prepared for each key, counted so a burst of takes doesn't overfill the pool
+    private final ConcurrentHashMap<Key, AtomicInteger> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong takes = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /** creates a pool that keeps the given number of mazes ready for every difficulty and floor count it is asked for */
+    public MazePool(int depth) {
+        this(depth, JobSystem.shared());
+    }
+
+    public MazePool(int depth, JobSystem jobs) {
+        if (depth < 1)
+            throw new IllegalArgumentException("Pool depth must be at least 1, got " + depth);
+
+        this.depth = depth;
+        this.jobs = jobs;
+    }
+
+    /** starts preparing mazes of every fixed difficulty with the given number of floors; custom sizes are prepared once first asked for */
+    public void prefill(int levels) {
+        for (MazeConfig.Difficulty difficulty : MazeConfig.Difficulty.values()) {
+            if (difficulty != MazeConfig.Difficulty.CUSTOM)
+                this.refill(new Key(difficulty, levels), JobSystem.Priority.LOW);
+        }
+    }
+
+    /** returns a prepared maze, waiting for one to finish if none are ready */
+    public PreparedMaze take(MazeConfig.Difficulty difficulty, int levels) {
+        Key key = new Key(difficulty, levels);
+        this.takes.incrementAndGet();
+
+        PreparedMaze prepared = this.queue(key).poll();
+        if (prepared == null) {
+            long start = System.nanoTime();
+            try {
+                // start another maze if the one asked for finished without this take getting a maze, because
+                // the job failed or another take got there first
+                JobSystem.Job<Void> urgent = this.prepare(key, JobSystem.Priority.HIGH);
+                while (prepared == null) {
+                    prepared = this.queue(key).poll(100, TimeUnit.MILLISECONDS);
+                    if (prepared == null && urgent.isDone() && !this.closed)
+                        urgent = this.prepare(key, JobSystem.Priority.HIGH);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a maze", e);
+            }
+
+            long waited = System.nanoTime() - start;
+            this.waits.incrementAndGet();
+            this.waitNanos.addAndGet(waited);
+            this.maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+        this.refill(key, JobSystem.Priority.LOW);
+        return prepared;
+    }
+
+    /** returns the number of mazes ready to take right now */
+    public int depth(MazeConfig.Difficulty difficulty, int levels) {
+        return this.queue(new Key(difficulty, levels)).size();
+    }
+
+    public long takes() {
+        return this.takes.get();
+    }
+
+    /** returns the number of takes that had to wait for a maze to be prepared */
+    public long waits() {
+        return this.waits.get();
+    }
+
+    public double totalWaitMillis() {
+        return this.waitNanos.get() / 1e6;
+    }
+
+    public double maxWaitMillis() {
+        return this.maxWaitNanos.get() / 1e6;
+    }
+
+    /** stops refilling the pool; the job system is shared, so mazes already being prepared are left to finish */
+    public void shutdown() {
+        this.closed = true;
+    }
+
+    public String toString() {
+        StringBuilder poolStr = new StringBuilder("MazePool:");
+        for (var entry : this.ready.entrySet())
+            poolStr.append(String.format(" %s/%d=%d", entry.getKey().difficulty(), entry.getKey().levels(), entry.getValue().size()));
+        poolStr.append(String.format(", %d takes, %d waits (%.1f ms total, %.1f ms max)",
+                this.takes(), this.waits(), this.totalWaitMillis(), this.maxWaitMillis()));
+        return poolStr.toString();
+    }
+
+    private LinkedBlockingQueue<PreparedMaze> queue(Key key) {
+        return this.ready.computeIfAbsent(key, k -> new LinkedBlockingQueue<>());
+    }
+
+    /** starts preparing mazes until the ready and pending ones add up to the pool depth */
+    private void refill(Key key, JobSystem.Priority priority) {
+        LinkedBlockingQueue<PreparedMaze> queue = this.queue(key);
+        AtomicInteger pending = this.pending.computeIfAbsent(key, k -> new AtomicInteger());
+        while (true) {
+            int inFlight = pending.get();
+            if (this.closed || queue.size() + inFlight >= this.depth)
+                return;
+            if (pending.compareAndSet(inFlight, inFlight + 1))
+                this.submit(key, queue, pending, priority);
+        }
+    }
+
+    /** starts preparing a maze however many are ready or pending, returning the job that adds it to the pool */
+    private JobSystem.Job<Void> prepare(Key key, JobSystem.Priority priority) {
+        AtomicInteger pending = this.pending.computeIfAbsent(key, k -> new AtomicInteger());
+        pending.incrementAndGet();
+        return this.submit(key, this.queue(key), pending, priority);
+    }
+
+    /** submits the jobs that generate, solve and build a maze and add it to the queue, already counted as pending */
+    private JobSystem.Job<Void> submit(Key key, LinkedBlockingQueue<PreparedMaze> queue, AtomicInteger pending,
+                                       JobSystem.Priority priority) {
+        JobSystem.Job<Maze> generation = this.jobs.submit("maze generation", priority, () -> new Maze(key.difficulty(), key.levels()));
+        JobSystem.Job<Maze> solving = generation.then("maze solving", priority, maze -> {
+            maze.solutionPath();
+            maze.goalField();
+            return maze;
+        });
+        JobSystem.Job<PreparedMaze> building = generation.then("wall building", priority, PreparedMaze::build);
+        return this.jobs.run("maze pooling", priority, () -> queue.add(building.join()), solving, building)
+                .whenDone(pending::decrementAndGet);
+    }
+
+    private record Key(MazeConfig.Difficulty difficulty, int levels) {
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * The moves a player can take back, newest last, each packed into a single long:
+ * the cell moved from, the score the move earned, whether it pushed onto or popped off the solution path,
+ * whether it visited a cell for the first time, and whether the player was on the path before it.
+ * The ring grows up to a fixed number of moves and then forgets the oldest, so memory stays bounded however long the session.
+ * */
+public class MoveHistory {
+    // previous cell in the low 32 bits, then the number of cells popped off the path, then the flags, then the score
+    private static final int POPS_SHIFT = 32;
+    private static final long POPS_MASK = 0xFFFF;
+    private static final long PUSHED = 1L << 48;
+    private static final long FIRST_VISIT = 1L << 49;
+    private static final long WAS_OFF_PATH = 1L << 50;
+    private static final int SCORE_SHIFT = 56;
+
+    private final int maxMoves;
+    private long[] moves;
+    private int first;
+    private int size;
+
+    // cells popped off the path after the first of each move, for the rare moves that pop more than one
+    private int[] extraPops = new int[16];
+    private int extraFirst;
+    private int extraSize;
+
+    public MoveHistory(int maxMoves) {
+        if (maxMoves < 1)
+            throw new IllegalArgumentException("History must hold at least one move, got " + maxMoves);
+
+        this.maxMoves = maxMoves;
+        this.moves = new long[Math.min(maxMoves, 64)];
+    }
+
+    /**
+     * records a move from the given cell, with the cells it popped off the solution path in the order they were popped.
+     * A move pushes onto the path when it pops nothing.
+     * */
+    public void record(int fromCell, boolean firstVisit, boolean wasOffPath, int[] popped, int pops) {
+        if (pops > POPS_MASK)
+            throw new IllegalArgumentException("Too many cells popped by one move: " + pops);
+
+        if (this.size == this.maxMoves)
+            this.dropOldest();
+        else if (this.size == this.moves.length)
+            this.grow();
+
+        long move = Integer.toUnsignedLong(fromCell) | (long) pops << POPS_SHIFT;
+        if (pops == 0)
+            move |= PUSHED;
+        if (firstVisit)
+            move |= FIRST_VISIT;
+        if (wasOffPath)
+            move |= WAS_OFF_PATH;
+        // the first cell popped is always the one moved from, so only the rest need storing
+        for (int i = 1; i < pops; i++)
+            this.addExtraPop(popped[i]);
+
+        this.moves[(this.first + this.size++) % this.moves.length] = move;
+    }
+
+    /** sets the score change of the latest move, which is known only once the game has scored it */
+    public void setLastScoreChange(int scoreChange) {
+        if (scoreChange < Byte.MIN_VALUE || scoreChange > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Score change out of range: " + scoreChange);
+
+        int last = (this.first + this.size - 1) % this.moves.length;
+        this.moves[last] = (this.moves[last] & ~(0xFFL << SCORE_SHIFT)) | (long) (scoreChange & 0xFF) << SCORE_SHIFT;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /** removes the latest move and returns it, to be read with the static accessors */
+    public long pop() {
+        if (this.size == 0)
+            throw new IllegalStateException("No moves to take back");
+        return this.moves[(this.first + --this.size) % this.moves.length];
+    }
+
+    /** removes and returns the last extra cell popped by the latest popped move, so they come back newest first */
+    public int popExtraCell() {
+        return this.extraPops[(this.extraFirst + --this.extraSize) % this.extraPops.length];
+    }
+
+    public void clear() {
+        this.first = 0;
+        this.size = 0;
+        this.extraFirst = 0;
+        this.extraSize = 0;
+    }
+
+    public static int fromCell(long move) {
+        return (int) move;
+    }
+
+    /** returns the number of cells the move popped off the solution path, zero if it pushed one */
+    public static int pops(long move) {
+        return (int) (move >>> POPS_SHIFT & POPS_MASK);
+    }
+
+    public static boolean pushed(long move) {
+        return (move & PUSHED) != 0;
+    }
+
+    public static boolean firstVisit(long move) {
+        return (move & FIRST_VISIT) != 0;
+    }
+
+    public static boolean wasOffPath(long move) {
+        return (move & WAS_OFF_PATH) != 0;
+    }
+
+    public static int scoreChange(long move) {
+        return (byte) (move >>> SCORE_SHIFT);
+    }
+
+    private void dropOldest() {
+        int extras = Math.max(0, pops(this.moves[this.first]) - 1);
+        this.extraFirst = (this.extraFirst + extras) % this.extraPops.length;
+        this.extraSize -= extras;
+
+        this.first = (this.first + 1) % this.moves.length;
+        this.size--;
+    }
+
+    private void grow() {
+        long[] grown = new long[Math.min(this.maxMoves, this.moves.length * 2)];
+        for (int i = 0; i < this.size; i++)
+            grown[i] = this.moves[(this.first + i) % this.moves.length];
+        this.moves = grown;
+        this.first = 0;
+    }
+
+    private void addExtraPop(int cell) {
+        if (this.extraSize == this.extraPops.length) {
+            int[] grown = new int[this.extraPops.length * 2];
+            for (int i = 0; i < this.extraSize; i++)
+                grown[i] = this.extraPops[(this.extraFirst + i) % this.extraPops.length];
+            this.extraPops = grown;
+            this.extraFirst = 0;
+        }
+        this.extraPops[(this.extraFirst + this.extraSize++) % this.extraPops.length] = cell;
+    }
+}
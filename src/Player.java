@@ -1,53 +1,99 @@
 import edu.usu.graphics.Rectangle;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 
 public class Player {
+    /**
+     * Receives every change a player makes, so only the parts of the game a change affects need updating.
+     * */
+    public interface Listener {
+        /** the cell was pushed onto the head of the solution path, as the player stepped off the path */
+        void solutionPathPushed(int cell);
+
+        /** the cell was popped off the head of the solution path, as the player stepped back towards it */
+        void solutionPathPopped(int cell);
+
+        /** the player moved between two cells, visiting the second for the first time if firstVisit is true */
+        void moved(int fromCell, int toCell, boolean firstVisit);
+
+        /**
+         * the player took back its latest move, going back from one cell to the other.
+         * unvisited is true if the move had been the first visit to the cell left, and scoreChange is what the move had scored.
+         * */
+        void moveUndone(int fromCell, int toCell, boolean unvisited, int scoreChange);
+
+        /** the player was put back at the start of a new maze */
+        void reset(int startCell);
+    }
+
     private int currentCell;
-    private float cellLength;
-    private int mazeSize;
+    private MazeLayout layout;
 
     private final Rectangle playerRect;
+    // where the player was at the start of the current simulation tick, for drawing between ticks
+    private float previousLeft;
+    private float previousTop;
 
     // move rate in seconds
     private final double moveRate = 0.07f;
     // amount of time since last moved in seconds
     private double timeSinceLastMove = 0;
 
-    private ArrayList<Integer> breadcrumbs;
-    private LinkedList<Integer> solutionPath;
+    private Breadcrumbs breadcrumbs;
+    private CellPath solutionPath;
 
-    private boolean playerHasMoved = false;
     private boolean playerMovedOffPath = true;
+    private Listener listener;
 
-    public Player(MazeConfig.Difficulty difficulty, int startCell, LinkedList<Integer> solutionPath) {
-        this.playerRect = new Rectangle(
-                MazeConfig.playerStartLeft(difficulty),
-                MazeConfig.playerStartTop(difficulty),
-                MazeConfig.mazeRectLength,
-                MazeConfig.mazeRectLength,
-                MazeConfig.mazeRectRenderValue
-        );
+    // moves that can be taken back, and the cells popped off the solution path by the latest move
+    private final MoveHistory history = new MoveHistory(MazeConfig.maxUndoMoves);
+    private int[] poppedCells = new int[8];
+
+    public Player(MazeLayout layout, Maze maze) {
+        int startCell = maze.getStart();
+        this.playerRect = layout.createMarker(startCell);
+        this.previousLeft = this.playerRect.left;
+        this.previousTop = this.playerRect.top;
 
         this.currentCell = startCell;
-        this.mazeSize = MazeConfig.mazeSize(difficulty);
-        this.cellLength = MazeConfig.cellLength(difficulty);
+        this.layout = layout;
 
-        this.breadcrumbs = new ArrayList<>();
-        this.breadcrumbs.add(startCell);
-        this.solutionPath = solutionPath;
+        this.breadcrumbs = new Breadcrumbs(maze.cellCount());
+        this.breadcrumbs.visit(startCell);
+        this.solutionPath = maze.solve();
     }
 
     public Rectangle playerRect() {
         return this.playerRect;
     }
 
-    public LinkedList<Integer> getSolutionPath() {
+    /** remembers where the player is before a simulation tick runs */
+    public void beginTick() {
+        this.previousLeft = this.playerRect.left;
+        this.previousTop = this.playerRect.top;
+    }
+
+    /**
+     * sets the rectangle to where the player is drawn the given fraction of the way through the next tick.
+     * Jumps longer than a cell, like wrapping around a torus, are not smoothed.
+     * */
+    public void interpolate(float alpha, Rectangle out) {
+        float dx = this.playerRect.left - this.previousLeft;
+        float dy = this.playerRect.top - this.previousTop;
+        boolean jumped = Math.abs(dx) + Math.abs(dy) > this.layout.cellLength() * 1.5f;
+
+        out.left = jumped ? this.playerRect.left : this.previousLeft + dx * alpha;
+        out.top = jumped ? this.playerRect.top : this.previousTop + dy * alpha;
+        out.width = this.playerRect.width;
+        out.height = this.playerRect.height;
+        out.z = this.playerRect.z;
+    }
+
+    public CellPath getSolutionPath() {
         return this.solutionPath;
     }
 
-    public ArrayList<Integer> getBreadcrumbs() {
+    public Breadcrumbs getBreadcrumbs() {
         return this.breadcrumbs;
     }
 
@@ -59,140 +105,155 @@ public class Player {
         return !playerMovedOffPath;
     }
 
-    public boolean hasMoved() {
-        return this.playerHasMoved;
+    /** sets the listener told about every move and reset, or null for none */
+    public void setListener(Listener listener) {
+        this.listener = listener;
     }
 
-    public void setMovedToFalse() {
-        this.playerHasMoved = false;
+    /** sets the score the latest move earned, so taking the move back can take the score back too */
+    public void setLastMoveScore(int scoreChange) {
+        this.history.setLastScoreChange(scoreChange);
     }
 
-    private void updateSolutionPath() {
+    /** returns the number of moves that can be taken back */
+    public int undoableMoves() {
+        return this.history.size();
+    }
+
+    /** updates the solution path after a move, returning the number of cells popped off it, or zero if one was pushed */
+    private int updateSolutionPath() {
+        int pops = 0;
         if (this.solutionPath.contains(this.currentCell)){
-            this.solutionPath.pop();
+            // back on the path, so drop everything walked since leaving it
+            while (this.solutionPath.head() != this.currentCell) {
+                int popped = this.solutionPath.pop();
+                if (pops == this.poppedCells.length)
+                    this.poppedCells = Arrays.copyOf(this.poppedCells, pops * 2);
+                this.poppedCells[pops++] = popped;
+                if (this.listener != null)
+                    this.listener.solutionPathPopped(popped);
+            }
             this.playerMovedOffPath = false;
         } else {
             this.solutionPath.push(currentCell);
+            if (this.listener != null)
+                this.listener.solutionPathPushed(this.currentCell);
             this.playerMovedOffPath = true;
         }
+        return pops;
     }
 
-    public void resetPlayer(MazeConfig.Difficulty difficulty, LinkedList<Integer> solutionPath) {
-        this.currentCell = 0;
-        this.cellLength = MazeConfig.cellLength(difficulty);
-        this.mazeSize = MazeConfig.mazeSize(difficulty);
-
-        this.playerRect.left = MazeConfig.playerStartLeft(difficulty);
-        this.playerRect.top = MazeConfig.playerStartTop(difficulty);
-        this.solutionPath = solutionPath;
-
-        this.breadcrumbs = new ArrayList<>();
-        this.breadcrumbs.add(currentCell);
-
-        System.out.println(currentCell);
-    }
-
-    public void moveRight(Maze maze, double elapsedTime) {
-        // don't move if the last move happened less than "moveRate" seconds ago
-        if (this.timeSinceLastMove < this.moveRate) {
-            this.timeSinceLastMove += elapsedTime;
-            return;
-        }
-        // can't move right if already at rightmost column
-        if ((this.currentCell+1) % maze.size() == 0) {
-            return;
-        }
-        // can't move right if wall blocking
-        if (maze.hasWallBetween(this.currentCell, this.currentCell+1)) {
+    /** reverses updateSolutionPath for a move, putting back the cells it popped or popping the cell it pushed */
+    private void undoSolutionPath(long move) {
+        if (MoveHistory.pushed(move)) {
+            int popped = this.solutionPath.pop();
+            if (this.listener != null)
+                this.listener.solutionPathPopped(popped);
             return;
         }
 
-        this.timeSinceLastMove -= this.moveRate;
-        this.playerRect.left += this.cellLength;
-        this.currentCell += 1;
-        this.breadcrumbs.add(this.currentCell);
-        this.playerHasMoved = true;
+        // the cells come back in the reverse of the order they were popped, ending with the cell moved from
+        for (int i = MoveHistory.pops(move) - 1; i >= 0; i--) {
+            int cell = i == 0 ? MoveHistory.fromCell(move) : this.history.popExtraCell();
+            this.solutionPath.push(cell);
+            if (this.listener != null)
+                this.listener.solutionPathPushed(cell);
+        }
+    }
 
-        this.updateSolutionPath();
+    public void resetPlayer(MazeLayout layout, Maze maze) {
+        int startCell = maze.getStart();
+        this.currentCell = startCell;
+        this.layout = layout;
+
+        this.playerRect.left = layout.cellX(startCell);
+        this.playerRect.top = layout.cellY(startCell);
+        this.playerRect.width = layout.markerLength();
+        this.playerRect.height = layout.markerLength();
+        this.beginTick();
+        this.solutionPath = maze.solve();
+        this.breadcrumbs = new Breadcrumbs(maze.cellCount());
+        this.breadcrumbs.visit(startCell);
+        this.history.clear();
+        this.playerMovedOffPath = true;
+
+        if (this.listener != null)
+            this.listener.reset(startCell);
+    }
 
-        System.out.println(currentCell);
+    public void moveRight(Maze maze, double elapsedTime) {
+        this.move(maze, SquareTopology.RIGHT, elapsedTime);
     }
 
     public void moveDown(Maze maze, double elapsedTime) {
-        // don't move if the last move happened less than "moveRate" seconds ago
-        if (this.timeSinceLastMove < this.moveRate) {
-            this.timeSinceLastMove += elapsedTime;
-            return;
-        }
-        // can't move down if already at bottom row
-        if ((this.currentCell + maze.size()) >= maze.cellCount()) {
-            return;
-        }
-        // can't move down if wall blocking
-        if (maze.hasWallBetween(this.currentCell, this.currentCell+maze.size())) {
-            return;
-        }
+        this.move(maze, SquareTopology.DOWN, elapsedTime);
+    }
 
-        this.timeSinceLastMove -= this.moveRate;
-        this.playerRect.top += cellLength;
-        this.currentCell += this.mazeSize;
-        this.breadcrumbs.add(this.currentCell);
-        this.playerHasMoved = true;
+    public void moveLeft(Maze maze, double elapsedTime) {
+        this.move(maze, SquareTopology.LEFT, elapsedTime);
+    }
 
-        this.updateSolutionPath();
+    public void moveUp(Maze maze, double elapsedTime) {
+        this.move(maze, SquareTopology.UP, elapsedTime);
+    }
 
-        System.out.println(currentCell);
+    public void moveUpstairs(Maze maze, double elapsedTime) {
+        this.move(maze, Maze.UPSTAIRS, elapsedTime);
     }
 
-    public void moveLeft(Maze maze, double elapsedTime) {
+    public void moveDownstairs(Maze maze, double elapsedTime) {
+        this.move(maze, Maze.DOWNSTAIRS, elapsedTime);
+    }
+
+    private void move(Maze maze, int direction, double elapsedTime) {
         // don't move if the last move happened less than "moveRate" seconds ago
         if (this.timeSinceLastMove < this.moveRate) {
             this.timeSinceLastMove += elapsedTime;
             return;
         }
-        // can't move left if already at leftmost column
-        if (this.currentCell % maze.size() == 0) {
-            return;
-        }
-        // can't move left if wall blocking
-        if (maze.hasWallBetween(this.currentCell, this.currentCell-1)) {
+        // can't move if at the edge of the maze or a wall is blocking
+        int nextCell = maze.move(this.currentCell, direction);
+        if (nextCell == -1) {
             return;
         }
 
         this.timeSinceLastMove -= this.moveRate;
-
-        this.playerRect.left -= cellLength;
-        this.currentCell -= 1;
-        this.breadcrumbs.add(this.currentCell);
-        this.playerHasMoved = true;
-
-        this.updateSolutionPath();
-
-        System.out.println(currentCell);
+        this.playerRect.left = this.layout.cellX(nextCell);
+        this.playerRect.top = this.layout.cellY(nextCell);
+        int previousCell = this.currentCell;
+        this.currentCell = nextCell;
+        boolean firstVisit = this.breadcrumbs.visit(this.currentCell);
+
+        boolean wasOffPath = this.playerMovedOffPath;
+        int pops = this.updateSolutionPath();
+        this.history.record(previousCell, firstVisit, wasOffPath, this.poppedCells, pops);
+        if (this.listener != null)
+            this.listener.moved(previousCell, nextCell, firstVisit);
     }
 
-    public void moveUp(Maze maze, double elapsedTime) {
-        // don't move if the last move happened less than "moveRate" seconds ago
+    /** takes back the latest move, at the same rate moves are made, undoing everything it changed */
+    public void undoMove(double elapsedTime) {
         if (this.timeSinceLastMove < this.moveRate) {
             this.timeSinceLastMove += elapsedTime;
             return;
         }
-        // can't move up if already at top
-        if (this.currentCell < maze.size()) {
-            return;
-        }
-        // can't move up if wall blocking
-        if (maze.hasWallBetween(this.currentCell, this.currentCell - maze.size())) {
+        if (this.history.isEmpty())
             return;
-        }
 
         this.timeSinceLastMove -= this.moveRate;
-        this.playerRect.top -= cellLength;
-        this.currentCell -= this.mazeSize;
-        this.breadcrumbs.add(this.currentCell);
-
-        this.updateSolutionPath();
-
-        this.playerHasMoved = true;
+        long move = this.history.pop();
+        int undoneCell = this.currentCell;
+        int previousCell = MoveHistory.fromCell(move);
+
+        this.undoSolutionPath(move);
+        if (MoveHistory.firstVisit(move))
+            this.breadcrumbs.unvisit(undoneCell);
+        this.playerMovedOffPath = MoveHistory.wasOffPath(move);
+
+        this.currentCell = previousCell;
+        this.playerRect.left = this.layout.cellX(previousCell);
+        this.playerRect.top = this.layout.cellY(previousCell);
+        if (this.listener != null)
+            this.listener.moveUndone(undoneCell, previousCell, MoveHistory.firstVisit(move), MoveHistory.scoreChange(move));
     }
 }
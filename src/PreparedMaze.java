@@ -0,0 +1,111 @@
+import edu.usu.graphics.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A maze that is ready to play: its layout, the wall and stairs rectangles of every floor,
+ * and its solution and goal field already in the solution cache.
+ * Each floor's walls come with the two cells either side of each, so walls next to unseen cells can be culled.
+ * Preparing touches no GL state, so it can run on any thread.
+ * */
+public record PreparedMaze(Maze maze, MazeLayout layout, List<List<Rectangle>> floorWalls, List<int[]> floorWallCells,
+                           List<List<Rectangle>> floorStairs) {
+    public static PreparedMaze prepare(Maze maze) {
+        // solving now means the first frames of the game only read the cache
+        maze.solutionPath();
+        maze.goalField();
+        return build(maze);
+    }
+
+    /** lays out the maze and builds the rectangles of every floor, without solving it */
+    public static PreparedMaze build(Maze maze) {
+        MazeLayout layout = MazeLayout.of(maze);
+        List<List<Rectangle>> floorWalls = new ArrayList<>();
+        List<int[]> floorWallCells = new ArrayList<>();
+        List<List<Rectangle>> floorStairs = new ArrayList<>();
+        for (int level = 0; level < maze.levels(); level++) {
+            createWalls(maze, layout, level, floorWalls, floorWallCells);
+            floorStairs.add(createStairs(maze, layout, level));
+        }
+        return new PreparedMaze(maze, layout, floorWalls, floorWallCells, floorStairs);
+    }
+
+    /** returns the wall rectangles of a floor */
+    public List<Rectangle> walls(int level) {
+        return this.floorWalls.get(level);
+    }
+
+    /** returns the cells either side of each wall of a floor, two per wall in wall order, with -1 past the edge of the maze */
+    public int[] wallCells(int level) {
+        return this.floorWallCells.get(level);
+    }
+
+    /** returns the stairs rectangles of a floor */
+    public List<Rectangle> stairs(int level) {
+        return this.floorStairs.get(level);
+    }
+
+    private static void createWalls(Maze maze, MazeLayout layout, int level, List<List<Rectangle>> floorWalls, List<int[]> floorWallCells) {
+        ArrayList<Rectangle> walls = new ArrayList<>();
+        int[] wallCells = new int[64];
+        Topology topology = maze.topology();
+
+        int firstCell = level * maze.floorCellCount();
+        for (int cell = firstCell; cell < firstCell + maze.floorCellCount(); cell++) {
+            int column = maze.cellRow(cell);
+            int row = maze.cellCol(cell);
+
+            // each cell draws its left and top walls, which also covers the outer edge of the maze
+            if (showsWall(maze, level, cell, SquareTopology.LEFT))
+                wallCells = addWall(walls, wallCells, layout.createWall(column, row, true), maze, level, cell, SquareTopology.LEFT);
+            if (showsWall(maze, level, cell, SquareTopology.UP))
+                wallCells = addWall(walls, wallCells, layout.createWall(column, row, false), maze, level, cell, SquareTopology.UP);
+
+            // cells on the rightmost column and bottommost row also close off the other edges
+            if (column == maze.size()-1 && showsWall(maze, level, cell, SquareTopology.RIGHT))
+                wallCells = addWall(walls, wallCells, layout.createWall(column+1, row, true), maze, level, cell, SquareTopology.RIGHT);
+            if (row == topology.height()-1 && showsWall(maze, level, cell, SquareTopology.DOWN))
+                wallCells = addWall(walls, wallCells, layout.createWall(column, row+1, false), maze, level, cell, SquareTopology.DOWN);
+        }
+        floorWalls.add(walls);
+        floorWallCells.add(Arrays.copyOf(wallCells, walls.size() * 2));
+    }
+
+    /** adds a wall on the given side of a cell, recording the cells either side of it, and returns the possibly grown cell array */
+    private static int[] addWall(List<Rectangle> walls, int[] wallCells, Rectangle wall, Maze maze, int level, int cell, int direction) {
+        int floorStart = level * maze.floorCellCount();
+        int neighbor = maze.topology().neighbor(cell - floorStart, direction);
+
+        int index = walls.size() * 2;
+        if (index + 2 > wallCells.length)
+            wallCells = Arrays.copyOf(wallCells, wallCells.length * 2);
+        wallCells[index] = cell;
+        wallCells[index + 1] = neighbor < 0 ? -1 : floorStart + neighbor;
+        walls.add(wall);
+        return wallCells;
+    }
+
+    /** returns true if a wall should be drawn on the given side of a cell, skipping walls between cells left out of the maze */
+    private static boolean showsWall(Maze maze, int level, int cell, int direction) {
+        if (maze.move(cell, direction) != -1)
+            return false;
+        if (!maze.isExcluded(cell))
+            return true;
+
+        int floorStart = level * maze.floorCellCount();
+        int neighbor = maze.topology().neighbor(cell - floorStart, direction);
+        return neighbor != -1 && !maze.isExcluded(neighbor);
+    }
+
+    private static List<Rectangle> createStairs(Maze maze, MazeLayout layout, int level) {
+        ArrayList<Rectangle> stairs = new ArrayList<>();
+        int firstCell = level * maze.floorCellCount();
+        for (int cell = firstCell; cell < firstCell + maze.floorCellCount(); cell++) {
+            if (maze.hasStairsUp(cell) || maze.hasStairsDown(cell))
+                stairs.add(layout.createStairs(cell));
+        }
+        return stairs;
+    }
+}
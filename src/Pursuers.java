@@ -0,0 +1,114 @@
+import edu.usu.graphics.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Enemies that chase the player through a maze.  They all step along one flow field pointed at the player,
+ * which follows the player as they move, so chasing costs the same however many pursuers there are.
+ * A pursuer that reaches the player catches them and goes back to where it started.
+ * A maze with no other cell that can reach the player's gets no pursuers.
+ * */
+public class Pursuers {
+    private final Maze maze;
+    private final FlowField field;
+    private final int[] startCells;
+    private final int[] cells;
+
+    private double sinceStep;
+    private int steps;
+    private int caught;
+
+    public Pursuers(Maze maze, int count, int playerCell, long seed) {
+        this.maze = maze;
+        this.field = new FlowField(maze);
+        this.field.retarget(playerCell);
+
+        // start each pursuer on a random cell that can reach the player, and isn't the player's
+        Random random = new Random(seed);
+        int[] starts = new int[count];
+        int placed = 0;
+        while (placed < count) {
+            int cell = this.randomStart(random);
+            if (cell < 0)
+                break;
+            starts[placed++] = cell;
+        }
+        this.startCells = Arrays.copyOf(starts, placed);
+        this.cells = this.startCells.clone();
+    }
+
+    /**
+     * returns a random cell that can reach the player, or -1 if there is none.
+     * A few cells are picked at random first, then the cells after the last pick are searched in order,
+     * so a maze that is mostly excluded cells or a single cell doesn't loop forever.
+     * */
+    private int randomStart(Random random) {
+        int cellCount = this.maze.cellCount();
+        int cell = 0;
+        for (int tries = 0; tries < 32; tries++) {
+            cell = random.nextInt(cellCount);
+            if (this.field.next(cell) >= 0)
+                return cell;
+        }
+        for (int i = 1; i < cellCount; i++) {
+            int next = (cell + i) % cellCount;
+            if (this.field.next(next) >= 0)
+                return next;
+        }
+        return -1;
+    }
+
+    /** points every pursuer at the player's new cell */
+    public void follow(int playerCell) {
+        this.field.follow(playerCell);
+    }
+
+    /** moves every pursuer one step towards the player each time MazeConfig.pursuerMoveTime passes */
+    public void update(double elapsedTime) {
+        this.sinceStep += elapsedTime;
+        while (this.sinceStep >= MazeConfig.pursuerMoveTime) {
+            this.sinceStep -= MazeConfig.pursuerMoveTime;
+            this.step();
+        }
+    }
+
+    private void step() {
+        this.steps++;
+        for (int i = 0; i < this.cells.length; i++) {
+            int next = this.field.next(this.cells[i]);
+            if (next >= 0)
+                this.cells[i] = next;
+            if (this.cells[i] == this.field.target()) {
+                this.cells[i] = this.startCells[i];
+                this.caught++;
+            }
+        }
+    }
+
+    public int count() {
+        return this.cells.length;
+    }
+
+    /** returns the number of steps taken so far, each moving every pursuer that can */
+    public int steps() {
+        return this.steps;
+    }
+
+    /** returns the number of times a pursuer has caught the player */
+    public int caught() {
+        return this.caught;
+    }
+
+    /** returns a marker for each pursuer on the floor */
+    public List<Rectangle> markers(MazeLayout layout, int level) {
+        ArrayList<Rectangle> markers = new ArrayList<>();
+        for (int cell : this.cells) {
+            if (this.maze.cellLevel(cell) == level)
+                markers.add(layout.createMarker(cell));
+        }
+        return markers;
+    }
+}
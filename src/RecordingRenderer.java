@@ -0,0 +1,30 @@
+/**
+ * A renderer with no window that keeps the last snapshot it was given, for headless games and bots.
+ * */
+public class RecordingRenderer implements Renderer {
+    private volatile GameSnapshot lastSnapshot;
+    private long frames;
+    private volatile boolean closeRequested;
+
+    public void render(GameSnapshot snapshot, long nanos) {
+        this.lastSnapshot = snapshot;
+        this.frames++;
+    }
+
+    public boolean shouldClose() {
+        return this.closeRequested;
+    }
+
+    public void requestClose() {
+        this.closeRequested = true;
+    }
+
+    /** returns the last snapshot rendered, or null if there hasn't been one */
+    public GameSnapshot lastSnapshot() {
+        return this.lastSnapshot;
+    }
+
+    public long frames() {
+        return this.frames;
+    }
+}
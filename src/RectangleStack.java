@@ -0,0 +1,84 @@
+import edu.usu.graphics.Rectangle;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An unchangeable stack of rectangles, iterated from the top down.
+ * Pushing and popping return a new stack that shares every rectangle below the top with the old one,
+ * so the simulation can hand its overlays to the render thread as they are, without copying their history.
+ * Rectangles must not be moved once they are pushed.
+ * */
+public final class RectangleStack implements Iterable<Rectangle> {
+    private static final RectangleStack EMPTY = new RectangleStack(null, null, 0);
+
+    private final Rectangle top;
+    private final RectangleStack below;
+    private final int size;
+
+    private RectangleStack(Rectangle top, RectangleStack below, int size) {
+        this.top = top;
+        this.below = below;
+        this.size = size;
+    }
+
+    /** returns the stack with nothing on it */
+    public static RectangleStack empty() {
+        return EMPTY;
+    }
+
+    /** returns this stack with the rectangle on top */
+    public RectangleStack push(Rectangle rect) {
+        return new RectangleStack(rect, this, this.size + 1);
+    }
+
+    /** returns this stack without its top rectangle */
+    public RectangleStack pop() {
+        if (this.size == 0)
+            throw new IllegalStateException("Cannot pop an empty stack");
+        return this.below;
+    }
+
+    /** returns this stack with its top count rectangles popped */
+    public RectangleStack pop(int count) {
+        if (count > this.size)
+            throw new IllegalStateException("Cannot pop " + count + " rectangles off a stack of " + this.size);
+        RectangleStack stack = this;
+        for (int i = 0; i < count; i++)
+            stack = stack.below;
+        return stack;
+    }
+
+    /** returns the rectangle on top of the stack */
+    public Rectangle peek() {
+        if (this.size == 0)
+            throw new IllegalStateException("Cannot peek an empty stack");
+        return this.top;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public Iterator<Rectangle> iterator() {
+        return new Iterator<>() {
+            private RectangleStack next = RectangleStack.this;
+
+            public boolean hasNext() {
+                return this.next.size > 0;
+            }
+
+            public Rectangle next() {
+                if (this.next.size == 0)
+                    throw new NoSuchElementException();
+                Rectangle rect = this.next.top;
+                this.next = this.next.below;
+                return rect;
+            }
+        };
+    }
+}
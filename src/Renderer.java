@@ -0,0 +1,12 @@
+/**
+ * Turns snapshots of the game into something to look at, and owns whatever window the game is shown in.
+ * */
+public interface Renderer {
+    /** draws the snapshot as it looks at the given clock time */
+    void render(GameSnapshot snapshot, long nanos);
+
+    /** returns true once the game has been asked to close */
+    boolean shouldClose();
+
+    void requestClose();
+}
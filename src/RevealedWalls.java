@@ -0,0 +1,82 @@
+import edu.usu.graphics.Rectangle;
+
+import java.util.List;
+
+/**
+ * The walls of each floor next to a cell the player has seen while fog of war is on.  They are kept as stacks that
+ * only grow, so the render thread can draw just the walls revealed since the last snapshot on top of those it already has,
+ * instead of checking every wall of the floor each time the player sees something new.
+ * */
+public class RevealedWalls implements FogOfWar.Listener {
+    private final Maze maze;
+    private final PreparedMaze prepared;
+
+    // for each floor, where each cell's walls start in cellWalls, followed by where the last cell's walls end
+    private final int[][] firstWall;
+    // for each floor, the walls next to each cell, by their index in the floor's walls
+    private final int[][] cellWalls;
+    // for each floor, a bit for each wall already pushed onto shown
+    private final long[][] shownWalls;
+    private final RectangleStack[] shown;
+
+    public RevealedWalls(PreparedMaze prepared) {
+        this.maze = prepared.maze();
+        this.prepared = prepared;
+        int levels = this.maze.levels();
+        this.firstWall = new int[levels][];
+        this.cellWalls = new int[levels][];
+        this.shownWalls = new long[levels][];
+        this.shown = new RectangleStack[levels];
+
+        for (int level = 0; level < levels; level++) {
+            int[] wallCells = prepared.wallCells(level);
+            int floorStart = level * this.maze.floorCellCount();
+            int walls = wallCells.length / 2;
+
+            // count the walls of each cell, then turn the counts into where each cell's walls start
+            int[] first = new int[this.maze.floorCellCount() + 1];
+            for (int cell : wallCells) {
+                if (cell >= 0)
+                    first[cell - floorStart + 1]++;
+            }
+            for (int cell = 0; cell < this.maze.floorCellCount(); cell++)
+                first[cell + 1] += first[cell];
+
+            int[] next = new int[this.maze.floorCellCount()];
+            int[] walled = new int[first[this.maze.floorCellCount()]];
+            for (int i = 0; i < wallCells.length; i++) {
+                if (wallCells[i] < 0)
+                    continue;
+                int cell = wallCells[i] - floorStart;
+                walled[first[cell] + next[cell]++] = i / 2;
+            }
+
+            this.firstWall[level] = first;
+            this.cellWalls[level] = walled;
+            this.shownWalls[level] = new long[(walls + 63) >>> 6];
+            this.shown[level] = RectangleStack.empty();
+        }
+    }
+
+    /** returns the walls of the floor next to a revealed cell, newest first */
+    public RectangleStack shown(int level) {
+        return this.shown[level];
+    }
+
+    /** pushes the walls next to the newly revealed cell that aren't shown yet */
+    public void revealed(int cell) {
+        int level = this.maze.cellLevel(cell);
+        int floorCell = cell - level * this.maze.floorCellCount();
+        int[] first = this.firstWall[level];
+        long[] shownWalls = this.shownWalls[level];
+        List<Rectangle> walls = this.prepared.walls(level);
+
+        for (int i = first[floorCell]; i < first[floorCell + 1]; i++) {
+            int wall = this.cellWalls[level][i];
+            if ((shownWalls[wall >>> 6] & (1L << wall)) != 0)
+                continue;
+            shownWalls[wall >>> 6] |= 1L << wall;
+            this.shown[level] = this.shown[level].push(walls.get(wall));
+        }
+    }
+}
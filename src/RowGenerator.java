@@ -0,0 +1,162 @@
+import java.util.Random;
+
+/**
+ * Row by row maze generators for square grids (binary tree and sidewinder).
+ * Each cell only looks at its own random bits and the cells to its left in the same row, so with the
+ * square grid's plane edge layout a whole word of 64 cells is carved with a handful of bit operations.
+ * Every generator also has a scalar version that carves one cell at a time from the same random bits,
+ * producing exactly the same walls.
+ * */
+public class RowGenerator {
+    // carve a word of cells at a time when true, one cell at a time when false
+    public static boolean useWordOperations = true;
+
+    /**
+     * carves a floor of the square grid with the given algorithm.
+     * The floor's walls start at firstWord: its east plane followed by its south plane.
+     * */
+    public static void generate(MazeConfig.Algorithm algorithm, SquareTopology topology, long[] walls, int firstWord, Random random) {
+        long[] carveBits = randomBits(random, topology.planeWords());
+        switch (algorithm) {
+            case BINARY_TREE -> {
+                if (useWordOperations)
+                    binaryTree(topology, walls, firstWord, carveBits);
+                else
+                    binaryTreeScalar(topology, walls, firstWord, carveBits);
+            }
+            case SIDEWINDER -> {
+                long[] closeBits = randomBits(random, topology.planeWords());
+                if (useWordOperations)
+                    sidewinder(topology, walls, firstWord, carveBits, closeBits);
+                else
+                    sidewinderScalar(topology, walls, firstWord, carveBits, closeBits);
+            }
+            default -> throw new IllegalArgumentException(algorithm + " is not a row generator");
+        }
+    }
+
+    public static long[] randomBits(Random random, int words) {
+        long[] bits = new long[words];
+        for (int i = 0; i < words; i++)
+            bits[i] = random.nextLong();
+        return bits;
+    }
+
+    /**
+     * Binary tree: every cell carves east when its bit is set and south otherwise.
+     * Cells on the rightmost column always carve south and cells on the bottom row always carve east.
+     * */
+    public static void binaryTree(SquareTopology topology, long[] walls, int firstWord, long[] carveBits) {
+        long[] lastColumn = topology.lastColumnMask();
+        int planeWords = topology.planeWords();
+        int numCells = topology.cellCount();
+        int lastRowStart = numCells - topology.width();
+
+        for (int i = 0; i < planeWords; i++) {
+            long valid = rangeMask(i, 0, numCells);
+            long lastRow = rangeMask(i, lastRowStart, numCells);
+
+            long east = (carveBits[i] | lastRow) & ~lastColumn[i] & valid;
+            long south = ~east & ~lastRow & valid;
+
+            walls[firstWord + i] = ~east;
+            walls[firstWord + planeWords + i] = ~south;
+        }
+    }
+
+    public static void binaryTreeScalar(SquareTopology topology, long[] walls, int firstWord, long[] carveBits) {
+        int planeWords = topology.planeWords();
+        int width = topology.width();
+        int lastRowStart = topology.cellCount() - width;
+
+        for (int cell = 0; cell < topology.cellCount(); cell++) {
+            boolean lastColumn = cell % width == width-1;
+            boolean lastRow = cell >= lastRowStart;
+            boolean carveEast = ((carveBits[cell >>> 6] >>> cell) & 1) != 0;
+
+            if (lastRow && lastColumn)
+                continue;
+            if (lastRow || (carveEast && !lastColumn))
+                walls[firstWord + (cell >>> 6)] &= ~(1L << cell);
+            else
+                walls[firstWord + planeWords + (cell >>> 6)] &= ~(1L << cell);
+        }
+    }
+
+    /**
+     * Sidewinder: cells carve east while their carve bit is set, building a run along the row.
+     * When a run ends, one cell of the run carves south: the first cell whose close bit is set, or the last cell of the run.
+     * The bottom row is a single run carved all the way east.
+     * */
+    public static void sidewinder(SquareTopology topology, long[] walls, int firstWord, long[] carveBits, long[] closeBits) {
+        long[] lastColumn = topology.lastColumnMask();
+        int planeWords = topology.planeWords();
+        int numCells = topology.cellCount();
+        int lastRowStart = numCells - topology.width();
+
+        // set when a run crossing into the next word has already carved south
+        boolean carry = false;
+        for (int i = 0; i < planeWords; i++) {
+            long valid = rangeMask(i, 0, numCells);
+            long lastRow = rangeMask(i, lastRowStart, numCells);
+
+            long east = (carveBits[i] | lastRow) & ~lastColumn[i] & valid;
+            long runEnds = ~east & ~lastRow & valid;
+            long candidates = (closeBits[i] | runEnds) & ~lastRow & valid;
+
+            // segmented prefix OR of the candidates, restarting at the beginning of every run
+            long seen = candidates;
+            long linked = east << 1;
+            for (int shift = 1; shift < 64; shift <<= 1) {
+                seen |= (seen << shift) & linked;
+                linked &= linked << shift;
+            }
+            long earlier = (seen & east) << 1;
+            if (carry) {
+                // every cell of the run that started in an earlier word has already been closed
+                int firstRunEnd = Long.numberOfTrailingZeros(~east);
+                long firstRun = firstRunEnd >= 63 ? -1L : (1L << (firstRunEnd+1)) - 1;
+                seen |= firstRun;
+                earlier |= firstRun;
+            }
+            long south = candidates & ~earlier;
+            carry = ((seen & east) >>> 63) != 0;
+
+            walls[firstWord + i] = ~east;
+            walls[firstWord + planeWords + i] = ~south;
+        }
+    }
+
+    public static void sidewinderScalar(SquareTopology topology, long[] walls, int firstWord, long[] carveBits, long[] closeBits) {
+        int planeWords = topology.planeWords();
+        int width = topology.width();
+        int lastRowStart = topology.cellCount() - width;
+
+        boolean runClosed = false;
+        for (int cell = 0; cell < topology.cellCount(); cell++) {
+            boolean lastColumn = cell % width == width-1;
+            boolean lastRow = cell >= lastRowStart;
+            boolean carveEast = !lastColumn && (lastRow || ((carveBits[cell >>> 6] >>> cell) & 1) != 0);
+            boolean closeRun = ((closeBits[cell >>> 6] >>> cell) & 1) != 0 || !carveEast;
+
+            if (carveEast)
+                walls[firstWord + (cell >>> 6)] &= ~(1L << cell);
+            if (!lastRow && closeRun && !runClosed) {
+                walls[firstWord + planeWords + (cell >>> 6)] &= ~(1L << cell);
+                runClosed = true;
+            }
+            if (!carveEast)
+                runClosed = false;
+        }
+    }
+
+    /** returns the bits of word i that fall in the cell range [from, to) */
+    static long rangeMask(int i, int from, int to) {
+        int low = Math.max(from - (i << 6), 0);
+        int high = Math.min(to - (i << 6), 64);
+        if (low >= high)
+            return 0;
+        long upTo = high == 64 ? -1L : (1L << high) - 1;
+        return upTo & (-1L << low);
+    }
+}
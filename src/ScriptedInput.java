@@ -0,0 +1,42 @@
+/**
+ * Keys pressed and released by calling press and release, for bots and headless games.
+ * The events go through the same ring buffer as a window's, so they can be made on one thread and drained on another.
+ * */
+public class ScriptedInput implements InputSource {
+    private final KeyEventBuffer events = new KeyEventBuffer(MazeConfig.keyEventCapacity);
+    private final Clock clock;
+
+    public ScriptedInput() {
+        this(Clock.SYSTEM);
+    }
+
+    /** creates input whose events are stamped with the given clock's time */
+    public ScriptedInput(Clock clock) {
+        this.clock = clock;
+    }
+
+    public void poll() {
+    }
+
+    public void press(int key) {
+        this.events.offer(key, true, this.clock.nanoTime());
+    }
+
+    public void release(int key) {
+        this.events.offer(key, false, this.clock.nanoTime());
+    }
+
+    /** presses and releases the key, so it counts as pressed once */
+    public void tap(int key) {
+        this.press(key);
+        this.release(key);
+    }
+
+    public void drainEvents(KeyEventBuffer.Listener listener) {
+        this.events.drain(listener);
+    }
+
+    public long droppedEvents() {
+        return this.events.dropped();
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A recorded game session: the seed and settings of every maze played, every key press and release with the tick
+ * it was handled on, and where the session ended up.  Replaying the log through a game gives the same result.
+ * Records are varints, each starting with its tick as the difference from the previous record's, so a key event
+ * usually takes two or three bytes.
+ * */
+public final class SessionLog {
+    /**
+     * A maze the session played, with everything needed to build it again.
+     * */
+    public record MazeEntry(long tick, long seed, MazeConfig.Algorithm algorithm, MazeConfig.Difficulty difficulty, int size, int levels) {
+        public Maze create() {
+            return new Maze(this.topology(), this.levels, null, this.algorithm, this.seed);
+        }
+
+        /** creates the maze to be carved a step at a time, which ends up identical to the one create makes */
+        public Maze createIncremental() {
+            return Maze.incremental(this.topology(), this.levels, null, this.algorithm, this.seed);
+        }
+
+        public SquareTopology topology() {
+            return SquareTopology.of(this.size);
+        }
+    }
+
+    /**
+     * Where a session ended up after the given number of ticks.
+     * */
+    public record Result(long ticks, int cell, int score, double time) {
+    }
+
+    private static final int magic = 0x4d5a4c47;   // "MZLG"
+    private static final int version = 1;
+
+    // the kind of record, in the low two bits of the varint that starts it
+    private static final int KEY_RELEASE = 0;
+    private static final int KEY_PRESS = 1;
+    private static final int MAZE = 2;
+    private static final int END = 3;
+
+    private final List<MazeEntry> mazes;
+    private final long[] keyTicks;
+    // key code shifted left once, with the low bit set for a press
+    private final int[] keyEvents;
+    private final Result result;
+    private final int sizeBytes;
+
+    private SessionLog(List<MazeEntry> mazes, long[] keyTicks, int[] keyEvents, Result result, int sizeBytes) {
+        this.mazes = mazes;
+        this.keyTicks = keyTicks;
+        this.keyEvents = keyEvents;
+        this.result = result;
+        this.sizeBytes = sizeBytes;
+    }
+
+    /** returns the mazes played, in the order they were started */
+    public List<MazeEntry> mazes() {
+        return this.mazes;
+    }
+
+    public int keyEventCount() {
+        return this.keyTicks.length;
+    }
+
+    public long keyTick(int index) {
+        return this.keyTicks[index];
+    }
+
+    public int key(int index) {
+        return this.keyEvents[index] >>> 1;
+    }
+
+    public boolean isPress(int index) {
+        return (this.keyEvents[index] & 1) != 0;
+    }
+
+    /** returns where the recorded session ended up, or null if the recording was never finished */
+    public Result result() {
+        return this.result;
+    }
+
+    public int sizeBytes() {
+        return this.sizeBytes;
+    }
+
+    public static SessionLog read(Path path) throws IOException {
+        return read(Files.readAllBytes(path));
+    }
+
+    public static SessionLog read(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        if (in.readFixed64() != magic)
+            throw new IllegalArgumentException("Not a session log");
+        int logVersion = (int) in.readVarint();
+        if (logVersion != version)
+            throw new IllegalArgumentException("Unsupported session log version " + logVersion);
+
+        List<MazeEntry> mazes = new ArrayList<>();
+        long[] keyTicks = new long[16];
+        int[] keyEvents = new int[16];
+        int keyCount = 0;
+        Result result = null;
+
+        long tick = 0;
+        while (in.hasMore() && result == null) {
+            long header = in.readVarint();
+            tick += header >>> 2;
+            int kind = (int) (header & 3);
+
+            switch (kind) {
+                case KEY_RELEASE, KEY_PRESS -> {
+                    if (keyCount == keyTicks.length) {
+                        keyTicks = Arrays.copyOf(keyTicks, keyCount * 2);
+                        keyEvents = Arrays.copyOf(keyEvents, keyCount * 2);
+                    }
+                    keyTicks[keyCount] = tick;
+                    keyEvents[keyCount++] = (int) in.readVarint() << 1 | kind;
+                }
+                case MAZE -> mazes.add(new MazeEntry(
+                        tick,
+                        in.readFixed64(),
+                        MazeConfig.Algorithm.values()[(int) in.readVarint()],
+                        MazeConfig.Difficulty.values()[(int) in.readVarint()],
+                        (int) in.readVarint(),
+                        (int) in.readVarint()));
+                default -> result = new Result(
+                        tick,
+                        (int) in.readVarint(),
+                        (int) unzigzag(in.readVarint()),
+                        Double.longBitsToDouble(in.readFixed64()));
+            }
+        }
+
+        return new SessionLog(List.copyOf(mazes), Arrays.copyOf(keyTicks, keyCount), Arrays.copyOf(keyEvents, keyCount),
+                result, bytes.length);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Appends records to a growing byte array, so recording an event only costs a few array writes.
+     * Ticks must never go backwards.
+     * */
+    public static final class Writer {
+        private byte[] buffer = new byte[256];
+        private int size;
+        private long lastTick;
+        private boolean finished;
+
+        public Writer() {
+            this.writeFixed64(magic);
+            this.writeVarint(version);
+        }
+
+        public void key(long tick, int key, boolean pressed) {
+            this.header(tick, pressed ? KEY_PRESS : KEY_RELEASE);
+            this.writeVarint(key);
+        }
+
+        public void maze(MazeEntry maze) {
+            this.header(maze.tick(), MAZE);
+            this.writeFixed64(maze.seed());
+            this.writeVarint(maze.algorithm().ordinal());
+            this.writeVarint(maze.difficulty().ordinal());
+            this.writeVarint(maze.size());
+            this.writeVarint(maze.levels());
+        }
+
+        /** records where the session ended up; nothing can be recorded after it */
+        public void end(Result result) {
+            this.header(result.ticks(), END);
+            this.writeVarint(result.cell());
+            this.writeVarint(zigzag(result.score()));
+            this.writeFixed64(Double.doubleToLongBits(result.time()));
+            this.finished = true;
+        }
+
+        public int sizeBytes() {
+            return this.size;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(this.buffer, this.size);
+        }
+
+        public void writeTo(Path path) throws IOException {
+            Files.write(path, this.toByteArray());
+        }
+
+        private void header(long tick, int kind) {
+            if (this.finished)
+                throw new IllegalStateException("Session log already ended");
+            if (tick < this.lastTick)
+                throw new IllegalArgumentException("Tick " + tick + " is before the last record's tick " + this.lastTick);
+
+            this.writeVarint((tick - this.lastTick) << 2 | kind);
+            this.lastTick = tick;
+        }
+
+        private void writeVarint(long value) {
+            this.ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                this.buffer[this.size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.size++] = (byte) value;
+        }
+
+        private void writeFixed64(long value) {
+            this.ensureCapacity(8);
+            for (int shift = 0; shift < 64; shift += 8)
+                this.buffer[this.size++] = (byte) (value >>> shift);
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (this.size + bytes > this.buffer.length)
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.size + bytes));
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        boolean hasMore() {
+            return this.position < this.bytes.length;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = this.next();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+            throw new IllegalArgumentException("Malformed varint in session log");
+        }
+
+        long readFixed64() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 8)
+                value |= (long) (this.next() & 0xFF) << shift;
+            return value;
+        }
+
+        private byte next() {
+            if (this.position >= this.bytes.length)
+                throw new IllegalArgumentException("Session log ends in the middle of a record");
+            return this.bytes[this.position++];
+        }
+    }
+}
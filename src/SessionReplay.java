@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * Replays session logs headless, as fast as the ticks run, and checks they end up where they were recorded to.
+ * The main method replays every log in a directory, or records random bot sessions and replays those,
+ * spreading the sessions over every core.
+ * Usage: SessionReplay [directory of .mzlog files]
+ *        SessionReplay [sessions] [ticks per session]
+ * */
+public class SessionReplay {
+    private static final int[] difficultyKeys = {GLFW_KEY_F1, GLFW_KEY_F2, GLFW_KEY_F3, GLFW_KEY_F4};
+
+    public static void main(String[] args) throws IOException {
+        MazeConfig.verbose = false;
+
+        List<SessionLog> logs;
+        if (args.length > 0 && Files.isDirectory(Path.of(args[0]))) {
+            try (Stream<Path> files = Files.list(Path.of(args[0]))) {
+                logs = files.filter(path -> path.toString().endsWith(".mzlog")).map(SessionReplay::readLog).toList();
+            }
+        } else {
+            int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+            long ticks = args.length > 1 ? Long.parseLong(args[1]) : 12_000;
+
+            long start = System.nanoTime();
+            logs = IntStream.range(0, sessions).parallel()
+                    .mapToObj(seed -> SessionLog.read(recordBotSession(seed, ticks)))
+                    .toList();
+            System.out.printf("Recorded %d bot sessions of %d ticks in %.2f s, %.0f bytes per log\n",
+                    sessions, ticks, (System.nanoTime() - start) / 1e9,
+                    logs.stream().mapToInt(SessionLog::sizeBytes).average().orElse(0));
+        }
+
+        long start = System.nanoTime();
+        List<SessionLog.Result> results = logs.parallelStream().map(SessionReplay::replay).toList();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long ticks = 0;
+        int mismatches = 0;
+        for (int i = 0; i < logs.size(); i++) {
+            ticks += results.get(i).ticks();
+            if (!results.get(i).equals(logs.get(i).result())) {
+                if (mismatches++ < 10)
+                    System.out.println("Mismatch: recorded " + logs.get(i).result() + ", replayed " + results.get(i));
+            }
+        }
+        System.out.printf("Replayed %d sessions, %d ticks in %.2f s (%.0f ticks/s), %d mismatches\n",
+                logs.size(), ticks, seconds, ticks / seconds, mismatches);
+        if (mismatches > 0)
+            System.exit(1);
+    }
+
+    /** replays the log in a new headless game, returning where it ended up */
+    public static SessionLog.Result replay(SessionLog log) {
+        if (log.result() == null)
+            throw new IllegalArgumentException("Session log was never finished");
+
+        ManualClock clock = new ManualClock();
+        Game game = new Game(new RecordingRenderer(), new ReplayInput(log, clock), clock);
+        game.replay(log);
+        game.initialize();
+        game.runTicks(log.result().ticks());
+        game.shutdown();
+        return game.result();
+    }
+
+    /** records a random bot playing for the given number of ticks, starting with random settings */
+    public static byte[] recordBotSession(long seed, long ticks) {
+        Random random = new Random(seed);
+        ManualClock clock = new ManualClock();
+        ScriptedInput input = new ScriptedInput(clock);
+        Game game = new Game(new RecordingRenderer(), input, clock);
+        SessionLog.Writer recording = new SessionLog.Writer();
+        game.record(recording);
+        game.initialize();
+
+        input.tap(difficultyKeys[random.nextInt(difficultyKeys.length)]);
+        if (random.nextBoolean())
+            input.tap(GLFW_KEY_F7);
+        if (random.nextInt(4) == 0)
+            input.tap(GLFW_KEY_F8);
+        HeadlessGame.playBot(game, input, random, ticks);
+
+        game.finishRecording();
+        game.shutdown();
+        return recording.toByteArray();
+    }
+
+    private static SessionLog readLog(Path path) {
+        try {
+            return SessionLog.read(path);
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't read " + path, e);
+        }
+    }
+
+    /**
+     * Hands a game the key events of a log on the ticks they were recorded on.
+     * Games drain their input once per tick, so the number of drains so far is the tick being run.
+     * */
+    private static final class ReplayInput implements InputSource {
+        private final SessionLog log;
+        private final Clock clock;
+        private long tick;
+        private int next;
+
+        ReplayInput(SessionLog log, Clock clock) {
+            this.log = log;
+            this.clock = clock;
+        }
+
+        public void poll() {
+        }
+
+        public void drainEvents(KeyEventBuffer.Listener listener) {
+            while (this.next < this.log.keyEventCount() && this.log.keyTick(this.next) <= this.tick) {
+                listener.keyEvent(this.log.key(this.next), this.log.isPress(this.next), this.clock.nanoTime());
+                this.next++;
+            }
+            this.tick++;
+        }
+
+        public long droppedEvents() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A bounded least-recently-used cache of solutions, distance fields and metrics,
+ * keyed by a maze's structural hash plus the start and goal cells they were computed for.
+ * Entries are weighed by their approximate size in bytes, and the oldest are evicted once the cache is over budget.
+ * Identical mazes share a structural hash, so they are only ever solved once.
+ * */
+public class SolutionCache {
+    private static final SolutionCache shared = new SolutionCache(64L << 20);
+
+    private static final byte PATH = 0;
+    private static final byte DISTANCES = 1;
+    private static final byte METRICS = 2;
+    private static final byte GOAL_FIELD = 3;
+
+    // approximate cost of a map entry, its key and the value's array header
+    private static final long entryOverheadBytes = 96;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public SolutionCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** returns the cache shared by every maze */
+    public static SolutionCache shared() {
+        return shared;
+    }
+
+    /** returns the cells of the shortest path from start to goal, computing and caching it if needed */
+    public int[] path(long mazeHash, int start, int goal, Supplier<int[]> solver) {
+        return (int[]) this.getOrCompute(new Key(mazeHash, 0, start, goal, PATH), solver, value -> 4L * ((int[]) value).length);
+    }
+
+    /** returns the distance of every cell from start, computing and caching it if needed */
+    public int[] distances(long mazeHash, int start, Supplier<int[]> solver) {
+        return (int[]) this.getOrCompute(new Key(mazeHash, 0, start, -1, DISTANCES), solver, value -> 4L * ((int[]) value).length);
+    }
+
+    /** returns the nearest goal field for a set of goals, identified by their hash, computing and caching it if needed */
+    public GoalField goalField(long mazeHash, long goalsHash, Supplier<GoalField> solver) {
+        return (GoalField) this.getOrCompute(new Key(mazeHash, goalsHash, -1, -1, GOAL_FIELD), solver,
+                value -> 4L * (((GoalField) value).distances().length * 2L + ((GoalField) value).goals().length));
+    }
+
+    /** returns the metrics of a maze, computing and caching them if needed */
+    public MazeMetrics metrics(long mazeHash, int start, int goal, Supplier<MazeMetrics> solver) {
+        return (MazeMetrics) this.getOrCompute(new Key(mazeHash, 0, start, goal, METRICS), solver, value -> 32);
+    }
+
+    public synchronized long hits() {
+        return this.hits;
+    }
+
+    public synchronized long misses() {
+        return this.misses;
+    }
+
+    public synchronized long evictions() {
+        return this.evictions;
+    }
+
+    public synchronized long sizeBytes() {
+        return this.sizeBytes;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.sizeBytes = 0;
+    }
+
+    public String toString() {
+        synchronized (this) {
+            return String.format("SolutionCache: %d entries, %d/%d bytes, %d hits, %d misses, %d evictions",
+                    this.entries.size(), this.sizeBytes, this.maxBytes, this.hits, this.misses, this.evictions);
+        }
+    }
+
+    private Object getOrCompute(Key key, Supplier<?> solver, Weigher weigher) {
+        synchronized (this) {
+            Entry entry = this.entries.get(key);
+            if (entry != null) {
+                this.hits++;
+                return entry.value;
+            }
+            this.misses++;
+        }
+
+        // solve outside the lock so other mazes are not held up, two threads may occasionally solve the same maze
+        Object value = solver.get();
+        long bytes = entryOverheadBytes + weigher.weigh(value);
+        if (bytes > this.maxBytes)
+            return value;
+
+        synchronized (this) {
+            Entry previous = this.entries.put(key, new Entry(value, bytes));
+            if (previous != null)
+                this.sizeBytes -= previous.bytes;
+            this.sizeBytes += bytes;
+
+            var iterator = this.entries.values().iterator();
+            while (this.sizeBytes > this.maxBytes && iterator.hasNext()) {
+                this.sizeBytes -= iterator.next().bytes;
+                iterator.remove();
+                this.evictions++;
+            }
+        }
+        return value;
+    }
+
+    private interface Weigher {
+        long weigh(Object value);
+    }
+
+    // goalsHash is only used by goal fields, and 0 for every other kind
+    private record Key(long mazeHash, long goalsHash, int start, int goal, byte kind) {
+    }
+
+    private record Entry(Object value, long bytes) {
+    }
+}
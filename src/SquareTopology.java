@@ -0,0 +1,94 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The standard square grid, where every cell connects to the cells to its right, below, left and above.
+ * Directions are ordered so that (direction + 2) % 4 is always the opposite direction.
+ * Edges are laid out as two bit planes in cell order: the east edge of a cell has the cell's id,
+ * and its south edge has the cell's id plus planeStride(). Both planes start on a word boundary,
+ * so whole rows of walls can be read and written 64 cells at a time.
+ * */
+public class SquareTopology extends CsrTopology {
+    public static final int RIGHT = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int UP = 3;
+
+    private static final ConcurrentHashMap<Integer, SquareTopology> cache = new ConcurrentHashMap<>();
+
+    // one bit per cell in plane order, set for the cells on the rightmost column
+    private final long[] lastColumnMask;
+
+    // the east edge of a cell has the cell's id, and its south edge the cell's id plus the plane stride
+    private static final EdgeLayout planes = new EdgeLayout() {
+        @Override
+        public int edgeCount(int width, int height) {
+            return 2 * planeStride(width * height);
+        }
+
+        @Override
+        public int edge(int width, int height, int cell, int direction, int neighbor) {
+            int stride = planeStride(width * height);
+            return switch (direction) {
+                case RIGHT -> cell;
+                case DOWN -> stride + cell;
+                case LEFT -> neighbor;
+                case UP -> stride + neighbor;
+                default -> -1;
+            };
+        }
+    };
+
+    public SquareTopology(int width, int height) {
+        this(width, height, SquareTopology::gridNeighbor);
+    }
+
+    /** creates a grid with the same directions and edge planes, whose cells are connected by the given rule */
+    protected SquareTopology(int width, int height, NeighborRule neighbors) {
+        super(width, height, 4, neighbors, planes);
+
+        int cells = width * height;
+        this.lastColumnMask = new long[planeStride(cells) >>> 6];
+        for (int cell = width-1; cell < cells; cell += width)
+            this.lastColumnMask[cell >>> 6] |= 1L << cell;
+    }
+
+    /** returns a shared size x size grid, so the neighbor tables are only built once per size */
+    public static SquareTopology of(int size) {
+        return cache.computeIfAbsent(size, s -> new SquareTopology(s, s));
+    }
+
+    public static int opposite(int direction) {
+        return (direction + 2) & 3;
+    }
+
+    /** returns the distance between the east and south edge planes, a multiple of 64 */
+    public final int planeStride() {
+        return planeStride(this.cellCount());
+    }
+
+    /** returns the number of words in each edge plane */
+    public final int planeWords() {
+        return this.planeStride() >>> 6;
+    }
+
+    /** returns the bitset of cells on the rightmost column, in plane order. Must not be modified. */
+    long[] lastColumnMask() {
+        return this.lastColumnMask;
+    }
+
+    private static int planeStride(int cells) {
+        return (cells + 63) & ~63;
+    }
+
+    private static int gridNeighbor(int width, int height, int cell, int direction) {
+        int col = cell % width;
+        int row = cell / width;
+        return switch (direction) {
+            case RIGHT -> col+1 < width ? cell+1 : -1;
+            case DOWN -> row+1 < height ? cell+width : -1;
+            case LEFT -> col > 0 ? cell-1 : -1;
+            case UP -> row > 0 ? cell-width : -1;
+            default -> -1;
+        };
+    }
+}
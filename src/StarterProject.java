@@ -1,15 +1,37 @@
 import edu.usu.graphics.Color;
 import edu.usu.graphics.Graphics2D;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 public class StarterProject {
     public static Color backgroundColor = new Color(46/255f, 64/255f, 69/255f);
 
-    public static void main(String[] args) {
+    /**
+     * Usage: StarterProject [-size N] [session log to record]
+     * -size adds a custom NxN maze, started with F11
+     * */
+    public static void main(String[] args) throws IOException {
+        String recordingPath = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-size") && i+1 < args.length)
+                MazeConfig.customMazeSize = Integer.parseInt(args[++i]);
+            else
+                recordingPath = args[i];
+        }
+
         try (Graphics2D graphics = new Graphics2D(1600, 1000, "The Grid")) {
             graphics.initialize(backgroundColor);
-            Game game = new Game(graphics);
+            Game game = new Game(new GraphicsRenderer(graphics), new GlfwInput(graphics.getWindow(), Clock.SYSTEM), Clock.SYSTEM);
+            SessionLog.Writer recording = new SessionLog.Writer();
+            if (recordingPath != null)
+                game.record(recording);
             game.initialize();
             game.run();
+            if (recordingPath != null) {
+                game.finishRecording();
+                recording.writeTo(Path.of(recordingPath));
+            }
             game.shutdown();
         }
     }
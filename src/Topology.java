@@ -0,0 +1,53 @@
+/**
+ * Describes how the cells of a maze are connected to each other.
+ * Neighbors are stored in a compressed sparse row (CSR) table that is built once per topology,
+ * so the neighbors of a cell are found at neighborCells()[neighborOffsets()[cell] .. neighborOffsets()[cell+1]).
+ * Every adjacent pair of cells shares one undirected edge, found at the same position in neighborEdges().
+ * */
+public interface Topology {
+    /** returns the number of columns in the grid */
+    int width();
+
+    /** returns the number of rows in the grid */
+    int height();
+
+    /** returns the total number of cells in the grid */
+    int cellCount();
+
+    /** returns the number of edge ids (possible walls) in the grid. Some topologies leave ids unused. */
+    int edgeCount();
+
+    /** returns the largest number of neighbors any single cell can have */
+    int directionCount();
+
+    /** returns the CSR offsets into the neighbor tables, of length cellCount()+1 */
+    int[] neighborOffsets();
+
+    /** returns the CSR table of neighbor cells */
+    int[] neighborCells();
+
+    /** returns the CSR table of edge ids, parallel to neighborCells() */
+    int[] neighborEdges();
+
+    /** returns the neighbor of a cell in the given direction, or -1 if there is none */
+    int neighbor(int cell, int direction);
+
+    /** returns the edge between a cell and its neighbor in the given direction, or -1 if there is none */
+    int edge(int cell, int direction);
+
+    /** returns the edge shared by two cells, or -1 if they are not neighbors */
+    default int edgeBetween(int cell1, int cell2) {
+        int[] offsets = neighborOffsets();
+        int[] cells = neighborCells();
+        for (int i = offsets[cell1]; i < offsets[cell1+1]; i++) {
+            if (cells[i] == cell2)
+                return neighborEdges()[i];
+        }
+        return -1;
+    }
+
+    /** returns the number of neighbors of a cell */
+    default int degree(int cell) {
+        return neighborOffsets()[cell+1] - neighborOffsets()[cell];
+    }
+}
@@ -0,0 +1,37 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A square grid that wraps around at its edges, so moving off the right side enters the left side
+ * and moving off the bottom enters the top.
+ * */
+public class TorusTopology extends SquareTopology {
+    private static final ConcurrentHashMap<Integer, TorusTopology> cache = new ConcurrentHashMap<>();
+
+    public TorusTopology(int width, int height) {
+        // with fewer than three cells per row or column a cell would be both the left and right neighbor of another
+        super(requireWrappable(width), requireWrappable(height), TorusTopology::wrappedNeighbor);
+    }
+
+    /** returns a shared size x size torus, so the neighbor tables are only built once per size */
+    public static TorusTopology of(int size) {
+        return cache.computeIfAbsent(size, s -> new TorusTopology(s, s));
+    }
+
+    private static int requireWrappable(int length) {
+        if (length < 3)
+            throw new IllegalArgumentException("Torus grid sides must be at least 3, got " + length);
+        return length;
+    }
+
+    private static int wrappedNeighbor(int width, int height, int cell, int direction) {
+        int col = cell % width;
+        int row = cell / width;
+        return switch (direction) {
+            case RIGHT -> row*width + (col+1) % width;
+            case DOWN -> ((row+1) % height)*width + col;
+            case LEFT -> row*width + (col-1 + width) % width;
+            case UP -> ((row-1 + height) % height)*width + col;
+            default -> -1;
+        };
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * A grid of alternating upward and downward pointing triangles.
+ * A cell points up when (row + col) is even, and connects to the cells beside it and the one across its flat edge.
+ * */
+public class TriangleTopology extends CsrTopology {
+    public static final int RIGHT = 0;
+    public static final int LEFT = 1;
+    // below for upward pointing cells, above for downward pointing cells
+    public static final int BASE = 2;
+
+    public TriangleTopology(int width, int height) {
+        super(width, height, 3, TriangleTopology::triangleNeighbor);
+    }
+
+    public boolean pointsUp(int cell) {
+        return pointsUp(this.width(), cell);
+    }
+
+    private static boolean pointsUp(int width, int cell) {
+        return ((cell % width + cell / width) & 1) == 0;
+    }
+
+    private static int triangleNeighbor(int width, int height, int cell, int direction) {
+        int col = cell % width;
+        int row = cell / width;
+        return switch (direction) {
+            case RIGHT -> col+1 < width ? cell+1 : -1;
+            case LEFT -> col > 0 ? cell-1 : -1;
+            case BASE -> {
+                int baseRow = pointsUp(width, cell) ? row+1 : row-1;
+                yield baseRow >= 0 && baseRow < height ? baseRow*width + col : -1;
+            }
+            default -> -1;
+        };
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Three reusable buffers shared by one writer and one reader without locking or allocating.
+ * The writer fills its back buffer and publishes it, the reader acquires the latest published one,
+ * and neither ever touches the buffer the other is using.
+ * */
+public class TripleBuffer<T> {
+    // index of the buffer between the writer and the reader, with this bit set if the reader hasn't taken it yet
+    private static final int FRESH = 4;
+
+    private final Object[] buffers;
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    public TripleBuffer(Supplier<T> factory) {
+        this.buffers = new Object[] {factory.get(), factory.get(), factory.get()};
+    }
+
+    /** returns the buffer the writer fills next */
+    @SuppressWarnings("unchecked")
+    public T back() {
+        return (T) this.buffers[this.back];
+    }
+
+    /** hands the back buffer to the reader and gives the writer another one */
+    public void publish() {
+        this.back = this.middle.getAndSet(this.back | FRESH) & ~FRESH;
+    }
+
+    /** returns the latest published buffer, which stays the reader's until the next acquire */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        if ((this.middle.get() & FRESH) != 0)
+            this.front = this.middle.getAndSet(this.front) & ~FRESH;
+        return (T) this.buffers[this.front];
+    }
+}
@@ -47,8 +47,19 @@ public class SoundManager {
         alListener3f(AL_VELOCITY, 0, 0, 0);
     }
 
+    /**
+     * The samples of an Ogg Vorbis file decoded to 16 bit PCM.  Decoding makes no OpenAL calls,
+     * so it can run on any thread, leaving only the upload for the thread that owns the OpenAL context.
+     */
+    public record DecodedSound(ShortBuffer samples, int channels, int sampleRate) {
+    }
+
     public Sound load(String name, String filename, boolean loop) {
-        SoundBuffer buffer = new SoundBuffer(filename);
+        return load(name, decode(filename), loop);
+    }
+
+    public Sound load(String name, DecodedSound sound, boolean loop) {
+        SoundBuffer buffer = new SoundBuffer(sound);
         Sound source = new Sound(buffer.getBufferId(), loop);
 
         soundBufferMap.put(name, buffer);
@@ -70,6 +81,13 @@ public class SoundManager {
         }
     }
 
+    public static DecodedSound decode(String filePath) {
+        try (STBVorbisInfo info = STBVorbisInfo.malloc()) {
+            ShortBuffer samples = SoundBuffer.readVorbis(filePath, info);
+            return new DecodedSound(samples, info.channels(), info.sample_rate());
+        }
+    }
+
     public void remove(String name) {
         soundSourceMap.get(name).cleanup();
         soundBufferMap.get(name).cleanup();
@@ -84,14 +102,12 @@ public class SoundManager {
         private final int bufferId;
         private final ShortBuffer buffer;
 
-        public SoundBuffer(String filePath) {
+        public SoundBuffer(DecodedSound sound) {
             this.bufferId = alGenBuffers();
-            try (STBVorbisInfo info = STBVorbisInfo.malloc()) {
-                buffer = readVorbis(filePath, info);
+            buffer = sound.samples();
 
-                // Copy to buffer
-                alBufferData(bufferId, info.channels() == 1 ? AL_FORMAT_MONO16 : AL_FORMAT_STEREO16, buffer, info.sample_rate());
-            }
+            // Copy to buffer
+            alBufferData(bufferId, sound.channels() == 1 ? AL_FORMAT_MONO16 : AL_FORMAT_STEREO16, buffer, sound.sampleRate());
         }
 
         public void cleanup() {
@@ -105,7 +121,7 @@ public class SoundManager {
             return this.bufferId;
         }
 
-        private ShortBuffer readVorbis(String filePath, STBVorbisInfo info) {
+        private static ShortBuffer readVorbis(String filePath, STBVorbisInfo info) {
             try (MemoryStack stack = MemoryStack.stackPush()) {
                 IntBuffer error = stack.mallocInt(1);
                 long decoder = stb_vorbis_open_filename(filePath, error, null);
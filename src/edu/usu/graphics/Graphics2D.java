@@ -55,6 +55,8 @@ public class Graphics2D  implements AutoCloseable {
     private final ArrayList<Tuple8<Texture, Rectangle, Vector2f, Vector2f, Vector2f, Vector2f, Matrix4f, Vector3f>> textGlyphs = new ArrayList<>();
     private final ArrayList<Tuple3<Triangle, Color, Matrix4f>> trianglesSolidColor = new ArrayList<>();
     private final ArrayList<Tuple3<Vector3f, Vector3f, Color>> lines = new ArrayList<>();
+    private final ArrayList<Graphics2DUtils.QuadBatch> quadBatches = new ArrayList<>();
+    private final ArrayList<StaticBatch> staticBatches = new ArrayList<>();
 
     private Matrix4f mProjection;
     private Matrix4f mModelIdentity;
@@ -62,6 +64,19 @@ public class Graphics2D  implements AutoCloseable {
     private ShaderProgram shaderTexture;
     private ShaderProgram shaderFont;
 
+    // One persistent vertex array per kind of geometry, refilled every frame
+    private StreamingBatch batchLines;
+    private StreamingBatch batchTriangles;
+    private StreamingBatch batchRectangles;
+    private StreamingBatch batchQuads;
+    private StreamingBatch batchTextures;
+    private StreamingBatch batchGlyphs;
+
+    // CPU time spent in end() before swapping buffers, for the last frame and all frames so far
+    private long lastEndNanos;
+    private long totalEndNanos;
+    private long frames;
+
     public Graphics2D(int width, int height, String title) {
         this.width = width;
         this.height = height;
@@ -112,6 +127,13 @@ public class Graphics2D  implements AutoCloseable {
         shaderTexture = createShader("resources/shaders/texture.vert", "resources/shaders/texture.frag");
         shaderFont = createShader("resources/shaders/font.vert", "resources/shaders/font.frag");
 
+        batchLines = new StreamingBatch(3, 2, 0, 1);
+        batchTriangles = new StreamingBatch(3, 3, 0, 1, 2);
+        batchRectangles = new StreamingBatch(3, 4, 0, 1, 2, 0, 2, 3);
+        batchQuads = new StreamingBatch(3, 4, 0, 1, 2, 0, 2, 3);
+        batchTextures = new StreamingBatch(2, 4, 0, 1, 2, 0, 2, 3);
+        batchGlyphs = new StreamingBatch(2, 4, 0, 1, 2, 0, 2, 3);
+
         // OSX needs this to be done before doing anything else in order for the
         // font rendering to work correctly.
         System.setProperty("java.awt.headless", "true");
@@ -131,36 +153,64 @@ public class Graphics2D  implements AutoCloseable {
     }
 
     public void end() {
+        long start = System.nanoTime();
+
+        // Draw the static batches, already on the GPU
+        Graphics2DUtils.renderStaticBatches(mProjection, mModelIdentity, shaderSolidColor, staticBatches);
+
         // Draw the lines
-        Graphics2DUtils.BuffersColor buffersLinesColor = Graphics2DUtils.prepareLinesColorBuffers(lines);
-        Graphics2DUtils.renderLines(mProjection, shaderSolidColor, buffersLinesColor, lines);
+        Graphics2DUtils.renderLines(mProjection, mModelIdentity, shaderSolidColor, batchLines, lines);
 
         // Draw the solid colored triangles
-        Graphics2DUtils.BuffersColor buffersTrisSolidColor = Graphics2DUtils.prepareTrisSolidColorBuffers(trianglesSolidColor);
-        Graphics2DUtils.renderTriangles(mProjection, shaderSolidColor, buffersTrisSolidColor, trianglesSolidColor);
+        Graphics2DUtils.renderTriangles(mProjection, shaderSolidColor, batchTriangles, trianglesSolidColor);
 
         // Draw the solid colored rectangles
-        Graphics2DUtils.BuffersColor buffersRectsSolidColor = Graphics2DUtils.prepareRectsSolidColorBuffers(rectanglesSolidColor);
-        Graphics2DUtils.renderRectangles(mProjection, shaderSolidColor, buffersRectsSolidColor, rectanglesSolidColor);
+        Graphics2DUtils.renderRectangles(mProjection, shaderSolidColor, batchRectangles, rectanglesSolidColor);
+
+        // Draw the quad batches, each with a single draw call
+        for (var batch : quadBatches) {
+            Graphics2DUtils.renderQuadBatch(mProjection, mModelIdentity, shaderSolidColor, batchQuads, batch);
+        }
 
         // Draw the textured rectangles
-        Graphics2DUtils.BuffersTexture buffersTexture = Graphics2DUtils.prepareRectsTextureBuffers(rectanglesTexture);
-        Graphics2DUtils.renderRectangles(mProjection, shaderTexture, buffersTexture, rectanglesTexture);
+        Graphics2DUtils.renderTextureRectangles(mProjection, shaderTexture, batchTextures, rectanglesTexture);
 
         // Draw the font rectangles
-        Graphics2DUtils.BuffersTexture buffersTextGlyphs = Graphics2DUtils.prepareTextGlyphBuffers(textGlyphs);
-        Graphics2DUtils.renderTextGlyphRectangles(mProjection, shaderFont, buffersTextGlyphs, textGlyphs);
+        Graphics2DUtils.renderTextGlyphRectangles(mProjection, shaderFont, batchGlyphs, textGlyphs);
 
         lines.clear();
         trianglesSolidColor.clear();
         rectanglesSolidColor.clear();
+        quadBatches.clear();
+        staticBatches.clear();
         rectanglesTexture.clear();
         textGlyphs.clear();
 
+        // Swapping waits on v-sync, so it is left out of the time
+        lastEndNanos = System.nanoTime() - start;
+        totalEndNanos += lastEndNanos;
+        frames++;
+
         glfwSwapBuffers(window);
     }
 
+    /** returns the CPU time the last call to end() spent submitting the frame, not counting the buffer swap */
+    public double getLastEndMillis() {
+        return lastEndNanos / 1e6;
+    }
+
+    /** returns the average CPU time end() has spent submitting a frame */
+    public double getAverageEndMillis() {
+        return frames == 0 ? 0 : totalEndNanos / 1e6 / frames;
+    }
+
     public void close() {
+        batchLines.cleanup();
+        batchTriangles.cleanup();
+        batchRectangles.cleanup();
+        batchQuads.cleanup();
+        batchTextures.cleanup();
+        batchGlyphs.cleanup();
         shaderSolidColor.cleanup();
 
         glfwFreeCallbacks(window);
@@ -179,6 +229,39 @@ public class Graphics2D  implements AutoCloseable {
         rectanglesSolidColor.add(new Tuple3<>(destination, color, mModelIdentity));
     }
 
+    /**
+     * Draws many solid colored rectangles of the same size as one batch.  positions holds the left and top of each,
+     * colors the red, green and blue of each, and neither may be changed until end() is called.
+     */
+    public void drawQuads(float[] positions, float[] colors, int count, float width, float height, float z) {
+        if (count > 0) {
+            quadBatches.add(new Graphics2DUtils.QuadBatch(positions, colors, count, width, height, z));
+        }
+    }
+
+    /**
+     * Uploads the rectangles to the GPU once, all in the same color, returning a batch that draws them with a single
+     * call each frame it is passed to draw.  The batch keeps nothing on the CPU, so later changes to the list are not
+     * seen; invalidate it and create another instead.
+     */
+    public StaticBatch createStaticBatch(List<Rectangle> rectangles, Color color) {
+        return new StaticBatch(rectangles, color);
+    }
+
+    /**
+     * Makes room on the GPU for the given number of rectangles, all in the same color, returning an empty batch that
+     * rectangles can be appended to as they're needed.
+     */
+    public StaticBatch createStaticBatch(int capacity, Color color) {
+        return new StaticBatch(capacity, color);
+    }
+
+    public void draw(StaticBatch batch) {
+        if (batch.isValid()) {
+            staticBatches.add(batch);
+        }
+    }
+
     public void draw(Triangle triangle, Color color) {
         trianglesSolidColor.add(new Tuple3<>(triangle, color, mModelIdentity));
     }
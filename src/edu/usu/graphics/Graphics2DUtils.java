@@ -27,348 +27,68 @@ import org.joml.Matrix4f;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
 import org.lwjgl.system.MemoryStack;
-import org.lwjgl.system.MemoryUtil;
 
 import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
 import java.util.ArrayList;
-import java.util.List;
 
 import static org.lwjgl.opengl.GL32.*;
 
 public class Graphics2DUtils {
 
-    public static class BuffersColor {
-        public BuffersColor(float[] positions, float[] colors, int[] indices) {
-            this.positions = positions;
-            this.colors = colors;
-            this.indices = indices;
-        }
-
-        public float[] positions;
-        public float[] colors;
-        public int[] indices;
-    }
-
-    public static class BuffersTexture {
-        public BuffersTexture(float[] positions, float[] coords, int[] indices) {
-            this.positions = positions;
-            this.coords = coords;
-            this.indices = indices;
-        }
-
-        public float[] positions;
-        public float[] coords;
-        public int[] indices;
-    }
-
-    public static BuffersColor prepareLinesColorBuffers(ArrayList<Tuple3<Vector3f, Vector3f, Color>> lines) {
-        float[] positions = new float[lines.size() * 6];
-        float[] colors = new float[lines.size() * 6];
-        int[] indices = new int[lines.size() * 2];
-
-        int rIndex = 0;
-        int iIndex = 0;
-        for (var l : lines) {
-            positions[rIndex * 3 + 0] = l.item1().x;
-            positions[rIndex * 3 + 1] = l.item1().y;
-            positions[rIndex * 3 + 2] = l.item1().z;
-
-            positions[rIndex * 3 + 3] = l.item2().x;
-            positions[rIndex * 3 + 4] = l.item2().y;
-            positions[rIndex * 3 + 5] = l.item2().z;
-
-            colors[rIndex * 3 + 0] = l.item3().r;
-            colors[rIndex * 3 + 1] = l.item3().g;
-            colors[rIndex * 3 + 2] = l.item3().b;
-
-            colors[rIndex * 3 + 3] = l.item3().r;
-            colors[rIndex * 3 + 4] = l.item3().g;
-            colors[rIndex * 3 + 5] = l.item3().b;
-
-            indices[iIndex + 0] = rIndex + 0;
-            indices[iIndex + 1] = rIndex + 1;
-
-            rIndex += 2;
-            iIndex += 2;
-        }
-
-        return new BuffersColor(positions, colors, indices);
-    }
-
-    public static BuffersColor prepareTrisSolidColorBuffers(ArrayList<Tuple3<Triangle, Color, Matrix4f>> triangles) {
-        float[] positions = new float[triangles.size() * 9];
-        float[] colors = new float[triangles.size() * 9];
-        int[] indices = new int[triangles.size() * 3];
-
-        int rIndex = 0;
-        int iIndex = 0;
-        for (var t : triangles) {
-            positions[rIndex * 3 + 0] = t.item1().pt1.x;
-            positions[rIndex * 3 + 1] = t.item1().pt1.y;
-            positions[rIndex * 3 + 2] = t.item1().pt1.z;
-
-            positions[rIndex * 3 + 3] = t.item1().pt2.x;
-            positions[rIndex * 3 + 4] = t.item1().pt2.y;
-            positions[rIndex * 3 + 5] = t.item1().pt2.z;
-
-            positions[rIndex * 3 + 6] = t.item1().pt3.x;
-            positions[rIndex * 3 + 7] = t.item1().pt3.y;
-            positions[rIndex * 3 + 8] = t.item1().pt3.z;
-
-            colors[rIndex * 3 + 0] = t.item2().r;
-            colors[rIndex * 3 + 1] = t.item2().g;
-            colors[rIndex * 3 + 2] = t.item2().b;
-
-            colors[rIndex * 3 + 3] = t.item2().r;
-            colors[rIndex * 3 + 4] = t.item2().g;
-            colors[rIndex * 3 + 5] = t.item2().b;
-
-            colors[rIndex * 3 + 6] = t.item2().r;
-            colors[rIndex * 3 + 7] = t.item2().g;
-            colors[rIndex * 3 + 8] = t.item2().b;
-
-            indices[iIndex + 0] = rIndex + 0;
-            indices[iIndex + 1] = rIndex + 1;
-            indices[iIndex + 2] = rIndex + 2;
-
-            rIndex += 3;
-            iIndex += 3;
-        }
-
-        return new BuffersColor(positions, colors, indices);
+    public record QuadBatch(float[] positions, float[] colors, int count, float width, float height, float z) {
     }
 
-    public static BuffersColor prepareRectsSolidColorBuffers(ArrayList<Tuple3<Rectangle, Color, Matrix4f>> rectangles) {
-        float[] positions = new float[rectangles.size() * 12];
-        float[] colors = new float[rectangles.size() * 12];
-        int[] indices = new int[rectangles.size() * 6];
-
-        int rIndex = 0;
-        int iIndex = 0;
-        for (var r : rectangles) {
-            positions[rIndex * 3 + 0] = r.item1().left;
-            positions[rIndex * 3 + 1] = r.item1().top;
-            positions[rIndex * 3 + 2] = r.item1().z;
-
-            positions[rIndex * 3 + 3] = r.item1().left + r.item1().width;
-            positions[rIndex * 3 + 4] = r.item1().top;
-            positions[rIndex * 3 + 5] = r.item1().z;
-
-            positions[rIndex * 3 + 6] = r.item1().left + r.item1().width;
-            positions[rIndex * 3 + 7] = r.item1().top + r.item1().height;
-            positions[rIndex * 3 + 8] = r.item1().z;
-
-            positions[rIndex * 3 + 9] = r.item1().left;
-            positions[rIndex * 3 + 10] = r.item1().top + r.item1().height;
-            positions[rIndex * 3 + 11] = r.item1().z;
-
-            colors[rIndex * 3 + 0] = r.item2().r;
-            colors[rIndex * 3 + 1] = r.item2().g;
-            colors[rIndex * 3 + 2] = r.item2().b;
-
-            colors[rIndex * 3 + 3] = r.item2().r;
-            colors[rIndex * 3 + 4] = r.item2().g;
-            colors[rIndex * 3 + 5] = r.item2().b;
-
-            colors[rIndex * 3 + 6] = r.item2().r;
-            colors[rIndex * 3 + 7] = r.item2().g;
-            colors[rIndex * 3 + 8] = r.item2().b;
-
-            colors[rIndex * 3 + 9] = r.item2().r;
-            colors[rIndex * 3 + 10] = r.item2().g;
-            colors[rIndex * 3 + 11] = r.item2().b;
-
-            indices[iIndex + 0] = rIndex + 0;
-            indices[iIndex + 1] = rIndex + 1;
-            indices[iIndex + 2] = rIndex + 2;
-
-            indices[iIndex + 3] = rIndex + 0;
-            indices[iIndex + 4] = rIndex + 2;
-            indices[iIndex + 5] = rIndex + 3;
-
-            rIndex += 4;
-            iIndex += 6;
+    public static void renderStaticBatches(Matrix4f mProjection, Matrix4f mModel, ShaderProgram shader, ArrayList<StaticBatch> batches) {
+        if (batches.isEmpty()) {
+            return;
         }
 
-        return new BuffersColor(positions, colors, indices);
-    }
-
-    public static BuffersTexture prepareRectsTextureBuffers(ArrayList<Tuple5<Texture, Rectangle, Rectangle, Matrix4f, Vector3f>> rectangles) {
-        float[] positions = new float[rectangles.size() * 12];
-        float[] coords = new float[rectangles.size() * 8];
-        int[] indices = new int[rectangles.size() * 6];
-
-        int rIndex = 0;
-        int iIndex = 0;
-        for (var r : rectangles) {
-            positions[rIndex * 3 + 0] = r.item2().left;
-            positions[rIndex * 3 + 1] = r.item2().top;
-            positions[rIndex * 3 + 2] = r.item2().z;
-
-            positions[rIndex * 3 + 3] = r.item2().left + r.item2().width;
-            positions[rIndex * 3 + 4] = r.item2().top;
-            positions[rIndex * 3 + 5] = r.item2().z;
-
-            positions[rIndex * 3 + 6] = r.item2().left + r.item2().width;
-            positions[rIndex * 3 + 7] = r.item2().top + r.item2().height;
-            positions[rIndex * 3 + 8] = r.item2().z;
-
-            positions[rIndex * 3 + 9] = r.item2().left;
-            positions[rIndex * 3 + 10] = r.item2().top + r.item2().height;
-            positions[rIndex * 3 + 11] = r.item2().z;
-
-            // r.item3 is the sub image to render, in pixels coord.
-            // we have to convert them to texture coords for correct rendering.
-
-            if (r.item3() != null) {
-                coords[rIndex * 2 + 0] = r.item3().left / r.item1().getWidth();
-                coords[rIndex * 2 + 1] = r.item3().top / r.item1().getHeight();
-
-                coords[rIndex * 2 + 2] = (r.item3().left + r.item3().width) / r.item1().getWidth();
-                coords[rIndex * 2 + 3] = r.item3().top / r.item1().getHeight();
-
-                coords[rIndex * 2 + 4] = (r.item3().left + r.item3().width) / r.item1().getWidth();
-                coords[rIndex * 2 + 5] = (r.item3().top + r.item3().height) / r.item1().getHeight();
-
-                coords[rIndex * 2 + 6] = r.item3().left / r.item1().getWidth();
-                coords[rIndex * 2 + 7] = (r.item3().top + r.item3().height) / r.item1().getHeight();
-            } else {
-                coords[rIndex * 2 + 0] = 0.0f;
-                coords[rIndex * 2 + 1] = 0.0f;
-
-                coords[rIndex * 2 + 2] = 1.0f;
-                coords[rIndex * 2 + 3] = 0.0f;
-
-                coords[rIndex * 2 + 4] = 1.0f;
-                coords[rIndex * 2 + 5] = 1.0f;
+        shader.bind();
 
-                coords[rIndex * 2 + 6] = 0.0f;
-                coords[rIndex * 2 + 7] = 1.0f;
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer matrix = stack.mallocFloat(16);
+            glUniformMatrix4fv(shader.getUniformLocation("mProjection"), false, mProjection.get(matrix));
+            glUniformMatrix4fv(shader.getUniformLocation("mModel"), false, mModel.get(matrix));
+
+            // A batch invalidated after it was queued has no buffers left to draw
+            for (var batch : batches) {
+                if (batch.isValid() && batch.size() > 0) {
+                    batch.draw();
+                }
             }
-
-            indices[iIndex + 0] = rIndex + 0;
-            indices[iIndex + 1] = rIndex + 1;
-            indices[iIndex + 2] = rIndex + 2;
-
-            indices[iIndex + 3] = rIndex + 0;
-            indices[iIndex + 4] = rIndex + 2;
-            indices[iIndex + 5] = rIndex + 3;
-
-            rIndex += 4;
-            iIndex += 6;
-        }
-
-        return new BuffersTexture(positions, coords, indices);
-    }
-
-    public static BuffersTexture prepareTextGlyphBuffers(ArrayList<Tuple8<Texture, Rectangle, Vector2f, Vector2f, Vector2f, Vector2f, Matrix4f, Vector3f>> rectangles) {
-        float[] positions = new float[rectangles.size() * 12];
-        float[] coords = new float[rectangles.size() * 8];
-        int[] indices = new int[rectangles.size() * 6];
-
-        int rIndex = 0;
-        int iIndex = 0;
-        for (var r : rectangles) {
-            positions[rIndex * 3 + 0] = r.item2().left;
-            positions[rIndex * 3 + 1] = r.item2().top;
-            positions[rIndex * 3 + 2] = r.item2().z;
-
-            positions[rIndex * 3 + 3] = r.item2().left + r.item2().width;
-            positions[rIndex * 3 + 4] = r.item2().top;
-            positions[rIndex * 3 + 5] = r.item2().z;
-
-            positions[rIndex * 3 + 6] = r.item2().left + r.item2().width;
-            positions[rIndex * 3 + 7] = r.item2().top + r.item2().height;
-            positions[rIndex * 3 + 8] = r.item2().z;
-
-            positions[rIndex * 3 + 9] = r.item2().left;
-            positions[rIndex * 3 + 10] = r.item2().top + r.item2().height;
-            positions[rIndex * 3 + 11] = r.item2().z;
-
-            coords[rIndex * 2 + 0] = r.item3().x;
-            coords[rIndex * 2 + 1] = r.item3().y;
-
-            coords[rIndex * 2 + 2] = r.item4().x;
-            coords[rIndex * 2 + 3] = r.item4().y;
-
-            coords[rIndex * 2 + 4] = r.item5().x;
-            coords[rIndex * 2 + 5] = r.item5().y;
-
-            coords[rIndex * 2 + 6] = r.item6().x;
-            coords[rIndex * 2 + 7] = r.item6().y;
-
-            indices[iIndex + 0] = rIndex + 0;
-            indices[iIndex + 1] = rIndex + 1;
-            indices[iIndex + 2] = rIndex + 2;
-
-            indices[iIndex + 3] = rIndex + 0;
-            indices[iIndex + 4] = rIndex + 2;
-            indices[iIndex + 5] = rIndex + 3;
-
-            rIndex += 4;
-            iIndex += 6;
         }
 
-        return new BuffersTexture(positions, coords, indices);
+        shader.unbind();
     }
 
-    public static void renderTriangles(Matrix4f mProjection, ShaderProgram shader, BuffersColor buffers, ArrayList<Tuple3<Triangle, Color, Matrix4f>> triangles) {
+    public static void renderTriangles(Matrix4f mProjection, ShaderProgram shader, StreamingBatch batch, ArrayList<Tuple3<Triangle, Color, Matrix4f>> triangles) {
         if (triangles.isEmpty()) {
             return;
         }
 
-        List<FloatBuffer> memBuffers = new ArrayList<>();
-        int vaoId = glGenVertexArrays();
-        glBindVertexArray(vaoId);
-
-        int vboVerts = glGenBuffers();
-        FloatBuffer bufferPositions = MemoryUtil.memAllocFloat(buffers.positions.length);
-        bufferPositions.put(0, buffers.positions);
-        glBindBuffer(GL_ARRAY_BUFFER, vboVerts);
-        glBufferData(GL_ARRAY_BUFFER, bufferPositions, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferPositions);
-        glEnableVertexAttribArray(0);
-        glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
-
-        int vboColors = glGenBuffers();
-        FloatBuffer bufferColors = MemoryUtil.memAllocFloat(buffers.colors.length);
-        bufferColors.put(0, buffers.colors);
-        glBindBuffer(GL_ARRAY_BUFFER, vboColors);
-        glBufferData(GL_ARRAY_BUFFER, bufferColors, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferColors);
-        glEnableVertexAttribArray(1);
-        glVertexAttribPointer(1, 3, GL_FLOAT, false, 0, 0);
-
-        int vboIndex = glGenBuffers();
-        IntBuffer bufferIndex = MemoryUtil.memAllocInt(buffers.indices.length);
-        bufferIndex.put(0, buffers.indices);
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, vboIndex);
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, bufferIndex, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferIndex);
-
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindVertexArray(0);
+        batch.begin(triangles.size());
+        for (var t : triangles) {
+            putVertex(batch, t.item1().pt1);
+            putVertex(batch, t.item1().pt2);
+            putVertex(batch, t.item1().pt3);
+            putColor(batch, t.item2(), 3);
+        }
+        batch.upload();
 
         shader.bind();
 
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            // Now, step through the list of rectangles and see which ones we can draw together and
-            // which ones need to be drawn individually.
-            int locationProjection = glGetUniformLocation(shader.getProgramId(), "mProjection");
-            glUniformMatrix4fv(locationProjection, false, mProjection.get(stack.mallocFloat(16)));
-            int locationModel = glGetUniformLocation(shader.getProgramId(), "mModel");
-
-            glBindVertexArray(vaoId);
+            FloatBuffer matrix = stack.mallocFloat(16);
+            glUniformMatrix4fv(shader.getUniformLocation("mProjection"), false, mProjection.get(matrix));
+            int locationModel = shader.getUniformLocation("mModel");
 
+            // Step through the list of triangles and draw those sharing a model matrix together
             int startIndex = 0;
             Matrix4f mModelGroup = triangles.get(0).item3();
             for (int t = 1; t <= triangles.size(); t++) {
                 if (t == triangles.size() || mModelGroup != triangles.get(t).item3()) {
-                    memBuffers.add(MemoryUtil.memAllocFloat(16));
-                    glUniformMatrix4fv(locationModel, false, mModelGroup.get(memBuffers.get(memBuffers.size() - 1)));
-                    // * 3 because three values per index
-                    glDrawElements(GL_TRIANGLES, (t - startIndex) * 3, GL_UNSIGNED_INT, (long) startIndex * 3 * Integer.BYTES);
+                    glUniformMatrix4fv(locationModel, false, mModelGroup.get(matrix));
+                    batch.draw(GL_TRIANGLES, startIndex, t);
 
                     startIndex = t;
                     if (t < triangles.size()) {
@@ -376,146 +96,64 @@ public class Graphics2DUtils {
                     }
                 }
             }
-
-            glBindVertexArray(0);
-            shader.unbind();
-
-            glDeleteBuffers(vboVerts);
-            glDeleteBuffers(vboColors);
-            glDeleteBuffers(vboIndex);
-            glDeleteVertexArrays(vaoId);
         }
 
-        for (var memory : memBuffers) {
-            MemoryUtil.memFree(memory);
-        }
+        batch.unbind();
+        shader.unbind();
     }
 
-    public static void renderLines(Matrix4f mProjection, ShaderProgram shader, BuffersColor buffers, ArrayList<Tuple3<Vector3f, Vector3f, Color>> lines) {
+    public static void renderLines(Matrix4f mProjection, Matrix4f mModel, ShaderProgram shader, StreamingBatch batch, ArrayList<Tuple3<Vector3f, Vector3f, Color>> lines) {
         if (lines.isEmpty()) {
             return;
         }
 
-        List<FloatBuffer> memBuffers = new ArrayList<>();
-        int vaoId = glGenVertexArrays();
-        glBindVertexArray(vaoId);
-
-        int vboVerts = glGenBuffers();
-        FloatBuffer bufferPositions = MemoryUtil.memAllocFloat(buffers.positions.length);
-        bufferPositions.put(0, buffers.positions);
-        glBindBuffer(GL_ARRAY_BUFFER, vboVerts);
-        glBufferData(GL_ARRAY_BUFFER, bufferPositions, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferPositions);
-        glEnableVertexAttribArray(0);
-        glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
-
-        int vboColors = glGenBuffers();
-        FloatBuffer bufferColors = MemoryUtil.memAllocFloat(buffers.colors.length);
-        bufferColors.put(0, buffers.colors);
-        glBindBuffer(GL_ARRAY_BUFFER, vboColors);
-        glBufferData(GL_ARRAY_BUFFER, bufferColors, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferColors);
-        glEnableVertexAttribArray(1);
-        glVertexAttribPointer(1, 3, GL_FLOAT, false, 0, 0);
-
-        int vboIndex = glGenBuffers();
-        IntBuffer bufferIndex = MemoryUtil.memAllocInt(buffers.indices.length);
-        bufferIndex.put(0, buffers.indices);
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, vboIndex);
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, bufferIndex, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferIndex);
-
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindVertexArray(0);
+        batch.begin(lines.size());
+        for (var l : lines) {
+            putVertex(batch, l.item1());
+            putVertex(batch, l.item2());
+            putColor(batch, l.item3(), 2);
+        }
+        batch.upload();
 
         shader.bind();
 
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            // Now, step through the list of rectangles and see which ones we can draw together and
-            // which ones need to be drawn individually.
-            int locationProjection = glGetUniformLocation(shader.getProgramId(), "mProjection");
-            glUniformMatrix4fv(locationProjection, false, mProjection.get(stack.mallocFloat(16)));
-            int locationModel = glGetUniformLocation(shader.getProgramId(), "mModel");
-
-            glBindVertexArray(vaoId);
-
-            Matrix4f mModelGroup = (new Matrix4f()).identity();
-            memBuffers.add(MemoryUtil.memAllocFloat(16));
-            glUniformMatrix4fv(locationModel, false, mModelGroup.get(memBuffers.get(memBuffers.size() - 1)));
-            // * 2 because three values per index
-            glDrawElements(GL_LINES, lines.size() * 2, GL_UNSIGNED_INT, (long) 0);
-
-            glBindVertexArray(0);
-            shader.unbind();
-
-            glDeleteBuffers(vboVerts);
-            glDeleteBuffers(vboColors);
-            glDeleteBuffers(vboIndex);
-            glDeleteVertexArrays(vaoId);
+            FloatBuffer matrix = stack.mallocFloat(16);
+            glUniformMatrix4fv(shader.getUniformLocation("mProjection"), false, mProjection.get(matrix));
+            glUniformMatrix4fv(shader.getUniformLocation("mModel"), false, mModel.get(matrix));
+            batch.draw(GL_LINES, 0, lines.size());
         }
 
-        for (var memory : memBuffers) {
-            MemoryUtil.memFree(memory);
-        }
+        batch.unbind();
+        shader.unbind();
     }
 
-    public static void renderRectangles(Matrix4f mProjection, ShaderProgram shader, BuffersColor buffers, ArrayList<Tuple3<Rectangle, Color, Matrix4f>> rectangles) {
+    public static void renderRectangles(Matrix4f mProjection, ShaderProgram shader, StreamingBatch batch, ArrayList<Tuple3<Rectangle, Color, Matrix4f>> rectangles) {
         if (rectangles.isEmpty()) {
             return;
         }
 
-        List<FloatBuffer> memBuffers = new ArrayList<>();
-        int vaoId = glGenVertexArrays();
-        glBindVertexArray(vaoId);
-
-        int vboVerts = glGenBuffers();
-        FloatBuffer bufferPositions = MemoryUtil.memAllocFloat(buffers.positions.length);
-        bufferPositions.put(0, buffers.positions);
-        glBindBuffer(GL_ARRAY_BUFFER, vboVerts);
-        glBufferData(GL_ARRAY_BUFFER, bufferPositions, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferPositions);
-        glEnableVertexAttribArray(0);
-        glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
-
-        int vboColors = glGenBuffers();
-        FloatBuffer bufferColors = MemoryUtil.memAllocFloat(buffers.colors.length);
-        bufferColors.put(0, buffers.colors);
-        glBindBuffer(GL_ARRAY_BUFFER, vboColors);
-        glBufferData(GL_ARRAY_BUFFER, bufferColors, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferColors);
-        glEnableVertexAttribArray(1);
-        glVertexAttribPointer(1, 3, GL_FLOAT, false, 0, 0);
-
-        int vboIndex = glGenBuffers();
-        IntBuffer bufferIndex = MemoryUtil.memAllocInt(buffers.indices.length);
-        bufferIndex.put(0, buffers.indices);
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, vboIndex);
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, bufferIndex, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferIndex);
-
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindVertexArray(0);
+        batch.begin(rectangles.size());
+        for (var r : rectangles) {
+            putRectangle(batch, r.item1());
+            putColor(batch, r.item2(), 4);
+        }
+        batch.upload();
 
         shader.bind();
 
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            // Now, step through the list of rectangles and see which ones we can draw together and
-            // which ones need to be drawn individually.
-            int locationProjection = glGetUniformLocation(shader.getProgramId(), "mProjection");
-            glUniformMatrix4fv(locationProjection, false, mProjection.get(stack.mallocFloat(16)));
-            int locationModel = glGetUniformLocation(shader.getProgramId(), "mModel");
-
-            glBindVertexArray(vaoId);
+            FloatBuffer matrix = stack.mallocFloat(16);
+            glUniformMatrix4fv(shader.getUniformLocation("mProjection"), false, mProjection.get(matrix));
+            int locationModel = shader.getUniformLocation("mModel");
 
+            // Step through the list of rectangles and draw those sharing a model matrix together
             int startIndex = 0;
             Matrix4f mModelGroup = rectangles.get(0).item3();
             for (int r = 1; r <= rectangles.size(); r++) {
                 if (r == rectangles.size() || mModelGroup != rectangles.get(r).item3()) {
-                    memBuffers.add(MemoryUtil.memAllocFloat(16));
-                    glUniformMatrix4fv(locationModel, false, mModelGroup.get(memBuffers.get(memBuffers.size() - 1)));
-                    // * 3 because three values per index
-                    // * 2 because two triangles per rectangle
-                    glDrawElements(GL_TRIANGLES, (r - startIndex) * 3 * 2, GL_UNSIGNED_INT, (long) startIndex * 3 * 2 * Integer.BYTES);
+                    glUniformMatrix4fv(locationModel, false, mModelGroup.get(matrix));
+                    batch.draw(GL_TRIANGLES, startIndex, r);
 
                     startIndex = r;
                     if (r < rectangles.size()) {
@@ -523,87 +161,99 @@ public class Graphics2DUtils {
                     }
                 }
             }
+        }
 
-            glBindVertexArray(0);
-            shader.unbind();
+        batch.unbind();
+        shader.unbind();
+    }
 
-            glDeleteBuffers(vboVerts);
-            glDeleteBuffers(vboColors);
-            glDeleteBuffers(vboIndex);
-            glDeleteVertexArrays(vaoId);
+    public static void renderQuadBatch(Matrix4f mProjection, Matrix4f mModel, ShaderProgram shader, StreamingBatch batch, QuadBatch quads) {
+        batch.begin(quads.count());
+        float[] corners = quads.positions();
+        float[] rgbs = quads.colors();
+        float z = quads.z();
+        for (int q = 0; q < quads.count(); q++) {
+            float left = corners[q * 2];
+            float top = corners[q * 2 + 1];
+            float right = left + quads.width();
+            float bottom = top + quads.height();
+
+            batch.position(left, top, z);
+            batch.position(right, top, z);
+            batch.position(right, bottom, z);
+            batch.position(left, bottom, z);
+
+            float r = rgbs[q * 3];
+            float g = rgbs[q * 3 + 1];
+            float b = rgbs[q * 3 + 2];
+            for (int v = 0; v < 4; v++) {
+                batch.attribute(r, g, b);
+            }
         }
+        batch.upload();
+
+        shader.bind();
 
-        for (var memory : memBuffers) {
-            MemoryUtil.memFree(memory);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer matrix = stack.mallocFloat(16);
+            glUniformMatrix4fv(shader.getUniformLocation("mProjection"), false, mProjection.get(matrix));
+            glUniformMatrix4fv(shader.getUniformLocation("mModel"), false, mModel.get(matrix));
+            batch.draw(GL_TRIANGLES, 0, quads.count());
         }
+
+        batch.unbind();
+        shader.unbind();
     }
 
-    public static void renderRectangles(Matrix4f mProjection, ShaderProgram shader, BuffersTexture buffers, ArrayList<Tuple5<Texture, Rectangle, Rectangle, Matrix4f, Vector3f>> rectangles) {
+    public static void renderTextureRectangles(Matrix4f mProjection, ShaderProgram shader, StreamingBatch batch, ArrayList<Tuple5<Texture, Rectangle, Rectangle, Matrix4f, Vector3f>> rectangles) {
         if (rectangles.isEmpty()) {
             return;
         }
 
-        List<FloatBuffer> memBuffers = new ArrayList<>();
-
-        int vaoId = glGenVertexArrays();
-        glBindVertexArray(vaoId);
-
-        int vboVerts = glGenBuffers();
-        FloatBuffer bufferPositions = MemoryUtil.memAllocFloat(buffers.positions.length);
-        bufferPositions.put(0, buffers.positions);
-        glBindBuffer(GL_ARRAY_BUFFER, vboVerts);
-        glBufferData(GL_ARRAY_BUFFER, bufferPositions, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferPositions);
-        glEnableVertexAttribArray(0);
-        glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
-
-        int vboCoords = glGenBuffers();
-        FloatBuffer bufferTexCoords = MemoryUtil.memAllocFloat(buffers.coords.length);
-        bufferTexCoords.put(0, buffers.coords);
-        glBindBuffer(GL_ARRAY_BUFFER, vboCoords);
-        glBufferData(GL_ARRAY_BUFFER, bufferTexCoords, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferTexCoords);
-        glEnableVertexAttribArray(1);
-        glVertexAttribPointer(1, 2, GL_FLOAT, false, 0, 0);
-
-        int vboIndex = glGenBuffers();
-        IntBuffer bufferIndex = MemoryUtil.memAllocInt(buffers.indices.length);
-        bufferIndex.put(0, buffers.indices);
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, vboIndex);
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, bufferIndex, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferIndex);
-
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindVertexArray(0);
+        batch.begin(rectangles.size());
+        for (var r : rectangles) {
+            putRectangle(batch, r.item2());
+
+            // r.item3 is the sub image to render, in pixels coord.
+            // we have to convert them to texture coords for correct rendering.
+            if (r.item3() != null) {
+                float left = r.item3().left / r.item1().getWidth();
+                float top = r.item3().top / r.item1().getHeight();
+                float right = (r.item3().left + r.item3().width) / r.item1().getWidth();
+                float bottom = (r.item3().top + r.item3().height) / r.item1().getHeight();
+                batch.attribute(left, top);
+                batch.attribute(right, top);
+                batch.attribute(right, bottom);
+                batch.attribute(left, bottom);
+            } else {
+                batch.attribute(0.0f, 0.0f);
+                batch.attribute(1.0f, 0.0f);
+                batch.attribute(1.0f, 1.0f);
+                batch.attribute(0.0f, 1.0f);
+            }
+        }
+        batch.upload();
 
         shader.bind();
 
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            // Now, step through the list of rectangles and see which ones we can draw together and
-            // which ones need to be drawn individually.
-            int locationProjection = glGetUniformLocation(shader.getProgramId(), "mProjection");
-            glUniformMatrix4fv(locationProjection, false, mProjection.get(stack.mallocFloat(16)));
-            int locationModel = glGetUniformLocation(shader.getProgramId(), "mModel");
-            int locationColor = glGetUniformLocation(shader.getProgramId(), "color");
-
-            glBindVertexArray(vaoId);
+            FloatBuffer matrix = stack.mallocFloat(16);
+            FloatBuffer color = stack.mallocFloat(3);
+            glUniformMatrix4fv(shader.getUniformLocation("mProjection"), false, mProjection.get(matrix));
+            int locationModel = shader.getUniformLocation("mModel");
+            int locationColor = shader.getUniformLocation("color");
 
+            // Step through the list of rectangles and draw those sharing a texture, color and model matrix together
             int startIndex = 0;
             Matrix4f mModelGroup = rectangles.get(0).item4();
             for (int r = 1; r <= rectangles.size(); r++) {
                 if (r == rectangles.size() || rectangles.get(r - 1).item1() != rectangles.get(r).item1() || rectangles.get(r - 1).item5() != rectangles.get(r).item5() || mModelGroup != rectangles.get(r).item4()) {
-
-                    memBuffers.add(MemoryUtil.memAllocFloat(16));
-                    glUniformMatrix4fv(locationModel, false, mModelGroup.get(memBuffers.get(memBuffers.size() - 1)));
-                    memBuffers.add(MemoryUtil.memAllocFloat(3));
-                    glUniform3fv(locationColor, rectangles.get(r - 1).item5().get(memBuffers.get(memBuffers.size() - 1)));
+                    glUniformMatrix4fv(locationModel, false, mModelGroup.get(matrix));
+                    glUniform3fv(locationColor, rectangles.get(r - 1).item5().get(color));
 
                     glActiveTexture(GL_TEXTURE0);
                     rectangles.get(r - 1).item1().bind();
-
-                    // * 3 because three values per index
-                    // * 2 because two triangles per rectangle
-                    glDrawElements(GL_TRIANGLES, (r - startIndex) * 3 * 2, GL_UNSIGNED_INT, (long) startIndex * 3 * 2 * Integer.BYTES);
+                    batch.draw(GL_TRIANGLES, startIndex, r);
 
                     startIndex = r;
                     if (r < rectangles.size()) {
@@ -611,87 +261,47 @@ public class Graphics2DUtils {
                     }
                 }
             }
-
-            glBindVertexArray(0);
-            shader.unbind();
-
-            glDeleteBuffers(vboVerts);
-            glDeleteBuffers(vboCoords);
-            glDeleteBuffers(vboIndex);
-            glDeleteVertexArrays(vaoId);
         }
 
-        for (var memory : memBuffers) {
-            MemoryUtil.memFree(memory);
-        }
+        batch.unbind();
+        shader.unbind();
     }
 
-    public static void renderTextGlyphRectangles(Matrix4f mProjection, ShaderProgram shader, BuffersTexture buffers, ArrayList<Tuple8<Texture, Rectangle, Vector2f, Vector2f, Vector2f, Vector2f, Matrix4f, Vector3f>> rectangles) {
+    public static void renderTextGlyphRectangles(Matrix4f mProjection, ShaderProgram shader, StreamingBatch batch, ArrayList<Tuple8<Texture, Rectangle, Vector2f, Vector2f, Vector2f, Vector2f, Matrix4f, Vector3f>> rectangles) {
         if (rectangles.isEmpty()) {
             return;
         }
 
-        List<FloatBuffer> memBuffers = new ArrayList<>();
-
-        int vaoId = glGenVertexArrays();
-        glBindVertexArray(vaoId);
-
-        int vboVerts = glGenBuffers();
-        FloatBuffer bufferPositions = MemoryUtil.memAllocFloat(buffers.positions.length);
-        bufferPositions.put(0, buffers.positions);
-        glBindBuffer(GL_ARRAY_BUFFER, vboVerts);
-        glBufferData(GL_ARRAY_BUFFER, bufferPositions, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferPositions);
-        glEnableVertexAttribArray(0);
-        glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
-
-        int vboCoords = glGenBuffers();
-        FloatBuffer bufferTexCoords = MemoryUtil.memAllocFloat(buffers.coords.length);
-        bufferTexCoords.put(0, buffers.coords);
-        glBindBuffer(GL_ARRAY_BUFFER, vboCoords);
-        glBufferData(GL_ARRAY_BUFFER, bufferTexCoords, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferTexCoords);
-        glEnableVertexAttribArray(1);
-        glVertexAttribPointer(1, 2, GL_FLOAT, false, 0, 0);
-
-        int vboIndex = glGenBuffers();
-        IntBuffer bufferIndex = MemoryUtil.memAllocInt(buffers.indices.length);
-        bufferIndex.put(0, buffers.indices);
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, vboIndex);
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, bufferIndex, GL_STATIC_DRAW);
-        MemoryUtil.memFree(bufferIndex);
-
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindVertexArray(0);
+        batch.begin(rectangles.size());
+        for (var r : rectangles) {
+            putRectangle(batch, r.item2());
+            batch.attribute(r.item3().x, r.item3().y);
+            batch.attribute(r.item4().x, r.item4().y);
+            batch.attribute(r.item5().x, r.item5().y);
+            batch.attribute(r.item6().x, r.item6().y);
+        }
+        batch.upload();
 
         shader.bind();
 
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            // Now, step through the list of rectangles and see which ones we can draw together and
-            // which ones need to be drawn individually.
-            int locationProjection = glGetUniformLocation(shader.getProgramId(), "mProjection");
-            glUniformMatrix4fv(locationProjection, false, mProjection.get(stack.mallocFloat(16)));
-            int locationModel = glGetUniformLocation(shader.getProgramId(), "mModel");
-            int locationColor = glGetUniformLocation(shader.getProgramId(), "color");
-
-            glBindVertexArray(vaoId);
+            FloatBuffer matrix = stack.mallocFloat(16);
+            FloatBuffer color = stack.mallocFloat(3);
+            glUniformMatrix4fv(shader.getUniformLocation("mProjection"), false, mProjection.get(matrix));
+            int locationModel = shader.getUniformLocation("mModel");
+            int locationColor = shader.getUniformLocation("color");
 
+            // Step through the list of glyphs and draw those sharing a texture, color and model matrix together
             int startIndex = 0;
             Matrix4f mModelGroup = rectangles.get(0).item7();
             for (int r = 1; r <= rectangles.size(); r++) {
                 if (r == rectangles.size() || rectangles.get(r - 1).item1() != rectangles.get(r).item1() || rectangles.get(r - 1).item8() != rectangles.get(r).item8() || mModelGroup != rectangles.get(r).item7()) {
-
-                    memBuffers.add(MemoryUtil.memAllocFloat(16));
-                    glUniformMatrix4fv(locationModel, false, mModelGroup.get(memBuffers.get(memBuffers.size() - 1)));
-                    memBuffers.add(MemoryUtil.memAllocFloat(3));
-                    glUniform3fv(locationColor, rectangles.get(r - 1).item8().get(memBuffers.get(memBuffers.size() - 1)));
+                    glUniformMatrix4fv(locationModel, false, mModelGroup.get(matrix));
+                    glUniform3fv(locationColor, rectangles.get(r - 1).item8().get(color));
 
                     glActiveTexture(GL_TEXTURE0);
                     rectangles.get(r - 1).item1().bind();
-
-                    // * 3 because three values per index
-                    // * 2 because two triangles per rectangle
-                    glDrawElements(GL_TRIANGLES, (r - startIndex) * 3 * 2, GL_UNSIGNED_INT, (long) startIndex * 3 * 2 * Integer.BYTES);
+                    batch.draw(GL_TRIANGLES, startIndex, r);
 
                     startIndex = r;
                     if (r < rectangles.size()) {
@@ -699,18 +309,27 @@ public class Graphics2DUtils {
                     }
                 }
             }
+        }
 
-            glBindVertexArray(0);
-            shader.unbind();
+        batch.unbind();
+        shader.unbind();
+    }
 
-            glDeleteBuffers(vboVerts);
-            glDeleteBuffers(vboCoords);
-            glDeleteBuffers(vboIndex);
-            glDeleteVertexArrays(vaoId);
-        }
+    private static void putVertex(StreamingBatch batch, Vector3f vertex) {
+        batch.position(vertex.x, vertex.y, vertex.z);
+    }
+
+    /** writes the four corners of the rectangle, clockwise from the top left */
+    private static void putRectangle(StreamingBatch batch, Rectangle r) {
+        batch.position(r.left, r.top, r.z);
+        batch.position(r.left + r.width, r.top, r.z);
+        batch.position(r.left + r.width, r.top + r.height, r.z);
+        batch.position(r.left, r.top + r.height, r.z);
+    }
 
-        for (var memory : memBuffers) {
-            MemoryUtil.memFree(memory);
+    private static void putColor(StreamingBatch batch, Color color, int vertices) {
+        for (int v = 0; v < vertices; v++) {
+            batch.attribute(color.r, color.g, color.b);
         }
     }
 }
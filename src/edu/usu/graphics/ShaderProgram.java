@@ -33,6 +33,7 @@ import static org.lwjgl.opengl.GL32.*;
 public class ShaderProgram {
 
     private final int programId;
+    private final Map<String, Integer> uniformLocations = new HashMap<>();
 
     public ShaderProgram(List<ShaderModuleData> shaderModuleDataList) {
         programId = glCreateProgram();
@@ -79,6 +80,11 @@ public class ShaderProgram {
         return programId;
     }
 
+    /** returns the location of the named uniform, asking GL only the first time */
+    public int getUniformLocation(String name) {
+        return uniformLocations.computeIfAbsent(name, n -> glGetUniformLocation(programId, n));
+    }
+
     private void link(List<Integer> shaderModules) {
         glLinkProgram(programId);
         if (glGetProgrami(programId, GL_LINK_STATUS) == 0) {
@@ -0,0 +1,184 @@
+/*
+Copyright (c) 2024 James Dean Mathias
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+package edu.usu.graphics;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * Solid colored rectangles uploaded to the GPU once, for geometry that stays the same for many frames such as
+ * the walls of a maze.  Drawing it is a single draw call however many rectangles it holds, and nothing is copied
+ * on the CPU side after it is created.  Create one through Graphics2D.createStaticBatch, and invalidate it once
+ * the rectangles it was built from change, which frees its GPU buffers.  A batch created with a capacity starts empty,
+ * and rectangles can be appended to it until it is full, uploading only the new ones, or hidden one at a time.
+ */
+public class StaticBatch {
+    private final int capacity;
+    private int rectangles;
+    private final int vaoId;
+    private final int vboPositions;
+    private final int vboColors;
+    private final int vboIndex;
+    private boolean valid = true;
+
+    StaticBatch(List<Rectangle> rectangles, Color color) {
+        this(rectangles.size(), color, GL_STATIC_DRAW);
+        this.upload(rectangles, rectangles.size());
+    }
+
+    StaticBatch(int capacity, Color color) {
+        this(capacity, color, GL_DYNAMIC_DRAW);
+    }
+
+    private StaticBatch(int capacity, Color color, int usage) {
+        this.capacity = capacity;
+
+        FloatBuffer bufferColors = MemoryUtil.memAllocFloat(this.capacity * 12);
+        IntBuffer bufferIndex = MemoryUtil.memAllocInt(this.capacity * 6);
+        for (int r = 0; r < this.capacity; r++) {
+            for (int v = 0; v < 4; v++) {
+                bufferColors.put(color.r).put(color.g).put(color.b);
+            }
+
+            bufferIndex.put(r * 4).put(r * 4 + 1).put(r * 4 + 2);
+            bufferIndex.put(r * 4).put(r * 4 + 2).put(r * 4 + 3);
+        }
+        bufferColors.flip();
+        bufferIndex.flip();
+
+        this.vaoId = glGenVertexArrays();
+        glBindVertexArray(this.vaoId);
+
+        this.vboPositions = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, this.vboPositions);
+        glBufferData(GL_ARRAY_BUFFER, this.capacity * 12L * Float.BYTES, usage);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
+
+        this.vboColors = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, this.vboColors);
+        glBufferData(GL_ARRAY_BUFFER, bufferColors, GL_STATIC_DRAW);
+        glEnableVertexAttribArray(1);
+        glVertexAttribPointer(1, 3, GL_FLOAT, false, 0, 0);
+
+        this.vboIndex = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, this.vboIndex);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, bufferIndex, GL_STATIC_DRAW);
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glBindVertexArray(0);
+
+        MemoryUtil.memFree(bufferColors);
+        MemoryUtil.memFree(bufferIndex);
+    }
+
+    /** returns the number of rectangles in the batch */
+    public int size() {
+        return this.rectangles;
+    }
+
+    /** returns the number of rectangles the batch has room for */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /** uploads the first count rectangles after those already in the batch */
+    public void append(Iterable<Rectangle> rectangles, int count) {
+        if (!this.valid) {
+            throw new IllegalStateException("Cannot append to an invalidated batch");
+        }
+        if (this.rectangles + count > this.capacity) {
+            throw new IllegalStateException("Cannot append " + count + " rectangles to a batch with room for "
+                    + (this.capacity - this.rectangles));
+        }
+        this.upload(rectangles, count);
+    }
+
+    /** stops drawing the rectangle at the given index by collapsing its corners to a point, uploading only that rectangle */
+    public void hide(int index) {
+        if (!this.valid) {
+            throw new IllegalStateException("Cannot hide a rectangle of an invalidated batch");
+        }
+        if (index < 0 || index >= this.rectangles) {
+            throw new IndexOutOfBoundsException("Rectangle " + index + " of a batch of " + this.rectangles);
+        }
+
+        FloatBuffer bufferPositions = MemoryUtil.memCallocFloat(12);
+        glBindBuffer(GL_ARRAY_BUFFER, this.vboPositions);
+        glBufferSubData(GL_ARRAY_BUFFER, index * 12L * Float.BYTES, bufferPositions);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        MemoryUtil.memFree(bufferPositions);
+    }
+
+    private void upload(Iterable<Rectangle> rectangles, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        FloatBuffer bufferPositions = MemoryUtil.memAllocFloat(count * 12);
+        Iterator<Rectangle> source = rectangles.iterator();
+        for (int r = 0; r < count; r++) {
+            Rectangle rectangle = source.next();
+            bufferPositions.put(rectangle.left).put(rectangle.top).put(rectangle.z);
+            bufferPositions.put(rectangle.left + rectangle.width).put(rectangle.top).put(rectangle.z);
+            bufferPositions.put(rectangle.left + rectangle.width).put(rectangle.top + rectangle.height).put(rectangle.z);
+            bufferPositions.put(rectangle.left).put(rectangle.top + rectangle.height).put(rectangle.z);
+        }
+        bufferPositions.flip();
+
+        glBindBuffer(GL_ARRAY_BUFFER, this.vboPositions);
+        glBufferSubData(GL_ARRAY_BUFFER, this.rectangles * 12L * Float.BYTES, bufferPositions);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        MemoryUtil.memFree(bufferPositions);
+
+        this.rectangles += count;
+    }
+
+    public boolean isValid() {
+        return this.valid;
+    }
+
+    /** frees the batch's GPU buffers, after which it is no longer drawn */
+    public void invalidate() {
+        if (!this.valid) {
+            return;
+        }
+        this.valid = false;
+        glDeleteBuffers(this.vboPositions);
+        glDeleteBuffers(this.vboColors);
+        glDeleteBuffers(this.vboIndex);
+        glDeleteVertexArrays(this.vaoId);
+    }
+
+    /** draws every rectangle with the shader and uniforms already bound */
+    void draw() {
+        glBindVertexArray(this.vaoId);
+        glDrawElements(GL_TRIANGLES, this.rectangles * 6, GL_UNSIGNED_INT, 0);
+        glBindVertexArray(0);
+    }
+}
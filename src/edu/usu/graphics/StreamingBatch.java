@@ -0,0 +1,180 @@
+/*
+Copyright (c) 2024 James Dean Mathias
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in
+all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.  IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+THE SOFTWARE.
+*/
+package edu.usu.graphics;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.GL32.*;
+
+/**
+ * A vertex array and its buffers, created once and refilled every frame.  Positions and one other attribute,
+ * either colors or texture coordinates, are written straight into off-heap memory that grows as needed, and each
+ * upload orphans the GPU buffer so the driver never waits on a frame still drawing from it.
+ * The indices repeat the same pattern for every primitive, so they are only uploaded again when the batch grows.
+ */
+public class StreamingBatch {
+    private static final int INITIAL_PRIMITIVES = 256;
+
+    private final int attributeSize;
+    private final int verticesPerPrimitive;
+    private final int[] indexPattern;
+
+    private final int vaoId;
+    private final int vboPositions;
+    private final int vboAttributes;
+    private final int vboIndex;
+
+    private FloatBuffer positions;
+    private FloatBuffer attributes;
+    private int capacity;
+    private int indexedCapacity;
+
+    // where the next position and attribute float go, written with plain stores rather than checked buffer puts
+    private long positionsAddress;
+    private long attributesAddress;
+    private long positionsEnd;
+    private long attributesEnd;
+
+    /**
+     * Creates a batch whose primitives each have verticesPerPrimitive vertices, attributeSize floats per vertex
+     * besides the position, and are drawn with the given indices into those vertices.
+     */
+    public StreamingBatch(int attributeSize, int verticesPerPrimitive, int... indexPattern) {
+        this.attributeSize = attributeSize;
+        this.verticesPerPrimitive = verticesPerPrimitive;
+        this.indexPattern = indexPattern;
+
+        this.vaoId = glGenVertexArrays();
+        glBindVertexArray(this.vaoId);
+
+        this.vboPositions = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, this.vboPositions);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
+
+        this.vboAttributes = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, this.vboAttributes);
+        glEnableVertexAttribArray(1);
+        glVertexAttribPointer(1, attributeSize, GL_FLOAT, false, 0, 0);
+
+        // The element buffer binding is part of the vertex array's state
+        this.vboIndex = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, this.vboIndex);
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glBindVertexArray(0);
+
+        this.capacity = INITIAL_PRIMITIVES;
+        this.positions = MemoryUtil.memAllocFloat(this.capacity * verticesPerPrimitive * 3);
+        this.attributes = MemoryUtil.memAllocFloat(this.capacity * verticesPerPrimitive * attributeSize);
+    }
+
+    /** empties the batch and makes room for the given number of primitives, and no more may be written before upload */
+    public void begin(int primitives) {
+        if (primitives > this.capacity) {
+            this.capacity = Math.max(primitives, this.capacity * 2);
+            this.positions = MemoryUtil.memRealloc(this.positions, this.capacity * this.verticesPerPrimitive * 3);
+            this.attributes = MemoryUtil.memRealloc(this.attributes, this.capacity * this.verticesPerPrimitive * this.attributeSize);
+        }
+        this.positionsAddress = MemoryUtil.memAddress(this.positions);
+        this.attributesAddress = MemoryUtil.memAddress(this.attributes);
+        this.positionsEnd = this.positionsAddress;
+        this.attributesEnd = this.attributesAddress;
+    }
+
+    public void position(float x, float y, float z) {
+        long address = this.positionsEnd;
+        MemoryUtil.memPutFloat(address, x);
+        MemoryUtil.memPutFloat(address + 4, y);
+        MemoryUtil.memPutFloat(address + 8, z);
+        this.positionsEnd = address + 12;
+    }
+
+    /** writes a texture coordinate for the next vertex */
+    public void attribute(float u, float v) {
+        long address = this.attributesEnd;
+        MemoryUtil.memPutFloat(address, u);
+        MemoryUtil.memPutFloat(address + 4, v);
+        this.attributesEnd = address + 8;
+    }
+
+    /** writes a color for the next vertex */
+    public void attribute(float r, float g, float b) {
+        long address = this.attributesEnd;
+        MemoryUtil.memPutFloat(address, r);
+        MemoryUtil.memPutFloat(address + 4, g);
+        MemoryUtil.memPutFloat(address + 8, b);
+        this.attributesEnd = address + 12;
+    }
+
+    /** uploads what has been written since begin, and binds the vertex array ready to draw */
+    public void upload() {
+        glBindVertexArray(this.vaoId);
+
+        glBindBuffer(GL_ARRAY_BUFFER, this.vboPositions);
+        glBufferData(GL_ARRAY_BUFFER, (long) this.capacity * this.verticesPerPrimitive * 3 * Float.BYTES, GL_STREAM_DRAW);
+        nglBufferSubData(GL_ARRAY_BUFFER, 0, this.positionsEnd - this.positionsAddress, this.positionsAddress);
+
+        glBindBuffer(GL_ARRAY_BUFFER, this.vboAttributes);
+        glBufferData(GL_ARRAY_BUFFER, (long) this.capacity * this.verticesPerPrimitive * this.attributeSize * Float.BYTES, GL_STREAM_DRAW);
+        nglBufferSubData(GL_ARRAY_BUFFER, 0, this.attributesEnd - this.attributesAddress, this.attributesAddress);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        if (this.indexedCapacity < this.capacity) {
+            this.uploadIndices();
+        }
+    }
+
+    /** draws primitives from first up to but not including last, which must have been uploaded */
+    public void draw(int mode, int first, int last) {
+        glDrawElements(mode, (last - first) * this.indexPattern.length, GL_UNSIGNED_INT, (long) first * this.indexPattern.length * Integer.BYTES);
+    }
+
+    public void unbind() {
+        glBindVertexArray(0);
+    }
+
+    public void cleanup() {
+        glDeleteBuffers(this.vboPositions);
+        glDeleteBuffers(this.vboAttributes);
+        glDeleteBuffers(this.vboIndex);
+        glDeleteVertexArrays(this.vaoId);
+        MemoryUtil.memFree(this.positions);
+        MemoryUtil.memFree(this.attributes);
+    }
+
+    private void uploadIndices() {
+        IntBuffer bufferIndex = MemoryUtil.memAllocInt(this.capacity * this.indexPattern.length);
+        for (int p = 0; p < this.capacity; p++) {
+            for (int index : this.indexPattern) {
+                bufferIndex.put(p * this.verticesPerPrimitive + index);
+            }
+        }
+        bufferIndex.flip();
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, bufferIndex, GL_STATIC_DRAW);
+        MemoryUtil.memFree(bufferIndex);
+        this.indexedCapacity = this.capacity;
+    }
+}
@@ -34,7 +34,31 @@ public class Texture {
     private final int width;
     private final int height;
 
+    /**
+     * The pixels of an image file decoded to RGBA, ready to upload.  Decoding makes no GL calls,
+     * so it can run on any thread, leaving only the upload for the thread that owns the GL context.
+     */
+    public record Image(int width, int height, ByteBuffer pixels) {
+    }
+
     public Texture(String texturePath) {
+        this(decode(texturePath));
+    }
+
+    // --------------------------------------------------------------
+    //
+    // Uploads an image decoded by decode(), then frees its pixels.
+    //
+    // --------------------------------------------------------------
+    public Texture(Image image) {
+        this.width = image.width();
+        this.height = image.height();
+
+        this.textureId = createTexture(image.pixels());
+        stbi_image_free(image.pixels());
+    }
+
+    public static Image decode(String texturePath) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             IntBuffer w = stack.mallocInt(1);
             IntBuffer h = stack.mallocInt(1);
@@ -45,11 +69,7 @@ public class Texture {
                 throw new RuntimeException("Image file [" + texturePath + "] not loaded: " + stbi_failure_reason());
             }
 
-            this.width = w.get();
-            this.height = h.get();
-
-            this.textureId = createTexture(buffer);
-            stbi_image_free(buffer);
+            return new Image(w.get(), h.get(), buffer);
         }
     }
 